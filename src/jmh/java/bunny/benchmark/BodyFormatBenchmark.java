@@ -0,0 +1,132 @@
+/**
+ *
+ */
+package bunny.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import bunny.entity.Breed;
+import bunny.entity.BreedField;
+import bunny.service.BodyFormat;
+import bunny.service.BodyMappers;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * These benchmarks encode and decode the whole catalog in each {@link BodyFormat} with the mappers
+ * in {@link BodyMappers}, so the numbers show what the binary formats save on the breed list. The
+ * size of the catalog in each format, with and without gzip, is printed when the trial starts.
+ *
+ * @author Promineo
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BodyFormatBenchmark {
+
+  /**
+   * This is the catalog and the mapper of the format being measured.
+   */
+  @State(Scope.Benchmark)
+  public static class Catalog {
+
+    /** The body format. */
+    @Param({"JSON", "CBOR", "SMILE"})
+    public BodyFormat format;
+
+    private ObjectMapper mapper;
+    private ObjectReader reader;
+    private List<Breed> breeds;
+    private byte[] bytes;
+
+    /**
+     * Read the catalog and encode it once so that the decode benchmark has something to read.
+     *
+     * @param database The database.
+     * @throws IOException Thrown if the catalog can't be encoded.
+     */
+    @Setup(Level.Trial)
+    public void load(BunnyDatabase database) throws IOException {
+      mapper = database.getBean(BodyMappers.class).get(format);
+      reader = mapper.readerFor(new TypeReference<List<Breed>>() {});
+      breeds = database.getBunnyService().listBunnyBreeds(BreedField.ALL);
+      bytes = mapper.writeValueAsBytes(breeds);
+
+      System.out.printf("%n%s: %d breeds, %d bytes, %d bytes with gzip%n", format, breeds.size(),
+          bytes.length, gzip(bytes).length);
+    }
+  }
+
+  /**
+   * Encode the catalog.
+   *
+   * @param catalog The catalog.
+   * @return The encoded catalog.
+   * @throws IOException Thrown if the catalog can't be encoded.
+   */
+  @Benchmark
+  public byte[] encode(Catalog catalog) throws IOException {
+    return catalog.mapper.writeValueAsBytes(catalog.breeds);
+  }
+
+  /**
+   * Encode the catalog and gzip it, the way a compressed list response is made.
+   *
+   * @param catalog The catalog.
+   * @return The compressed catalog.
+   * @throws IOException Thrown if the catalog can't be encoded.
+   */
+  @Benchmark
+  public byte[] encodeGzip(Catalog catalog) throws IOException {
+    return gzip(catalog.mapper.writeValueAsBytes(catalog.breeds));
+  }
+
+  /**
+   * Decode the catalog.
+   *
+   * @param catalog The catalog.
+   * @return The breeds.
+   * @throws IOException Thrown if the catalog can't be decoded.
+   */
+  @Benchmark
+  public List<Breed> decode(Catalog catalog) throws IOException {
+    return catalog.reader.readValue(catalog.bytes);
+  }
+
+  /**
+   * Gzip compress the given bytes.
+   *
+   * @param bytes The bytes to compress.
+   * @return The compressed bytes.
+   * @throws IOException Thrown if the bytes can't be compressed.
+   */
+  private static byte[] gzip(byte[] bytes) throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4 + 64);
+
+    try (OutputStream gzip = new GZIPOutputStream(compressed)) {
+      gzip.write(bytes);
+    }
+
+    return compressed.toByteArray();
+  }
+}
@@ -0,0 +1,153 @@
+/**
+ *
+ */
+package bunny.benchmark;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import bunny.dao.BunnyDao;
+import bunny.entity.AddBreedRequest;
+import bunny.entity.Breed;
+import bunny.entity.BreedField;
+
+/**
+ * These benchmarks measure the throughput of the {@link BunnyDao} methods against the
+ * {@link BunnyDatabase}. The writes run in a transaction, like they do when the service calls them.
+ * The breeds that are added are new breeds, and only those breeds are deleted, so the number of
+ * breeds that the reads see stays about the same.
+ * <p>
+ * The allocation rate is reported by the JMH "gc" profiler (gc.alloc.rate.norm is the number of
+ * bytes allocated by each operation). See the README for how to run them.
+ *
+ * @author Promineo
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BunnyDaoBenchmark {
+
+  /** These are the fields read by {@link #fetchAllBreedNames(BunnyDatabase)}. */
+  private static final Set<BreedField> NAMES = Set.of(BreedField.BREED_ID, BreedField.BREED_NAME);
+
+  /** This makes the names of the added breeds unique. */
+  private static final AtomicLong addedBreeds = new AtomicLong();
+
+  /**
+   * This adds a breed before each call of {@link BunnyDaoBenchmark#deleteBunnyBreed}. The add
+   * takes about as long as the delete, so it is not done inside the benchmark.
+   */
+  @State(Scope.Thread)
+  public static class AddedBreed {
+    private int breedId;
+
+    /**
+     * Add the breed that the next call deletes.
+     *
+     * @param database The database.
+     */
+    @Setup(Level.Invocation)
+    public void add(BunnyDatabase database) {
+      breedId = database.getTransactionTemplate()
+          .execute(status -> database.getBunnyDao().insertBunny(newBreed())).getBreedId();
+    }
+  }
+
+  /**
+   * Read every breed with its alternate names and categories. This is what the list breeds
+   * operation reads.
+   *
+   * @param database The database.
+   * @return The breeds.
+   */
+  @Benchmark
+  public List<Breed> fetchAllBreedDetails(BunnyDatabase database) {
+    return database.getBunnyDao().fetchAllBreedDetails(BreedField.ALL);
+  }
+
+  /**
+   * Read the ID and name of every breed. Only the breed table is read.
+   *
+   * @param database The database.
+   * @return The breeds.
+   */
+  @Benchmark
+  public List<Breed> fetchAllBreedNames(BunnyDatabase database) {
+    return database.getBunnyDao().fetchAllBreedDetails(NAMES);
+  }
+
+  /**
+   * Add a breed with an alternate name and a category.
+   *
+   * @param database The database.
+   * @return The added breed.
+   */
+  @Benchmark
+  public Breed insertBunny(BunnyDatabase database) {
+    return database.getTransactionTemplate()
+        .execute(status -> database.getBunnyDao().insertBunny(newBreed()));
+  }
+
+  /**
+   * Change the description of a breed. The alternate names and categories stay the same.
+   *
+   * @param database The database.
+   * @return {@code true} if the breed was modified.
+   */
+  @Benchmark
+  public Boolean modifyBunny(BunnyDatabase database) {
+    Breed breed = database.generatedBreed(database.randomGeneratedBreedId(),
+        "This description was changed by the benchmark " + addedBreeds.incrementAndGet() + ".");
+
+    return database.getTransactionTemplate()
+        .execute(status -> database.getBunnyDao().modifyBunny(breed));
+  }
+
+  /**
+   * Delete a breed with its alternate name and category.
+   *
+   * @param database The database.
+   * @param added The breed to delete.
+   * @return {@code true} if the breed was deleted.
+   */
+  @Benchmark
+  public Boolean deleteBunnyBreed(BunnyDatabase database, AddedBreed added) {
+    return database.getTransactionTemplate()
+        .execute(status -> database.getBunnyDao().deleteBunnyBreed(added.breedId));
+  }
+
+  /**
+   * Returns a new breed with a unique name.
+   *
+   * @return The breed.
+   */
+  private static AddBreedRequest newBreed() {
+    String breedName = "Added breed " + addedBreeds.incrementAndGet();
+
+    AddBreedRequest breed = AddBreedRequest
+        .builder() // @formatter:off
+          .breedName(breedName)
+          .description(breedName + " was added by the benchmark.")
+          .build(); // @formatter:on
+
+    breed.getAlternameNames().add(breedName + " alt");
+    breed.getCategoryNames().add("smooth");
+
+    return breed;
+  }
+}
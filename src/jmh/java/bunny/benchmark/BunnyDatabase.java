@@ -0,0 +1,219 @@
+/**
+ *
+ */
+package bunny.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.sql.DataSource;
+import org.h2.Driver;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+import bunny.BunnyApp;
+import bunny.dao.BunnyDao;
+import bunny.entity.Breed;
+import bunny.service.BunnyService;
+import lombok.Getter;
+
+/**
+ * This is the database that the benchmarks run against. It is an H2 in-memory database in MySQL
+ * mode. Before each trial (each value of {@link #breeds}), the database is created from
+ * bunny-schema.sql and more breeds are added until there are {@link #breeds} breeds. Then the
+ * application is started without the web server, so the benchmarks call the same DAO and service
+ * beans (with the same caches, aspects and JdbcTemplate) that the controller calls.
+ * <p>
+ * The generated breeds follow a fixed pattern so that a benchmark can build a breed that matches
+ * the database without reading it first (see {@link #generatedBreed(int, String)}):
+ * <ul>
+ * <li>The breed name is "Breed " and the breed ID.
+ * <li>Every breed is in the "smooth" category.
+ * <li>Every fifth breed has an alternate name, which is the breed name and " alt".
+ * </ul>
+ * H2 is not MySQL, so the numbers are only useful to compare one version of the code with another.
+ *
+ * @author Promineo
+ *
+ */
+@State(Scope.Benchmark)
+public class BunnyDatabase {
+
+  /** The number of breeds in the database. */
+  @Param({"1000", "100000", "1000000"})
+  public int breeds;
+
+  private ConfigurableApplicationContext context;
+  private DataSource dataSource;
+
+  @Getter
+  private BunnyDao bunnyDao;
+
+  @Getter
+  private BunnyService bunnyService;
+
+  @Getter
+  private TransactionTemplate transactionTemplate;
+
+  /** This is the ID of the first generated breed. The breeds below it come from the schema. */
+  private int firstGeneratedId;
+
+  /**
+   * Create and fill the database and start the application.
+   */
+  @Setup(Level.Trial)
+  public void start() {
+    String url = "jdbc:h2:mem:bunnies_%d;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1"
+        .formatted(breeds);
+
+    dataSource = new SimpleDriverDataSource(new Driver(), url, "sa", "");
+    seed(new JdbcTemplate(dataSource));
+
+    context = new SpringApplicationBuilder(BunnyApp.class)
+        .web(WebApplicationType.NONE) // @formatter:off
+        .properties(Map.of(
+            "spring.datasource.url", url,
+            "spring.datasource.username", "sa",
+            "spring.datasource.password", "",
+            "spring.main.banner-mode", "off",
+            "logging.level.root", "warn",
+            "bunny.stream.fetch-size", "1000",
+            "bunny.sql.slow-threshold", "0s"))
+        .run(); // @formatter:on
+
+    bunnyDao = context.getBean(BunnyDao.class);
+    bunnyService = context.getBean(BunnyService.class);
+    transactionTemplate = context.getBean(TransactionTemplate.class);
+  }
+
+  /**
+   * Stop the application and drop the database.
+   */
+  @TearDown(Level.Trial)
+  public void stop() {
+    context.close();
+    new JdbcTemplate(dataSource).execute("SHUTDOWN");
+  }
+
+  /**
+   * Create the tables from bunny-schema.sql and add the generated breeds.
+   *
+   * @param jdbcTemplate The JdbcTemplate of the new database.
+   */
+  private void seed(JdbcTemplate jdbcTemplate) {
+    ResourceDatabasePopulator populator = new ResourceDatabasePopulator();
+
+    populator.addScript(new ClassPathResource("bunny-schema.sql"));
+    populator.setSqlScriptEncoding(StandardCharsets.UTF_8.name());
+    populator.execute(dataSource);
+
+    firstGeneratedId =
+        jdbcTemplate.queryForObject("SELECT MAX(breed_id) FROM breed", int.class) + 1;
+
+    /* SYSTEM_RANGE is an H2 table function that returns the numbers in a range as column x. */
+    jdbcTemplate.execute("""
+        INSERT INTO breed (breed_id, breed_name, description)
+        SELECT x, CONCAT('Breed ', x),
+          CONCAT('Breed ', x, ' is a generated breed. ', REPEAT('%s', 8))
+        FROM SYSTEM_RANGE(%d, %d)
+        """.formatted("It has a soft coat and long ears. ", firstGeneratedId, breeds));
+
+    jdbcTemplate.execute("""
+        INSERT INTO alt_name (breed_id, alternate_name)
+        SELECT x, CONCAT('Breed ', x, ' alt')
+        FROM SYSTEM_RANGE(%d, %d)
+        WHERE MOD(x, 5) = 0
+        """.formatted(firstGeneratedId, breeds));
+
+    jdbcTemplate.execute("""
+        INSERT INTO breed_category (breed_id, category_id)
+        SELECT x, (SELECT category_id FROM category WHERE category_name = 'smooth')
+        FROM SYSTEM_RANGE(%d, %d)
+        """.formatted(firstGeneratedId, breeds));
+
+    /* The schema and the generated breeds set the IDs. Start the generated IDs after them. */
+    restartIdentity(jdbcTemplate, "breed", "breed_id");
+    restartIdentity(jdbcTemplate, "alt_name", "alternate_id");
+    restartIdentity(jdbcTemplate, "category", "category_id");
+  }
+
+  /**
+   * Set the next generated ID of a table to one more than its largest ID.
+   *
+   * @param jdbcTemplate The JdbcTemplate.
+   * @param table The table.
+   * @param column The ID column.
+   */
+  private void restartIdentity(JdbcTemplate jdbcTemplate, String table, String column) {
+    int next = jdbcTemplate.queryForObject(
+        "SELECT COALESCE(MAX(%s), 0) + 1 FROM %s".formatted(column, table), int.class);
+
+    jdbcTemplate.execute("ALTER TABLE %s ALTER COLUMN %s RESTART WITH %d"
+        .formatted(table, column, next));
+  }
+
+  /**
+   * Returns a bean of the running application.
+   *
+   * @param <T> The bean type.
+   * @param type The bean type.
+   * @return The bean.
+   */
+  public <T> T getBean(Class<T> type) {
+    return context.getBean(type);
+  }
+
+  /**
+   * Returns a random breed ID. The breed always exists because the benchmarks only delete the
+   * breeds that they add.
+   *
+   * @return The breed ID.
+   */
+  public int randomBreedId() {
+    return ThreadLocalRandom.current().nextInt(1, breeds + 1);
+  }
+
+  /**
+   * Returns the ID of a random generated breed.
+   *
+   * @return The breed ID.
+   */
+  public int randomGeneratedBreedId() {
+    return ThreadLocalRandom.current().nextInt(firstGeneratedId, breeds + 1);
+  }
+
+  /**
+   * Returns a generated breed the way it is in the database, but with another description.
+   *
+   * @param breedId The ID of a generated breed.
+   * @param description The description.
+   * @return The breed.
+   */
+  public Breed generatedBreed(int breedId, String description) {
+    Breed breed = Breed
+        .builder() // @formatter:off
+          .breedId(breedId)
+          .breedName("Breed " + breedId)
+          .description(description)
+          .build(); // @formatter:on
+
+    breed.getCategoryNames().add("smooth");
+
+    if (breedId % 5 == 0) {
+      breed.getAlternameNames().add("Breed " + breedId + " alt");
+    }
+
+    return breed;
+  }
+}
@@ -0,0 +1,96 @@
+/**
+ *
+ */
+package bunny.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import bunny.entity.Breed;
+import bunny.entity.BreedField;
+import bunny.service.BreedCache;
+import bunny.service.BunnyService;
+
+/**
+ * These benchmarks measure the throughput of the {@link BunnyService} reads against the
+ * {@link BunnyDatabase}. {@link #getBunnyBreed(BunnyDatabase)} reads a random breed, so the result
+ * includes the breed cache: with 1,000 breeds every read is a cache hit after the warmup, and with
+ * 1,000,000 breeds most reads go to the database. {@link #getUncachedBunnyBreed(UncachedBreed)}
+ * removes the breed from the cache first, so every read goes to the database.
+ *
+ * @author Promineo
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BunnyServiceBenchmark {
+
+  /**
+   * This picks a random breed and removes it from the {@link BreedCache} before each call of
+   * {@link BunnyServiceBenchmark#getUncachedBunnyBreed}, so that the call reads the database.
+   */
+  @State(Scope.Thread)
+  public static class UncachedBreed {
+    private BunnyService bunnyService;
+    private int breedId;
+
+    /**
+     * Pick the breed that the next call reads and remove it from the cache.
+     *
+     * @param database The database.
+     */
+    @Setup(Level.Invocation)
+    public void invalidate(BunnyDatabase database) {
+      bunnyService = database.getBunnyService();
+      breedId = database.randomBreedId();
+      database.getBean(BreedCache.class).invalidate(breedId);
+    }
+  }
+
+  /**
+   * Read every breed with its alternate names and categories, the way the list breeds operation
+   * does when the response isn't cached.
+   *
+   * @param database The database.
+   * @return The breeds.
+   */
+  @Benchmark
+  public List<Breed> listBunnyBreeds(BunnyDatabase database) {
+    return database.getBunnyService().listBunnyBreeds(BreedField.ALL);
+  }
+
+  /**
+   * Read a random breed with its alternate names and categories.
+   *
+   * @param database The database.
+   * @return The breed.
+   */
+  @Benchmark
+  public Breed getBunnyBreed(BunnyDatabase database) {
+    return database.getBunnyService().getBunnyBreed(database.randomBreedId());
+  }
+
+  /**
+   * Read a random breed that isn't in the breed cache.
+   *
+   * @param breed The breed to read.
+   * @return The breed.
+   */
+  @Benchmark
+  public Breed getUncachedBunnyBreed(UncachedBreed breed) {
+    return breed.bunnyService.getBunnyBreed(breed.breedId);
+  }
+}
@@ -0,0 +1,191 @@
+/**
+ *
+ */
+package bunny.benchmark;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import bunny.dao.MeteredJdbcTemplate;
+import bunny.dao.MeteredNamedParameterJdbcTemplate;
+import bunny.dao.StatementStats;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * These benchmarks measure what the statement instrumentation costs. The same queries are run
+ * through a plain NamedParameterJdbcTemplate ({@code instrumented=false}) and through the
+ * {@link MeteredNamedParameterJdbcTemplate} that the DAO uses ({@code instrumented=true}). With the
+ * instrumentation on, each query is counted for a request with {@link StatementStats}, like a
+ * query run by the controller, and its rows are added to the row counters.
+ * <p>
+ * The queries read the same rows with a RowMapper, a RowCallbackHandler and a ResultSetExtractor,
+ * because the rows are counted differently for each. One query reads a single breed, where the
+ * cost of the instrumentation is per statement rather than per row.
+ *
+ * @author Promineo
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MeteredJdbcTemplateBenchmark {
+
+  /** This is the number of breeds read by the queries that read many rows. */
+  private static final int ROWS = 1000;
+
+  private static final String BREEDS_SQL = """
+      SELECT breed_id, breed_name
+      FROM breed
+      WHERE breed_id <= :breed_id
+      """;
+
+  private static final String BREED_SQL = """
+      SELECT breed_id, breed_name, description
+      FROM breed
+      WHERE breed_id = :breed_id
+      """;
+
+  /**
+   * This is the template that the benchmarks run the queries with.
+   */
+  @State(Scope.Benchmark)
+  public static class Templates {
+
+    /** If true, the queries are run through the metered templates. */
+    @Param({"false", "true"})
+    public boolean instrumented;
+
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Create the template. Both use the connection pool of the application.
+     *
+     * @param database The database.
+     */
+    @Setup(Level.Trial)
+    public void create(BunnyDatabase database) {
+      DataSource dataSource = database.getBean(DataSource.class);
+
+      if (instrumented) {
+        jdbcTemplate = new MeteredNamedParameterJdbcTemplate(
+            new MeteredJdbcTemplate(dataSource, new SimpleMeterRegistry()));
+      } else {
+        jdbcTemplate = new NamedParameterJdbcTemplate(new JdbcTemplate(dataSource));
+      }
+    }
+
+    /**
+     * Run a query. If the template is instrumented, the query is counted for a request.
+     *
+     * @param <T> The type of the result.
+     * @param query This runs the query.
+     * @return The result of the query.
+     */
+    <T> T run(Query<T> query) {
+      if (!instrumented) {
+        return query.run(jdbcTemplate);
+      }
+
+      StatementStats.start();
+
+      try {
+        return query.run(jdbcTemplate);
+      } finally {
+        StatementStats.finish();
+      }
+    }
+  }
+
+  /**
+   * This runs a query with a template.
+   *
+   * @param <T> The type of the result.
+   */
+  @FunctionalInterface
+  interface Query<T> {
+    T run(NamedParameterJdbcTemplate jdbcTemplate);
+  }
+
+  /**
+   * Read 1,000 breed rows with a RowMapper.
+   *
+   * @param templates The template.
+   * @return The breed names.
+   */
+  @Benchmark
+  public List<String> rowMapper(Templates templates) {
+    return templates.run(jdbcTemplate -> jdbcTemplate.query(BREEDS_SQL,
+        Map.of("breed_id", ROWS), (rs, rowNum) -> rs.getString("breed_name")));
+  }
+
+  /**
+   * Read 1,000 breed rows with a RowCallbackHandler.
+   *
+   * @param templates The template.
+   * @return The breed names by breed ID.
+   */
+  @Benchmark
+  public Map<Integer, String> rowCallbackHandler(Templates templates) {
+    return templates.run(jdbcTemplate -> {
+      Map<Integer, String> names = new HashMap<>();
+
+      jdbcTemplate.query(BREEDS_SQL, Map.of("breed_id", ROWS),
+          (RowCallbackHandler) rs -> names.put(rs.getInt("breed_id"), rs.getString("breed_name")));
+
+      return names;
+    });
+  }
+
+  /**
+   * Read 1,000 breed rows with a ResultSetExtractor. The metered template counts these rows with
+   * a wrapper around the ResultSet.
+   *
+   * @param templates The template.
+   * @return The breed names by breed ID.
+   */
+  @Benchmark
+  public Map<Integer, String> resultSetExtractor(Templates templates) {
+    return templates.run(jdbcTemplate -> jdbcTemplate.query(BREEDS_SQL,
+        Map.of("breed_id", ROWS), rs -> {
+          Map<Integer, String> names = new HashMap<>();
+
+          while (rs.next()) {
+            names.put(rs.getInt("breed_id"), rs.getString("breed_name"));
+          }
+
+          return names;
+        }));
+  }
+
+  /**
+   * Read a random breed.
+   *
+   * @param templates The template.
+   * @param database The database.
+   * @return The description of the breed.
+   */
+  @Benchmark
+  public List<String> singleRow(Templates templates, BunnyDatabase database) {
+    return templates.run(jdbcTemplate -> jdbcTemplate.query(BREED_SQL,
+        Map.of("breed_id", database.randomBreedId()), (rs, rowNum) -> rs.getString("description")));
+  }
+}
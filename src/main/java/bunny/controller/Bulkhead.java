@@ -0,0 +1,44 @@
+/**
+ *
+ */
+package bunny.controller;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * This annotation puts an operation in a bulkhead of the {@link ConcurrencyLimitInterceptor}. An
+ * operation without the annotation is in the {@link Type#READ} bulkhead if it is a GET and in the
+ * {@link Type#WRITE} bulkhead otherwise. The annotation is put on the methods of
+ * {@link BunnyOperations}.
+ *
+ * @author Promineo
+ *
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Bulkhead {
+
+  /** These are the bulkheads. Each one has its own concurrency limit. */
+  enum Type {
+    /** Operations that only read breeds. */
+    READ,
+
+    /** Operations that add, modify or delete breeds. */
+    WRITE,
+
+    /** Long-running operations that read or write the whole catalog. */
+    BULK
+  }
+
+  /**
+   * Returns the bulkhead of the operation.
+   *
+   * @return The bulkhead.
+   */
+  Type value();
+}
@@ -3,13 +3,50 @@
  */
 package bunny.controller;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import bunny.entity.AddBreedRequest;
+import bunny.entity.BatchResult;
 import bunny.entity.Breed;
+import bunny.entity.BreedBatch;
+import bunny.entity.BreedField;
+import bunny.entity.BreedPage;
+import bunny.entity.BulkImportResult;
+import bunny.entity.FacetedBreeds;
+import bunny.entity.SearchHit;
+import bunny.exception.FieldValidationException;
+import bunny.service.BodyFormat;
+import bunny.service.BodyMappers;
 import bunny.service.BunnyService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -23,6 +60,18 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class BunnyController implements BunnyOperations {
 
+  /** The streamed list of breeds is flushed to the caller after this many breeds. */
+  private static final int STREAM_FLUSH_INTERVAL = 100;
+
+  /** This separates the category names and alternate names in a CSV export. */
+  private static final String CSV_NAME_SEPARATOR = "|";
+
+  /** A CSV field that contains any of these characters must be quoted. */
+  private static final Pattern CSV_SPECIAL_CHARACTERS = Pattern.compile("[\",\r\n]");
+
+  /** This is the media type for NDJSON exports. */
+  private static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+
   /*
    * Using @Autowired tells Spring to inject the singleton RenameMeService object. RenameMeService
    * is a class and not an interface. Spring can handle both but there's no reason to use an
@@ -32,31 +81,346 @@ public class BunnyController implements BunnyOperations {
   @Autowired
   private BunnyService service;
 
+  /** This is the Jackson ObjectMapper configured by Spring Boot. It is used to stream breeds. */
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  /** These are the mappers for the binary body formats. See {@link BodyFormat}. */
+  @Autowired
+  private BodyMappers bodyMappers;
+
   /**
-   * @see BunnyOperations#listBunnyBreeds()
-   * @see BunnyService#listBunnyBreeds()
+   * The catalog ETag is read before the breeds. If the list changes in between, the caller gets
+   * the new list with the old ETag and simply reads the list again next time.
+   * <p>
+   * The list is returned as encoded bytes that are cached by the service, so the breeds are not
+   * encoded on every request. The format is chosen from the Accept header. See
+   * {@link #encodedResponse(byte[], BodyFormat, String, boolean)}.
+   * 
+   * @see BunnyOperations#listBunnyBreeds(List, WebRequest)
+   * @see BunnyService#listBunnyBreedsBytes(Set, BodyFormat, String, boolean)
    */
   @Override
-  public List<Breed> listBunnyBreeds() {
-    log.info("Controller: List bunny breeds");
-    return service.listBunnyBreeds();
+  public ResponseEntity<byte[]> listBunnyBreeds(List<String> fields, WebRequest request) {
+    log.info("Controller: List bunny breeds with fields {}", fields);
+
+    Set<BreedField> breedFields = BreedField.fromFieldNames(fields);
+    BodyFormat format = BodyFormat.fromAccept(request.getHeader(HttpHeaders.ACCEPT));
+    String etag = service.getCatalogETag(breedFields, format);
+
+    if (request.checkNotModified(etag)) {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+    }
+
+    boolean gzip = acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+    byte[] body = service.listBunnyBreedsBytes(breedFields, format, etag, gzip);
+
+    return encodedResponse(body, format, etag, gzip);
   }
 
   /**
-   * A {@link NoSuchElementException} is thrown by the {@link BunnyService service} if the breed ID
+   * Create a response with the given encoded bytes. Because the body is a byte array, Spring writes
+   * it to the response as it is (with the ByteArrayHttpMessageConverter) instead of converting it
+   * with Jackson. If the bytes are gzip compressed, the Content-Encoding header says so. The
+   * response depends on the Accept and Accept-Encoding headers, so the Vary header lists both.
+   * 
+   * @param body The encoded bytes.
+   * @param format The format of the bytes.
+   * @param etag The ETag of the response.
+   * @param gzip {@code true} if the bytes are gzip compressed.
+   * @return The response.
+   */
+  private ResponseEntity<byte[]> encodedResponse(byte[] body, BodyFormat format, String etag,
+      boolean gzip) {
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok() // @formatter:off
+        .eTag(etag)
+        .contentType(format.getMediaType())
+        .header(HttpHeaders.VARY, HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING); // @formatter:on
+
+    if (gzip) {
+      response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+    }
+
+    return response.body(body);
+  }
+
+  /**
+   * The breeds are written with a Jackson {@link JsonGenerator} instead of returning a list for
+   * Spring to convert. The generator writes each breed as an element of a JSON array. The output is
+   * flushed after the first breed so that the caller gets the first byte right away, and then every
+   * {@link #STREAM_FLUSH_INTERVAL} breeds. For CBOR and Smile, the generator is created by the
+   * mapper for the format, so the same code writes every format.
+   * 
+   * @see BunnyOperations#streamBunnyBreeds(String, HttpServletResponse)
+   * @see BunnyService#streamBunnyBreeds(java.util.function.Consumer)
+   */
+  @Override
+  public void streamBunnyBreeds(String accept, HttpServletResponse response) throws IOException {
+    log.info("Controller: Stream bunny breeds");
+
+    BodyFormat format = BodyFormat.fromAccept(accept);
+
+    setContentType(response, format);
+    response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+
+    try (JsonGenerator generator =
+        bodyMappers.get(format).getFactory().createGenerator(response.getOutputStream())) {
+      AtomicInteger count = new AtomicInteger();
+
+      generator.writeStartArray();
+
+      /*
+       * The consumer can't throw a checked IOException, so it is wrapped in an unchecked exception.
+       */
+      service.streamBunnyBreeds(breed -> {
+        try {
+          generator.writeObject(breed);
+
+          if (count.getAndIncrement() % STREAM_FLUSH_INTERVAL == 0) {
+            generator.flush();
+          }
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+
+      generator.writeEndArray();
+    }
+  }
+
+  /**
+   * Set the content type of a response that is written directly. Only JSON has a character
+   * encoding. The binary formats don't.
+   * 
+   * @param response The response.
+   * @param format The format the response is written in.
+   */
+  private void setContentType(HttpServletResponse response, BodyFormat format) {
+    response.setContentType(format.getMediaType().toString());
+
+    if (format == BodyFormat.JSON) {
+      response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+    }
+  }
+
+  /**
+   * 
+   * @see BunnyOperations#listBunnyBreedsByCategory(List, int, String)
+   * @see BunnyService#listBunnyBreedsByCategory(List, int, String)
+   */
+  @Override
+  public FacetedBreeds listBunnyBreedsByCategory(List<String> category, int limit, String after) {
+    log.info("Controller: List bunny breeds in categories {} after {}, limit={}", category, after,
+        limit);
+    return service.listBunnyBreedsByCategory(category, limit, after);
+  }
+
+  /**
+   * 
+   * @see BunnyOperations#searchBunnyBreeds(String, int)
+   * @see BunnyService#searchBunnyBreeds(String, int)
+   */
+  @Override
+  public List<SearchHit> searchBunnyBreeds(String q, int limit) {
+    log.info("Controller: Search bunny breeds for \"{}\", limit={}", q, limit);
+    return service.searchBunnyBreeds(q, limit);
+  }
+
+  /**
+   * The export reuses the breed stream. Each breed is written to a buffered writer as soon as it
+   * is read from the database. If the caller accepts gzip, the writer is wrapped around a
+   * {@link GZIPOutputStream} so the breeds are compressed as they are written.
+   * 
+   * @see BunnyOperations#exportBunnyBreeds(String, String, HttpServletResponse)
+   * @see BunnyService#streamBunnyBreeds(java.util.function.Consumer)
+   */
+  @Override
+  public void exportBunnyBreeds(String format, String acceptEncoding, HttpServletResponse response)
+      throws IOException {
+    log.info("Controller: Export bunny breeds as {}", format);
+
+    boolean csv = "csv".equals(format);
+
+    response.setContentType(csv ? "text/csv" : NDJSON_CONTENT_TYPE);
+    response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+    response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+        "attachment; filename=\"breeds." + format + "\"");
+    response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+    OutputStream body = response.getOutputStream();
+
+    if (acceptsGzip(acceptEncoding)) {
+      response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+      body = new GZIPOutputStream(body);
+    }
+
+    try (Writer writer = new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8))) {
+      if (csv) {
+        writeCsv(writer);
+      } else {
+        writeNdjson(writer);
+      }
+    }
+  }
+
+  /**
+   * Write every breed as a JSON object on its own line. The generator's root value separator is
+   * turned off because it would put a space in front of every line after the first.
+   * 
+   * @param writer The writer that the breeds are written to.
+   * @throws IOException Thrown if the breeds cannot be written.
+   */
+  private void writeNdjson(Writer writer) throws IOException {
+    JsonGenerator generator = objectMapper.getFactory().createGenerator(writer);
+    generator.setRootValueSeparator(null);
+
+    service.streamBunnyBreeds(breed -> {
+      try {
+        generator.writeObject(breed);
+        generator.writeRaw('\n');
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+
+    generator.flush();
+  }
+
+  /**
+   * Write every breed as a CSV record (RFC 4180). The first line contains the column names, which
+   * are the same as the JSON field names.
+   * 
+   * @param writer The writer that the breeds are written to.
+   * @throws IOException Thrown if the breeds cannot be written.
+   */
+  private void writeCsv(Writer writer) throws IOException {
+    writer.write("breedId,breedName,description,categoryNames,alternameNames\r\n");
+
+    service.streamBunnyBreeds(breed -> {
+      try {
+        writer.write(Integer.toString(breed.getBreedId()));
+        writer.write(',');
+        writer.write(csvField(breed.getBreedName()));
+        writer.write(',');
+        writer.write(csvField(breed.getDescription()));
+        writer.write(',');
+        writer.write(csvField(String.join(CSV_NAME_SEPARATOR, breed.getCategoryNames())));
+        writer.write(',');
+        writer.write(csvField(String.join(CSV_NAME_SEPARATOR, breed.getAlternameNames())));
+        writer.write("\r\n");
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+  }
+
+  /**
+   * Quote a CSV field if it contains a comma, a quote or a line break. Quotes inside the field are
+   * doubled.
+   * 
+   * @param value The field value. This may be {@code null}.
+   * @return The field as it is written to the CSV.
+   */
+  private String csvField(String value) {
+    if (Objects.isNull(value)) {
+      return "";
+    }
+
+    if (CSV_SPECIAL_CHARACTERS.matcher(value).find()) {
+      return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    return value;
+  }
+
+  /**
+   * Returns {@code true} if the Accept-Encoding header includes gzip (i.e., "gzip, deflate, br").
+   * An encoding with a quality of zero ("gzip;q=0") is not accepted.
+   * 
+   * @param acceptEncoding The Accept-Encoding header. This may be {@code null}.
+   * @return {@code true} if the response can be gzip compressed.
+   */
+  private boolean acceptsGzip(String acceptEncoding) {
+    if (Objects.isNull(acceptEncoding)) {
+      return false;
+    }
+
+    for (String encoding : acceptEncoding.split(",")) {
+      String[] parts = encoding.trim().split(";");
+
+      if ("gzip".equalsIgnoreCase(parts[0].trim())) {
+        return parts.length == 1 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * A {@link FieldValidationException} is thrown by the {@link BunnyService service} if the cursor
    * is invalid.
    * 
-   * @see BunnyOperations#getBreed(int)
-   * @see BunnyService#getBunnyBreed(int)
+   * @see BunnyOperations#listBunnyBreedPage(int, String)
+   * @see BunnyService#listBunnyBreedPage(int, String)
+   */
+  @Override
+  public BreedPage listBunnyBreedPage(int limit, String after) {
+    log.info("Controller: List bunny breeds after {}, limit={}", after, limit);
+    return service.listBunnyBreedPage(limit, after);
+  }
+
+  /**
+   * A {@link NoSuchElementException} is thrown by the {@link BunnyService service} if the breed ID
+   * is invalid. The ETag is only returned for a breed that exists, so a missing breed gets a 404
+   * response even with an If-None-Match: * header. The If-None-Match header is checked before the
+   * breed is read, so a 304 response never reads the breed at all. Like the list, the breed is
+   * returned as cached encoded bytes.
+   * 
+   * @see BunnyOperations#getBreed(int, List, WebRequest)
+   * @see BunnyService#getBunnyBreedBytes(int, Set, BodyFormat, String, boolean)
+   */
+  @Override
+  public ResponseEntity<byte[]> getBreed(int breedId, List<String> fields, WebRequest request) {
+    log.info("Controller: Get bunny with ID={}, fields {}", breedId, fields);
+
+    Set<BreedField> breedFields = BreedField.fromFieldNames(fields);
+    BodyFormat format = BodyFormat.fromAccept(request.getHeader(HttpHeaders.ACCEPT));
+    String etag = service.getBreedETag(breedId, breedFields, format);
+
+    if (request.checkNotModified(etag)) {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+    }
+
+    boolean gzip = acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+    byte[] body = service.getBunnyBreedBytes(breedId, breedFields, format, etag, gzip);
+
+    return encodedResponse(body, format, etag, gzip);
+  }
+
+  /**
+   * 
+   * @see BunnyOperations#getBreeds(List)
+   * @see BunnyService#getBunnyBreeds(List)
+   */
+  @Override
+  public BreedBatch getBreeds(List<Integer> ids) {
+    log.info("Controller: Get {} bunnies by ID", ids.size());
+    return service.getBunnyBreeds(ids);
+  }
+
+  /**
+   * 
+   * @see BunnyOperations#postBreeds(List)
+   * @see BunnyService#getBunnyBreeds(List)
    */
   @Override
-  public Breed getBreed(int breedId) {
-    log.info("Controller: Get bunny with ID={}", breedId);
-    return service.getBunnyBreed(breedId);
+  public BreedBatch postBreeds(List<Integer> ids) {
+    log.info("Controller: Get {} bunnies by ID", ids.size());
+    return service.getBunnyBreeds(ids);
   }
 
   /**
-   *
+   * 
    * @see BunnyOperations#addBreed(AddBreedRequest)
    * @see BunnyService#addBunny(AddBreedRequest)
    */
@@ -66,6 +430,77 @@ public class BunnyController implements BunnyOperations {
     return service.addBunny(breedRequest);
   }
 
+  /**
+   * The request body is read one line at a time, or one object at a time if it is CBOR or Smile.
+   * If the body is gzip compressed, it is decompressed as it is read. The outcome of each line is
+   * written to the response with a Jackson {@link JsonGenerator} as soon as the line's chunk is
+   * committed, so neither the request nor the response is ever held in memory. The response is
+   * written in the format that the Accept header asks for.
+   * 
+   * @see BunnyOperations#importBreeds(HttpServletRequest, HttpServletResponse)
+   * @see BunnyService#importBunnies(BufferedReader, java.util.function.Consumer)
+   * @see BunnyService#importBunnies(JsonParser, java.util.function.Consumer)
+   */
+  @Override
+  public void importBreeds(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    log.info("Controller: Import bunnies");
+
+    InputStream body = request.getInputStream();
+
+    if ("gzip".equalsIgnoreCase(request.getHeader(HttpHeaders.CONTENT_ENCODING))) {
+      body = new GZIPInputStream(body);
+    }
+
+    Optional<BodyFormat> inputFormat = BodyFormat.fromBinaryContentType(request.getContentType());
+    BodyFormat format = BodyFormat.fromAccept(request.getHeader(HttpHeaders.ACCEPT));
+
+    setContentType(response, format);
+
+    try (JsonGenerator generator =
+        bodyMappers.get(format).getFactory().createGenerator(response.getOutputStream())) {
+      AtomicInteger count = new AtomicInteger();
+      AtomicInteger failed = new AtomicInteger();
+
+      generator.writeStartObject();
+      generator.writeArrayFieldStart("results");
+
+      Consumer<BulkImportResult> consumer = result -> {
+        try {
+          generator.writeObject(result);
+
+          if (Objects.nonNull(result.getError())) {
+            failed.incrementAndGet();
+          }
+
+          if (count.incrementAndGet() % STREAM_FLUSH_INTERVAL == 0) {
+            generator.flush();
+          }
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      };
+
+      int imported;
+
+      if (inputFormat.isPresent()) {
+        try (JsonParser input = bodyMappers.get(inputFormat.get()).createParser(body)) {
+          imported = service.importBunnies(input, consumer);
+        }
+      } else {
+        try (BufferedReader input =
+            new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+          imported = service.importBunnies(input, consumer);
+        }
+      }
+
+      generator.writeEndArray();
+      generator.writeNumberField("imported", imported);
+      generator.writeNumberField("failed", failed.get());
+      generator.writeEndObject();
+    }
+  }
+
   /**
    * A {@link NoSuchElementException} is thrown by the {@link BunnyService service} if the breed ID
    * is invalid.
@@ -79,6 +514,17 @@ public class BunnyController implements BunnyOperations {
     return service.modifyBunny(breedRequest);
   }
 
+  /**
+   * 
+   * @see BunnyOperations#modifyBreeds(List)
+   * @see BunnyService#modifyBunnies(List)
+   */
+  @Override
+  public BatchResult modifyBreeds(List<Breed> breedRequests) {
+    log.info("Controller: Modify {} bunnies", breedRequests.size());
+    return service.modifyBunnies(breedRequests);
+  }
+
   /**
    * A {@link NoSuchElementException} is thrown by the {@link BunnyService service} if the breed ID
    * is invalid.
@@ -92,4 +538,26 @@ public class BunnyController implements BunnyOperations {
     service.deleteBunny(breedId);
   }
 
+  /**
+   * 
+   * @see BunnyOperations#deleteBreeds(List)
+   * @see BunnyService#deleteBunnies(List)
+   */
+  @Override
+  public BatchResult deleteBreeds(List<Integer> ids) {
+    log.info("Controller: Delete {} bunnies", ids.size());
+    return service.deleteBunnies(ids);
+  }
+
+  /**
+   * 
+   * @see BunnyOperations#deleteBreedsInCategory(String)
+   * @see BunnyService#deleteBunniesInCategory(String)
+   */
+  @Override
+  public BatchResult deleteBreedsInCategory(String category) {
+    log.info("Controller: Delete bunnies in category {}", category);
+    return service.deleteBunniesInCategory(category);
+  }
+
 }
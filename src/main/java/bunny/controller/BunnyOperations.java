@@ -3,9 +3,22 @@
  */
 package bunny.controller;
 
+import java.io.IOException;
 import java.util.List;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Size;
+import org.hibernate.validator.constraints.Length;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -13,10 +26,21 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.context.request.WebRequest;
 import bunny.entity.AddBreedRequest;
+import bunny.entity.BatchResult;
 import bunny.entity.Breed;
+import bunny.entity.BreedBatch;
+import bunny.entity.BreedField;
+import bunny.entity.BreedPage;
+import bunny.entity.BulkImportResult;
+import bunny.entity.FacetedBreeds;
+import bunny.entity.SearchHit;
+import bunny.service.BodyFormat;
 import io.swagger.v3.oas.annotations.OpenAPIDefinition;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -36,6 +60,10 @@ import io.swagger.v3.oas.annotations.servers.Server;
  * <p>
  * All URIs supported by the class methods are mapped to the /bunny URI. Some methods take URL
  * parameters and some do not.
+ * <p>
+ * Every operation may return 503 (Service Unavailable) with a Retry-After header if too many
+ * requests are running. The @Bulkhead annotation puts an operation in a concurrency limit bulkhead
+ * other than the default. See {@link ConcurrencyLimitInterceptor}.
  * 
  * @author Promineo
  *
@@ -46,36 +74,306 @@ import io.swagger.v3.oas.annotations.servers.Server;
     servers = {@Server(url = "http://localhost:8080", description = "Local server.")})
 public interface BunnyOperations {
 
+  /** This is the largest page size that can be requested from the paged list operation. */
+  int MAX_PAGE_SIZE = 500;
+
+  /** This is the largest number of results that can be requested from the search operation. */
+  int MAX_SEARCH_RESULTS = 100;
+
+  /** This is the largest number of breed IDs that can be requested from the batch operations. */
+  int MAX_BATCH_SIZE = 1000;
+
   /**
    * This method is routed to when the GET method at http://localhost:8080/bunny is invoked. It
    * returns a list of all bunny breeds, along with categories and alternate breed names.
+   * <p>
+   * To return only some of the breed fields, list them in the "fields" parameter (i.e.,
+   * http://localhost:8080/bunny?fields=breedId,breedName). Only the requested fields are read from
+   * the database. The breed ID is always returned. See {@link BreedField}.
+   * <p>
+   * The response has an ETag header. If the caller sends the ETag back in an If-None-Match header
+   * and no breed has been added, modified or deleted since, the response is 304 (Not Modified) with
+   * no body. If the Accept-Encoding header includes "gzip", the response is gzip compressed.
+   * <p>
+   * The list is returned as JSON unless the Accept header asks for CBOR ("application/cbor") or
+   * Smile ("application/x-jackson-smile"). See {@link BodyFormat}.
    * 
-   * @return The list of breeds.
+   * @param fields The fields to return. All fields are returned if this is left out.
+   * @param request The request. It is used to check the If-None-Match, Accept and Accept-Encoding
+   *        headers.
+   * @return The list of breeds as encoded bytes, or a 304 response.
    */
   @Operation( // @formatter:off
       summary = "List all bunny breeds",
       description = "List all the bunny breeds with alternate names if they exist",
       responses = {
-          @ApiResponse(responseCode = "200", description = "Returns a list of all bunny breeds", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Breed.class))),
+          @ApiResponse(responseCode = "200", description = "Returns a list of all bunny breeds", content = {@Content(mediaType = "application/json", schema = @Schema(implementation = Breed.class)), @Content(mediaType = MediaType.APPLICATION_CBOR_VALUE), @Content(mediaType = BodyFormat.APPLICATION_SMILE_VALUE)}),
+          @ApiResponse(responseCode = "304", description = "The list has not changed since the ETag in If-None-Match"),
+          @ApiResponse(responseCode = "400", description = "Invalid field name", content = @Content(mediaType = "application/json")),
           @ApiResponse(responseCode = "500", description = "An unplanned error occurred", content = @Content(mediaType = "application/json"))
+      },
+      parameters = {
+          @Parameter(
+              name = "fields", 
+              allowEmptyValue = false, 
+              required = false, 
+              description = "The fields to return separated by commas (" + BreedField.FIELD_NAME_PATTERN + "). All fields are returned if this is left out.", 
+              in = ParameterIn.QUERY
+          )
       }
   ) // @formatter:on
   @GetMapping
+  ResponseEntity<byte[]> listBunnyBreeds(
+      @RequestParam(required = false) List<@Pattern(
+          regexp = BreedField.FIELD_NAME_PATTERN) String> fields,
+      @Parameter(hidden = true) WebRequest request);
+
+  /**
+   * This method is routed to when the GET method at http://localhost:8080/bunny?stream=true is
+   * invoked. It returns the same JSON array as {@link #listBunnyBreeds(List, WebRequest)}, but each
+   * breed is written to the response as soon as it is read from the database. This is meant for
+   * callers that read the entire catalog. The memory used does not depend on the number of breeds
+   * and the first breed is sent right away. Like the list, the breeds are written as CBOR or Smile
+   * if the Accept header asks for it.
+   * 
+   * @param accept The Accept request header.
+   * @param response The response that the breeds are written to.
+   * @throws IOException Thrown if the breeds cannot be written to the response.
+   */
+  @Operation( // @formatter:off
+      summary = "Stream all bunny breeds",
+      description = "Stream all the bunny breeds with alternate names as they are read",
+      responses = {
+          @ApiResponse(responseCode = "200", description = "Returns a list of all bunny breeds", content = {@Content(mediaType = "application/json", schema = @Schema(implementation = Breed.class)), @Content(mediaType = MediaType.APPLICATION_CBOR_VALUE), @Content(mediaType = BodyFormat.APPLICATION_SMILE_VALUE)}),
+          @ApiResponse(responseCode = "500", description = "An unplanned error occurred", content = @Content(mediaType = "application/json"))
+      },
+      parameters = {
+          @Parameter(
+              name = "stream", 
+              allowEmptyValue = false, 
+              required = true, 
+              description = "Must be true to stream the breeds.", 
+              in = ParameterIn.QUERY
+          )
+      }
+  ) // @formatter:on
+  @GetMapping(params = "stream=true")
+  @ResponseStatus(code = HttpStatus.OK)
+  @Bulkhead(Bulkhead.Type.BULK)
+  void streamBunnyBreeds(
+      @Parameter(hidden = true) @RequestHeader(name = HttpHeaders.ACCEPT,
+          required = false) String accept,
+      @Parameter(hidden = true) HttpServletResponse response) throws IOException;
+
+  /**
+   * This method is routed to when the GET method at http://localhost:8080/bunny is invoked with a
+   * "limit" parameter (i.e., http://localhost:8080/bunny?limit=10). It returns one page of bunny
+   * breeds sorted by breed name. If there are more breeds, the returned page contains a "next"
+   * cursor. To get the next page, pass the cursor in the "after" parameter (i.e.,
+   * http://localhost:8080/bunny?limit=10&after=MTQ6RHdhcmYgTG9w).
+   * 
+   * @param limit The maximum number of breeds to return.
+   * @param after The "next" cursor from the previous page. Leave this out for the first page.
+   * @return The page of breeds.
+   */
+  @Operation( // @formatter:off
+      summary = "List one page of bunny breeds",
+      description = "List a page of bunny breeds with a cursor to the next page",
+      responses = {
+          @ApiResponse(responseCode = "200", description = "Returns a page of bunny breeds", content = @Content(mediaType = "application/json", schema = @Schema(implementation = BreedPage.class))),
+          @ApiResponse(responseCode = "400", description = "Invalid limit or cursor", content = @Content(mediaType = "application/json")),
+          @ApiResponse(responseCode = "500", description = "An unplanned error occurred", content = @Content(mediaType = "application/json"))
+      },
+      parameters = {
+          @Parameter(
+              name = "limit", 
+              allowEmptyValue = false, 
+              required = true, 
+              description = "The maximum number of breeds to return (1 to " + MAX_PAGE_SIZE + ").", 
+              in = ParameterIn.QUERY
+          ),
+          @Parameter(
+              name = "after", 
+              allowEmptyValue = false, 
+              required = false, 
+              description = "The next cursor returned with the previous page.", 
+              in = ParameterIn.QUERY
+          )
+      }
+  ) // @formatter:on
+  @GetMapping(params = {"limit", "!category"})
   @ResponseStatus(code = HttpStatus.OK)
-  List<Breed> listBunnyBreeds();
+  BreedPage listBunnyBreedPage(@RequestParam @Min(1) @Max(MAX_PAGE_SIZE) int limit,
+      @RequestParam(required = false) String after);
+
+  /**
+   * This method is routed to when the GET method at http://localhost:8080/bunny is invoked with one
+   * or more "category" parameters. It returns the breeds that match every category parameter. A
+   * parameter may list several category names separated by "|" to match breeds in any of them. A
+   * name that starts with "!" matches breeds that are not in the category. For example,
+   * http://localhost:8080/bunny?category=Lop-eared&category=Smooth&category=!Spotted returns the
+   * lop-eared, smooth breeds that are not spotted. The response also contains the number of
+   * matching breeds in each category.
+   * <p>
+   * The matching breeds are returned one page at a time, sorted by breed ID. The "limit" parameter
+   * sets the page size (default 100). If there are more breeds, the page contains a "next" cursor
+   * to pass in the "after" parameter.
+   * 
+   * @param category The category filter clauses.
+   * @param limit The maximum number of breeds to return.
+   * @param after The "next" cursor from the previous page. Leave this out for the first page.
+   * @return The page of matching breeds and the category counts.
+   */
+  @Operation( // @formatter:off
+      summary = "List bunny breeds by category",
+      description = "List the bunny breeds that match a category filter with the number of matches in each category",
+      responses = {
+          @ApiResponse(responseCode = "200", description = "Returns the matching bunny breeds", content = @Content(mediaType = "application/json", schema = @Schema(implementation = FacetedBreeds.class))),
+          @ApiResponse(responseCode = "400", description = "Invalid category filter, limit or cursor", content = @Content(mediaType = "application/json")),
+          @ApiResponse(responseCode = "500", description = "An unplanned error occurred", content = @Content(mediaType = "application/json"))
+      },
+      parameters = {
+          @Parameter(
+              name = "category", 
+              allowEmptyValue = false, 
+              required = true, 
+              description = "Category names separated by | (any of them). Prefix a name with ! to exclude it. Repeat the parameter to require all of them.", 
+              in = ParameterIn.QUERY
+          ),
+          @Parameter(
+              name = "limit", 
+              allowEmptyValue = false, 
+              required = false, 
+              description = "The maximum number of breeds to return (1 to " + MAX_PAGE_SIZE + ").", 
+              in = ParameterIn.QUERY
+          ),
+          @Parameter(
+              name = "after", 
+              allowEmptyValue = false, 
+              required = false, 
+              description = "The next cursor returned with the previous page.", 
+              in = ParameterIn.QUERY
+          )
+      }
+  ) // @formatter:on
+  @GetMapping(params = "category")
+  @ResponseStatus(code = HttpStatus.OK)
+  FacetedBreeds listBunnyBreedsByCategory(
+      @RequestParam List<@NotBlank @Length(max = 256) String> category,
+      @RequestParam(defaultValue = "100") @Min(1) @Max(MAX_PAGE_SIZE) int limit,
+      @RequestParam(required = false) String after);
+
+  /**
+   * This method is routed to when the GET method at http://localhost:8080/bunny/search is invoked
+   * (i.e., http://localhost:8080/bunny/search?q=long+wool). It searches the breed names, alternate
+   * names and descriptions for the words in the "q" parameter and returns the best matching breeds,
+   * best match first. A breed matches if it contains any of the words. Upper and lower case and
+   * accents are ignored.
+   * 
+   * @param q The search text.
+   * @param limit The maximum number of breeds to return.
+   * @return The matching breeds with their scores.
+   */
+  @Operation( // @formatter:off
+      summary = "Search bunny breeds",
+      description = "Search the bunny breed names, alternate names and descriptions",
+      responses = {
+          @ApiResponse(responseCode = "200", description = "Returns the matching bunny breeds", content = @Content(mediaType = "application/json", schema = @Schema(implementation = SearchHit.class))),
+          @ApiResponse(responseCode = "400", description = "Invalid search text or limit", content = @Content(mediaType = "application/json")),
+          @ApiResponse(responseCode = "500", description = "An unplanned error occurred", content = @Content(mediaType = "application/json"))
+      },
+      parameters = {
+          @Parameter(
+              name = "q", 
+              allowEmptyValue = false, 
+              required = true, 
+              description = "The words to search for.", 
+              in = ParameterIn.QUERY
+          ),
+          @Parameter(
+              name = "limit", 
+              allowEmptyValue = false, 
+              required = false, 
+              description = "The maximum number of breeds to return (1 to " + MAX_SEARCH_RESULTS + ", default 10).", 
+              in = ParameterIn.QUERY
+          )
+      }
+  ) // @formatter:on
+  @GetMapping("/search")
+  @ResponseStatus(code = HttpStatus.OK)
+  List<SearchHit> searchBunnyBreeds(@RequestParam @NotBlank @Length(max = 256) String q,
+      @RequestParam(defaultValue = "10") @Min(1) @Max(MAX_SEARCH_RESULTS) int limit);
+
+  /**
+   * This method is routed to when the GET method at http://localhost:8080/bunny/export is invoked.
+   * It writes every bunny breed, with categories and alternate names, in a format that is easy for
+   * other programs to read. The format is chosen with the "format" parameter:
+   * <ul>
+   * <li>ndjson - One breed JSON object per line (i.e., http://localhost:8080/bunny/export). This is
+   * the default.
+   * <li>csv - One breed per line with a header line (i.e.,
+   * http://localhost:8080/bunny/export?format=csv). Categories and alternate names are separated
+   * by "|".
+   * </ul>
+   * Each breed is written as soon as it is read from the database, so the export uses the same
+   * amount of memory no matter how many breeds there are. If the Accept-Encoding header includes
+   * "gzip", the output is gzip compressed.
+   * 
+   * @param format The output format: "ndjson" or "csv".
+   * @param acceptEncoding The Accept-Encoding request header.
+   * @param response The response that the breeds are written to.
+   * @throws IOException Thrown if the breeds cannot be written to the response.
+   */
+  @Operation( // @formatter:off
+      summary = "Export all bunny breeds",
+      description = "Stream all the bunny breeds as NDJSON or CSV, gzip compressed if accepted",
+      responses = {
+          @ApiResponse(responseCode = "200", description = "Returns all bunny breeds", content = {@Content(mediaType = "application/x-ndjson"), @Content(mediaType = "text/csv")}),
+          @ApiResponse(responseCode = "400", description = "Invalid format", content = @Content(mediaType = "application/json")),
+          @ApiResponse(responseCode = "500", description = "An unplanned error occurred", content = @Content(mediaType = "application/json"))
+      },
+      parameters = {
+          @Parameter(
+              name = "format", 
+              allowEmptyValue = false, 
+              required = false, 
+              description = "The output format: ndjson (the default) or csv.", 
+              in = ParameterIn.QUERY
+          )
+      }
+  ) // @formatter:on
+  @GetMapping("/export")
+  @ResponseStatus(code = HttpStatus.OK)
+  @Bulkhead(Bulkhead.Type.BULK)
+  void exportBunnyBreeds(
+      @RequestParam(defaultValue = "ndjson") @Pattern(regexp = "ndjson|csv") String format,
+      @Parameter(hidden = true) @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING,
+          required = false) String acceptEncoding,
+      @Parameter(hidden = true) HttpServletResponse response) throws IOException;
 
   /**
    * This method returns a specific bunny breed when the GET method at
    * http://localhost:8080/bunny/{breedId} is invoked (i.e., http://localhost:8080/bunny/29).
+   * Like {@link #listBunnyBreeds(List, WebRequest)}, the "fields" parameter limits the fields that
+   * are returned (i.e., http://localhost:8080/bunny/29?fields=breedName,description).
+   * <p>
+   * The response has an ETag header. If the caller sends the ETag back in an If-None-Match header
+   * and the breed has not changed since, the response is 304 (Not Modified) with no body. If the
+   * Accept-Encoding header includes "gzip", the response is gzip compressed. The breed is returned
+   * as CBOR or Smile if the Accept header asks for it.
    * 
-   * @param breedId
-   * @return
+   * @param breedId The breed ID of the breed to return.
+   * @param fields The fields to return. All fields are returned if this is left out.
+   * @param request The request. It is used to check the If-None-Match, Accept and Accept-Encoding
+   *        headers.
+   * @return The breed as encoded bytes, or a 304 response.
    */
   @Operation( // @formatter:off
       summary = "Return a specified bunny breed",
       description = "Return a specified bunny breed with category and alternate names",
       responses = {
-          @ApiResponse(responseCode = "200", description = "Returns a bunny breed", content = @Content(mediaType = "application/json", schema = @Schema(implementation = Breed.class))),
+          @ApiResponse(responseCode = "200", description = "Returns a bunny breed", content = {@Content(mediaType = "application/json", schema = @Schema(implementation = Breed.class)), @Content(mediaType = MediaType.APPLICATION_CBOR_VALUE), @Content(mediaType = BodyFormat.APPLICATION_SMILE_VALUE)}),
+          @ApiResponse(responseCode = "304", description = "The breed has not changed since the ETag in If-None-Match"),
           @ApiResponse(responseCode = "400", description = "Invalid breed ID", content = @Content(mediaType = "application/json")),
           @ApiResponse(responseCode = "404", description = "Breed not found", content = @Content(mediaType = "application/json")),
           @ApiResponse(responseCode = "500", description = "An unplanned error occurred", content = @Content(mediaType = "application/json"))
@@ -87,12 +385,76 @@ public interface BunnyOperations {
               required = true, 
               description = "The breed ID of the breed to return.", 
               in = ParameterIn.PATH
+          ),
+          @Parameter(
+              name = "fields", 
+              allowEmptyValue = false, 
+              required = false, 
+              description = "The fields to return separated by commas (" + BreedField.FIELD_NAME_PATTERN + "). All fields are returned if this is left out.", 
+              in = ParameterIn.QUERY
           )
       }  
   ) // @formatter:on
   @GetMapping("/{breedId}")
+  ResponseEntity<byte[]> getBreed(@PathVariable int breedId,
+      @RequestParam(required = false) List<@Pattern(
+          regexp = BreedField.FIELD_NAME_PATTERN) String> fields,
+      @Parameter(hidden = true) WebRequest request);
+
+  /**
+   * This method returns many bunny breeds when the GET method at http://localhost:8080/bunny/batch
+   * is invoked (i.e., http://localhost:8080/bunny/batch?ids=3,14,29). The breeds are returned in the
+   * order that the IDs were requested. IDs that don't exist are returned in the "missing" list
+   * instead of failing the request. For long lists of IDs, use the POST form of this operation.
+   * 
+   * @param ids The breed IDs.
+   * @return The breeds that were found and the IDs that were not.
+   */
+  @Operation( // @formatter:off
+      summary = "Return many bunny breeds",
+      description = "Return the bunny breeds with the given IDs and list the IDs that were not found",
+      responses = {
+          @ApiResponse(responseCode = "200", description = "Returns the bunny breeds", content = @Content(mediaType = "application/json", schema = @Schema(implementation = BreedBatch.class))),
+          @ApiResponse(responseCode = "400", description = "Invalid breed IDs", content = @Content(mediaType = "application/json")),
+          @ApiResponse(responseCode = "500", description = "An unplanned error occurred", content = @Content(mediaType = "application/json"))
+      },
+      parameters = {
+          @Parameter(
+              name = "ids", 
+              allowEmptyValue = false, 
+              required = true, 
+              description = "The breed IDs separated by commas (1 to " + MAX_BATCH_SIZE + ").", 
+              in = ParameterIn.QUERY
+          )
+      }
+  ) // @formatter:on
+  @GetMapping("/batch")
+  @ResponseStatus(code = HttpStatus.OK)
+  BreedBatch getBreeds(@RequestParam @Size(min = 1, max = MAX_BATCH_SIZE) List<Integer> ids);
+
+  /**
+   * This method returns many bunny breeds when the POST method at
+   * http://localhost:8080/bunny/batch is invoked. It is the same as {@link #getBreeds(List)} except
+   * that the breed IDs are passed in the request body as a JSON array (i.e., [3, 14, 29]), so the
+   * list is not limited by the maximum URL length.
+   * 
+   * @param ids The breed IDs.
+   * @return The breeds that were found and the IDs that were not.
+   */
+  @Operation( // @formatter:off
+      summary = "Return many bunny breeds (long ID lists)",
+      description = "Return the bunny breeds with the IDs in the request body and list the IDs that were not found",
+      responses = {
+          @ApiResponse(responseCode = "200", description = "Returns the bunny breeds", content = @Content(mediaType = "application/json", schema = @Schema(implementation = BreedBatch.class))),
+          @ApiResponse(responseCode = "400", description = "Invalid breed IDs", content = @Content(mediaType = "application/json")),
+          @ApiResponse(responseCode = "500", description = "An unplanned error occurred", content = @Content(mediaType = "application/json"))
+      }
+  ) // @formatter:on
+  @PostMapping("/batch")
   @ResponseStatus(code = HttpStatus.OK)
-  Breed getBreed(@PathVariable int breedId);
+  @Bulkhead(Bulkhead.Type.READ)
+  BreedBatch postBreeds(
+      @RequestBody @Size(min = 1, max = MAX_BATCH_SIZE) List<@NotNull Integer> ids);
 
   /**
    * This method adds a new bunny breed when the HTTP POST verb is invoked at
@@ -117,6 +479,50 @@ public interface BunnyOperations {
   @ResponseStatus(code = HttpStatus.CREATED)
   Breed addBreed(@Valid @RequestBody AddBreedRequest breedRequest);
 
+  /**
+   * This method adds many bunny breeds when the HTTP POST verb is invoked at
+   * http://localhost:8080/bunny/bulk. The request body is NDJSON (newline-delimited JSON) with one
+   * {@link AddBreedRequest} JSON object per line. The body may be gzip compressed if the
+   * Content-Encoding header is "gzip". The body is read and the breeds are added as they arrive, so
+   * there is no limit to the number of breeds.
+   * <p>
+   * The body may also be CBOR ("application/cbor") or Smile ("application/x-jackson-smile"). A
+   * binary body is a sequence of {@link AddBreedRequest} objects or a single array of them. Each
+   * object is numbered like a line of NDJSON. The response is written in the format that the
+   * Accept header asks for (JSON by default).
+   * <p>
+   * The response is a JSON object with the outcome of each line (see {@link BulkImportResult}) and
+   * the number of breeds that were added and that failed. The status is 200 even if some lines
+   * failed. Here is a sample:
+   * 
+   * <pre>
+   * {
+   *   "results": [ { "line": 1, "breedId": 63 }, { "line": 2, "error": "Breed name already exists" } ],
+   *   "imported": 1,
+   *   "failed": 1
+   * }
+   * </pre>
+   * 
+   * @param request The request that the breeds are read from.
+   * @param response The response that the outcomes are written to.
+   * @throws IOException Thrown if the request can't be read or the response can't be written.
+   */
+  @Operation( // @formatter:off
+      summary = "Add many bunny breeds",
+      description = "Add the bunny breeds in an NDJSON, CBOR or Smile body (optionally gzip encoded) and return the outcome of each line",
+      requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(content = {@Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = AddBreedRequest.class)), @Content(mediaType = MediaType.APPLICATION_CBOR_VALUE), @Content(mediaType = BodyFormat.APPLICATION_SMILE_VALUE)}),
+      responses = {
+          @ApiResponse(responseCode = "200", description = "Returns the outcome of each line", content = {@Content(mediaType = "application/json", schema = @Schema(implementation = BulkImportResult.class)), @Content(mediaType = MediaType.APPLICATION_CBOR_VALUE), @Content(mediaType = BodyFormat.APPLICATION_SMILE_VALUE)}),
+          @ApiResponse(responseCode = "500", description = "An unplanned error occurred", content = @Content(mediaType = "application/json"))
+      }
+  ) // @formatter:on
+  @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_NDJSON_VALUE,
+      MediaType.APPLICATION_CBOR_VALUE, BodyFormat.APPLICATION_SMILE_VALUE})
+  @ResponseStatus(code = HttpStatus.OK)
+  @Bulkhead(Bulkhead.Type.BULK)
+  void importBreeds(@Parameter(hidden = true) HttpServletRequest request,
+      @Parameter(hidden = true) HttpServletResponse response) throws IOException;
+
   /**
    * This method modifies an existing bunny breed including categories and alternate names. It is
    * invoked when a PUT verb is sent to http://localhost:8080/bunny. The input must be in the
@@ -141,6 +547,31 @@ public interface BunnyOperations {
   @ResponseStatus(code = HttpStatus.OK)
   Breed modifyBreed(@Valid @RequestBody Breed breedRequest);
 
+  /**
+   * This method modifies many bunny breeds when a PUT verb is sent to
+   * http://localhost:8080/bunny/batch. The request body is a JSON array of {@link Breed} objects,
+   * each with a breed ID. All the breeds are changed in a single transaction. Breed IDs that don't
+   * exist are reported as "not found" in the result instead of failing the request. If any breed
+   * can't be changed (i.e., the new breed name is already used), none of them are changed.
+   * 
+   * @param breedRequests The modified breeds.
+   * @return The outcome of each breed ID.
+   */
+  @Operation( // @formatter:off
+      summary = "Modify many bunny breeds",
+      description = "Modify the bunny breeds in the request body in one transaction and return the outcome of each breed ID",
+      responses = {
+          @ApiResponse(responseCode = "200", description = "Returns the outcome of each breed ID", content = @Content(mediaType = "application/json", schema = @Schema(implementation = BatchResult.class))),
+          @ApiResponse(responseCode = "400", description = "Invalid breed data", content = @Content(mediaType = "application/json")),
+          @ApiResponse(responseCode = "409", description = "Duplicate breed", content = @Content(mediaType = "application/json")),
+          @ApiResponse(responseCode = "500", description = "An unplanned error occurred", content = @Content(mediaType = "application/json"))
+      }
+  ) // @formatter:on
+  @PutMapping("/batch")
+  @ResponseStatus(code = HttpStatus.OK)
+  BatchResult modifyBreeds(
+      @RequestBody @Size(min = 1, max = MAX_BATCH_SIZE) List<@NotNull @Valid Breed> breedRequests);
+
   /**
    * This method deletes a bunny breed when a DELETE verb is invoked at
    * http://localhost:8080/bunny/{breedId} (i.e., http://localhost:8080/bunny/5).
@@ -169,4 +600,68 @@ public interface BunnyOperations {
   @DeleteMapping("/{breedId}")
   @ResponseStatus(code = HttpStatus.OK)
   void deleteBreed(@PathVariable int breedId);
+
+  /**
+   * This method deletes many bunny breeds when a DELETE verb is invoked at
+   * http://localhost:8080/bunny/batch (i.e., http://localhost:8080/bunny/batch?ids=3,14,29). All the
+   * breeds are deleted in a single transaction. Breed IDs that don't exist are reported as "not
+   * found" in the result instead of failing the request.
+   * 
+   * @param ids The breed IDs of the breeds to delete.
+   * @return The outcome of each breed ID.
+   */
+  @Operation( // @formatter:off
+      summary = "Delete many bunny breeds",
+      description = "Delete the bunny breeds with the given IDs in one transaction and return the outcome of each breed ID",
+      responses = {
+          @ApiResponse(responseCode = "200", description = "Returns the outcome of each breed ID", content = @Content(mediaType = "application/json", schema = @Schema(implementation = BatchResult.class))),
+          @ApiResponse(responseCode = "400", description = "Invalid breed IDs", content = @Content(mediaType = "application/json")),
+          @ApiResponse(responseCode = "500", description = "An unplanned error occurred", content = @Content(mediaType = "application/json"))
+      },
+      parameters = {
+          @Parameter(
+              name = "ids", 
+              allowEmptyValue = false, 
+              required = true, 
+              description = "The breed IDs separated by commas (1 to " + MAX_BATCH_SIZE + ").", 
+              in = ParameterIn.QUERY
+          )
+      }
+  ) // @formatter:on
+  @DeleteMapping(value = "/batch", params = "ids")
+  @ResponseStatus(code = HttpStatus.OK)
+  BatchResult deleteBreeds(@RequestParam @Size(min = 1, max = MAX_BATCH_SIZE) List<Integer> ids);
+
+  /**
+   * This method deletes every bunny breed in a category when a DELETE verb is invoked at
+   * http://localhost:8080/bunny/batch with a "category" parameter (i.e.,
+   * http://localhost:8080/bunny/batch?category=Spotted). The breeds are deleted in a single
+   * transaction. The category itself is not deleted. If the category does not exist, the result is
+   * empty.
+   * 
+   * @param category The category name.
+   * @return The outcome of each breed that was in the category.
+   */
+  @Operation( // @formatter:off
+      summary = "Delete the bunny breeds in a category",
+      description = "Delete every bunny breed in the given category in one transaction and return the outcome of each breed ID",
+      responses = {
+          @ApiResponse(responseCode = "200", description = "Returns the outcome of each breed ID", content = @Content(mediaType = "application/json", schema = @Schema(implementation = BatchResult.class))),
+          @ApiResponse(responseCode = "400", description = "Invalid category name", content = @Content(mediaType = "application/json")),
+          @ApiResponse(responseCode = "500", description = "An unplanned error occurred", content = @Content(mediaType = "application/json"))
+      },
+      parameters = {
+          @Parameter(
+              name = "category", 
+              allowEmptyValue = false, 
+              required = true, 
+              description = "The name of the category whose breeds are deleted.", 
+              in = ParameterIn.QUERY
+          )
+      }
+  ) // @formatter:on
+  @DeleteMapping(value = "/batch", params = "category")
+  @ResponseStatus(code = HttpStatus.OK)
+  BatchResult deleteBreedsInCategory(
+      @RequestParam @NotBlank @Length(max = 32) String category);
 }
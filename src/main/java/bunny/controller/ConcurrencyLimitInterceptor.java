@@ -0,0 +1,178 @@
+/**
+ *
+ */
+package bunny.controller;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import bunny.exception.OverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * This class limits the number of bunny operations that run at the same time. The operations are
+ * split into bulkheads (see {@link Bulkhead}) so that slow writes can't use up the capacity for
+ * reads and the other way around. Each bulkhead has its own adaptive {@link ConcurrencyLimiter}.
+ * The bulk bulkhead (streaming, export and import) has a small fixed limit because its requests
+ * take as long as the catalog is big, which says nothing about the health of the database.
+ * <p>
+ * A request that is over the limit is rejected before it reaches the controller. An
+ * {@link OverloadedException} is thrown, which the {@link ErrorHandler} turns into a 503 (Service
+ * Unavailable) response with a Retry-After header. The limiter is set with these properties:
+ * <ul>
+ * <li>bunny.limiter.enabled - Set this to false to turn the limiter off (default true).
+ * <li>bunny.limiter.initial-limit - The read and write limits when the application starts
+ * (default 20).
+ * <li>bunny.limiter.min-limit and bunny.limiter.max-limit - The range of the read and write limits
+ * (default 4 to 200).
+ * <li>bunny.limiter.bulk-limit - The fixed bulk limit (default 4).
+ * <li>bunny.limiter.retry-after - The Retry-After time of a rejected request (default 1 second).
+ * </ul>
+ * The current limit and the number of running requests of each bulkhead are published as the
+ * bunny.limiter.limit and bunny.limiter.in-flight gauges, and rejected requests are counted in
+ * bunny.limiter.rejected. Each has a "bulkhead" tag. See
+ * http://localhost:8080/actuator/metrics/bunny.limiter.limit.
+ *
+ * @author Promineo
+ *
+ */
+@Component
+@ConditionalOnProperty(name = "bunny.limiter.enabled", matchIfMissing = true)
+public class ConcurrencyLimitInterceptor implements HandlerInterceptor, WebMvcConfigurer {
+
+  /** The limiter of the request is kept in this request attribute. */
+  private static final String LIMITER_ATTRIBUTE = ConcurrencyLimitInterceptor.class + ".limiter";
+
+  /** The System.nanoTime() when the request started is kept in this request attribute. */
+  private static final String START_ATTRIBUTE = ConcurrencyLimitInterceptor.class + ".start";
+
+  @Value("${bunny.limiter.initial-limit:20}")
+  private int initialLimit;
+
+  @Value("${bunny.limiter.min-limit:4}")
+  private int minLimit;
+
+  @Value("${bunny.limiter.max-limit:200}")
+  private int maxLimit;
+
+  @Value("${bunny.limiter.bulk-limit:4}")
+  private int bulkLimit;
+
+  @Value("${bunny.limiter.retry-after:1s}")
+  private Duration retryAfter;
+
+  /** Spring Boot creates the meter registry when Actuator is on the classpath. */
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  private final Map<Bulkhead.Type, ConcurrencyLimiter> limiters =
+      new EnumMap<>(Bulkhead.Type.class);
+
+  private final Map<Bulkhead.Type, Counter> rejections = new EnumMap<>(Bulkhead.Type.class);
+
+  /**
+   * Create a limiter for each bulkhead after Spring has injected the properties, and register the
+   * limiter metrics.
+   */
+  @PostConstruct
+  public void createLimiters() {
+    limiters.put(Bulkhead.Type.READ, new ConcurrencyLimiter(initialLimit, minLimit, maxLimit));
+    limiters.put(Bulkhead.Type.WRITE, new ConcurrencyLimiter(initialLimit, minLimit, maxLimit));
+    limiters.put(Bulkhead.Type.BULK, new ConcurrencyLimiter(bulkLimit, bulkLimit, bulkLimit));
+
+    limiters.forEach((type, limiter) -> {
+      String bulkhead = type.name().toLowerCase(Locale.ROOT);
+
+      Gauge.builder("bunny.limiter.limit", limiter, ConcurrencyLimiter::getLimit)
+          .tag("bulkhead", bulkhead).register(meterRegistry);
+
+      Gauge.builder("bunny.limiter.in-flight", limiter, ConcurrencyLimiter::getInFlight)
+          .tag("bulkhead", bulkhead).register(meterRegistry);
+
+      rejections.put(type,
+          Counter.builder("bunny.limiter.rejected").tag("bulkhead", bulkhead)
+              .register(meterRegistry));
+    });
+  }
+
+  /**
+   * Apply the limiter to the bunny operations.
+   */
+  @Override
+  public void addInterceptors(InterceptorRegistry registry) {
+    registry.addInterceptor(this).addPathPatterns("/bunny", "/bunny/**");
+  }
+
+  /**
+   * Start the request if its bulkhead has room. If not, an {@link OverloadedException} is thrown.
+   */
+  @Override
+  public boolean preHandle(HttpServletRequest request, HttpServletResponse response,
+      Object handler) {
+    if (!(handler instanceof HandlerMethod handlerMethod)) {
+      return true;
+    }
+
+    Bulkhead.Type type = bulkhead(request, handlerMethod);
+    ConcurrencyLimiter limiter = limiters.get(type);
+
+    if (!limiter.tryAcquire()) {
+      rejections.get(type).increment();
+
+      throw new OverloadedException("Too many " + type.name().toLowerCase(Locale.ROOT)
+          + " requests, limit=" + (int) limiter.getLimit(), retryAfter);
+    }
+
+    request.setAttribute(LIMITER_ATTRIBUTE, limiter);
+    request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+
+    return true;
+  }
+
+  /**
+   * Finish the request and pass its latency to the limiter. This is called whether or not the
+   * request succeeded.
+   */
+  @Override
+  public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+      Object handler, Exception ex) {
+    if (request.getAttribute(LIMITER_ATTRIBUTE) instanceof ConcurrencyLimiter limiter) {
+      request.removeAttribute(LIMITER_ATTRIBUTE);
+      limiter.release(System.nanoTime() - (long) request.getAttribute(START_ATTRIBUTE));
+    }
+  }
+
+  /**
+   * Returns the bulkhead of an operation. See {@link Bulkhead}.
+   *
+   * @param request The request.
+   * @param handlerMethod The controller method.
+   * @return The bulkhead.
+   */
+  private Bulkhead.Type bulkhead(HttpServletRequest request, HandlerMethod handlerMethod) {
+    Bulkhead bulkhead = handlerMethod.getMethodAnnotation(Bulkhead.class);
+
+    if (Objects.nonNull(bulkhead)) {
+      return bulkhead.value();
+    }
+
+    return HttpMethod.GET.matches(request.getMethod()) ? Bulkhead.Type.READ
+        : Bulkhead.Type.WRITE;
+  }
+}
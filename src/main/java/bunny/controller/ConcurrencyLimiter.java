@@ -0,0 +1,133 @@
+/**
+ *
+ */
+package bunny.controller;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class limits the number of requests that run at the same time in one bulkhead. The limit
+ * adapts to the observed latency with a gradient algorithm:
+ * <ul>
+ * <li>Two averages of the request latency are kept: a long-term average (the latency the database
+ * can normally deliver) and a short-term average (the latency right now).
+ * <li>After each request, the gradient is the long-term average divided by the short-term average
+ * (times a tolerance), kept between 0.5 and 1. When the database slows down, the short-term
+ * average goes up, the gradient goes below 1 and the limit shrinks. When the latency is normal, the
+ * gradient is 1 and the limit grows by a small queue allowance (the square root of the limit).
+ * <li>The limit only changes while at least half of it is in use. Otherwise, the latency says
+ * nothing about how many requests the database can handle.
+ * </ul>
+ * So, when MySQL slows down, fewer requests wait on it and the extra requests are rejected right
+ * away instead of tying up Tomcat threads. If the minimum and maximum limits are the same, the
+ * limit is fixed.
+ *
+ * @author Promineo
+ *
+ */
+public class ConcurrencyLimiter {
+
+  /** This is the weight of each sample in the short-term average latency. */
+  private static final double SHORT_SMOOTHING = 0.1;
+
+  /** This is the weight of each sample in the long-term average latency. */
+  private static final double LONG_SMOOTHING = 1.0 / 600;
+
+  /** This is the weight of each new limit in the limit. */
+  private static final double LIMIT_SMOOTHING = 0.2;
+
+  /** The latency can grow this much before the limit shrinks. */
+  private static final double TOLERANCE = 1.5;
+
+  private final int minLimit;
+  private final int maxLimit;
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  /** The limit is a double so that it can grow and shrink in small steps. */
+  private volatile double limit;
+
+  private double shortLatency;
+  private double longLatency;
+
+  /**
+   * Create a limiter.
+   *
+   * @param initialLimit The limit when the application starts.
+   * @param minLimit The limit never goes below this.
+   * @param maxLimit The limit never goes above this.
+   */
+  public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+  }
+
+  /**
+   * Start a request if the limit allows it. If this returns {@code true}, the caller must call
+   * {@link #release(long)} when the request is finished.
+   *
+   * @return {@code true} if the request can run, {@code false} if it must be rejected.
+   */
+  public boolean tryAcquire() {
+    if (inFlight.incrementAndGet() > (int) limit) {
+      inFlight.decrementAndGet();
+      return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Finish a request and adjust the limit with its latency.
+   *
+   * @param latencyNanos The time the request took.
+   */
+  public void release(long latencyNanos) {
+    int running = inFlight.getAndDecrement();
+
+    synchronized (this) {
+      if (longLatency == 0) {
+        shortLatency = latencyNanos;
+        longLatency = latencyNanos;
+        return;
+      }
+
+      shortLatency += (latencyNanos - shortLatency) * SHORT_SMOOTHING;
+      longLatency += (latencyNanos - longLatency) * LONG_SMOOTHING;
+
+      /* Let the long-term average catch up quickly after a long slow period has ended. */
+      if (longLatency > 2 * shortLatency) {
+        longLatency *= 0.95;
+      }
+
+      if (running * 2 < limit) {
+        return;
+      }
+
+      double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longLatency / shortLatency));
+      double newLimit = limit * gradient + Math.sqrt(limit);
+
+      limit = Math.max(minLimit,
+          Math.min(maxLimit, limit * (1 - LIMIT_SMOOTHING) + newLimit * LIMIT_SMOOTHING));
+    }
+  }
+
+  /**
+   * Returns the current limit.
+   *
+   * @return The limit.
+   */
+  public double getLimit() {
+    return limit;
+  }
+
+  /**
+   * Returns the number of requests that are running.
+   *
+   * @return The number of requests.
+   */
+  public int getInFlight() {
+    return inFlight.get();
+  }
+}
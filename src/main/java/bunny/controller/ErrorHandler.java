@@ -11,7 +11,10 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.stream.Collectors;
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.ConstraintViolationException;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -23,8 +26,8 @@ import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 import bunny.entity.AddBreedRequest;
 import bunny.exception.AlreadyExistsException;
-import bunny.exception.DeleteBreedException;
 import bunny.exception.FieldValidationException;
+import bunny.exception.OverloadedException;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -64,22 +67,6 @@ public class ErrorHandler {
     STACK_TRACE, MESSAGE_ONLY
   }
 
-  /**
-   * This is the handler for a custom {@link DeleteBreedException}. This exception is thrown if the
-   * breed cannot be deleted for some reason.
-   * 
-   * @param e The caught exception.
-   * @param webRequest The Spring-supplied object that describes the request.
-   * @return A map containing information about the error.
-   */
-  @ExceptionHandler(DeleteBreedException.class)
-  @ResponseStatus(code = HttpStatus.INTERNAL_SERVER_ERROR)
-  public Map<String, Object> handleDeleteBreedException(DeleteBreedException e,
-      WebRequest webRequest) {
-    return createExceptionMessage(e, HttpStatus.INTERNAL_SERVER_ERROR, webRequest,
-        LogStatus.MESSAGE_ONLY);
-  }
-
   /**
    * This is the handler for Spring's {@link DuplicateKeyException}. This exception is thrown if the
    * user adds a bunny with a name that already exists.
@@ -148,6 +135,51 @@ public class ErrorHandler {
     return createExceptionMessage(alt, HttpStatus.BAD_REQUEST, webRequest, LogStatus.MESSAGE_ONLY);
   }
 
+  /**
+   * This method handles a {@link ConstraintViolationException}. This exception is thrown if a
+   * simple controller argument (like a URL parameter) fails Bean validation. For example, this is
+   * thrown if the "limit" parameter in the paged list operation is larger than the maximum page
+   * size.
+   * 
+   * @param e The caught exception.
+   * @param webRequest The Spring-supplied object that describes the request.
+   * @return A map containing information about the error.
+   */
+  @ExceptionHandler(ConstraintViolationException.class)
+  @ResponseStatus(code = HttpStatus.BAD_REQUEST)
+  public Map<String, Object> handleConstraintViolationException(ConstraintViolationException e,
+      WebRequest webRequest) {
+
+    /*
+     * The property path looks like "listBunnyBreedPage.limit". Only the last part (the parameter
+     * name) is returned to the caller so that method names are not revealed.
+     */
+    String errorFieldNames = e.getConstraintViolations()
+        .stream() // @formatter:off
+        .map(violation -> violation.getPropertyPath().toString())
+        .map(path -> path.substring(path.lastIndexOf('.') + 1))
+        .collect(Collectors.joining(", ")); // @formatter:on
+
+    Exception alt = new FieldValidationException("Invalid field(s): " + errorFieldNames);
+    return createExceptionMessage(alt, HttpStatus.BAD_REQUEST, webRequest, LogStatus.MESSAGE_ONLY);
+  }
+
+  /**
+   * This method handles a {@link FieldValidationException}. This exception is thrown by the service
+   * if a request parameter is valid according to Bean Validation but still cannot be used, like an
+   * invalid page cursor.
+   * 
+   * @param e The caught exception.
+   * @param webRequest The Spring-supplied object that describes the request.
+   * @return A map containing information about the error.
+   */
+  @ExceptionHandler(FieldValidationException.class)
+  @ResponseStatus(code = HttpStatus.BAD_REQUEST)
+  public Map<String, Object> handleFieldValidationException(FieldValidationException e,
+      WebRequest webRequest) {
+    return createExceptionMessage(e, HttpStatus.BAD_REQUEST, webRequest, LogStatus.MESSAGE_ONLY);
+  }
+
   /**
    * This method handles the MethodArgumentTypeMismatchException. This exception is thrown when
    * simple arguments are supplied to a controller method (like an URL parameter breedId). If the
@@ -180,6 +212,28 @@ public class ErrorHandler {
     return createExceptionMessage(e, HttpStatus.NOT_FOUND, webRequest, LogStatus.MESSAGE_ONLY);
   }
 
+  /**
+   * This handles the {@link OverloadedException}, which is thrown by the
+   * {@link ConcurrencyLimitInterceptor} if too many requests are running. The status is 503
+   * (Service Unavailable) and the Retry-After header tells the caller how many seconds to wait
+   * before trying again.
+   * 
+   * @param e The {@link OverloadedException}.
+   * @param webRequest The Spring-supplied WebRequest object.
+   * @param response The response. It is used to set the Retry-After header.
+   * @return A detailed error message.
+   */
+  @ExceptionHandler(OverloadedException.class)
+  @ResponseStatus(code = HttpStatus.SERVICE_UNAVAILABLE)
+  public Map<String, Object> handleOverloadedException(OverloadedException e,
+      WebRequest webRequest, HttpServletResponse response) {
+    long seconds = Math.max(1, e.getRetryAfter().toSeconds());
+
+    response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(seconds));
+    return createExceptionMessage(e, HttpStatus.SERVICE_UNAVAILABLE, webRequest,
+        LogStatus.MESSAGE_ONLY);
+  }
+
   /**
    * This handles any unplanned runtime exceptions that may occur in the application.
    * 
@@ -0,0 +1,50 @@
+/**
+ *
+ */
+package bunny.controller;
+
+import java.io.IOException;
+import java.util.Objects;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import bunny.dao.ReplicaRoutingDataSource;
+
+/**
+ * This filter tells the {@link ReplicaRoutingDataSource} which client sent the request, so that a
+ * client that has just written reads its own writes from the primary database. The client is the
+ * X-Client-Id header if the caller sends one. Otherwise, it is the caller's IP address. The filter
+ * is only created when replica databases are configured.
+ *
+ * @author Promineo
+ *
+ */
+@Component
+@ConditionalOnProperty("bunny.replicas.urls")
+public class ReplicaClientFilter extends OncePerRequestFilter {
+
+  /** This optional request header identifies the client. */
+  private static final String CLIENT_ID_HEADER = "X-Client-Id";
+
+  @Autowired
+  private ReplicaRoutingDataSource router;
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+      FilterChain filterChain) throws ServletException, IOException {
+    String clientId = request.getHeader(CLIENT_ID_HEADER);
+
+    router.setClient(Objects.isNull(clientId) ? request.getRemoteAddr() : clientId);
+
+    try {
+      filterChain.doFilter(request, response);
+    } finally {
+      router.clearClient();
+    }
+  }
+}
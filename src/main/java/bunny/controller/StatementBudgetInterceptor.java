@@ -0,0 +1,138 @@
+/**
+ *
+ */
+package bunny.controller;
+
+import java.util.stream.Collectors;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+import bunny.dao.MeteredJdbcTemplate;
+import bunny.dao.StatementStats;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class counts the SQL statements of each bunny operation and the time they take (see
+ * {@link StatementStats}). A request that runs more statements than the statement budget, or that
+ * runs the same statement shape more often than the repeat limit (an N+1 query), is written to the
+ * log with the shapes of its statements. The limits are set with these properties:
+ * <ul>
+ * <li>bunny.sql.statement-budget - The most statements a request should run (default 20).
+ * <li>bunny.sql.repeat-limit - The most times a request should run one statement shape (default
+ * 10).
+ * </ul>
+ * The counts are also returned in response headers, so that a test can check that an operation
+ * doesn't run more statements than it used to:
+ * <ul>
+ * <li>X-Sql-Statements - The number of statements.
+ * <li>X-Sql-Time-Millis - The total time of the statements.
+ * <li>X-Sql-Budget-Exceeded - "true" if a limit was exceeded. It is left out otherwise.
+ * </ul>
+ * The headers must be set before the body is written, so they are set when the body is converted.
+ * The streaming and export operations write the body themselves, so they don't get the headers.
+ * Their requests are still logged. Slow statements are logged by the {@link MeteredJdbcTemplate}.
+ *
+ * @author Promineo
+ *
+ */
+@ControllerAdvice
+@Slf4j
+public class StatementBudgetInterceptor
+    implements HandlerInterceptor, WebMvcConfigurer, ResponseBodyAdvice<Object> {
+
+  public static final String STATEMENTS_HEADER = "X-Sql-Statements";
+  public static final String TIME_HEADER = "X-Sql-Time-Millis";
+  public static final String EXCEEDED_HEADER = "X-Sql-Budget-Exceeded";
+
+  @Value("${bunny.sql.statement-budget:20}")
+  private int statementBudget;
+
+  @Value("${bunny.sql.repeat-limit:10}")
+  private int repeatLimit;
+
+  /**
+   * Count the statements of the bunny operations.
+   */
+  @Override
+  public void addInterceptors(InterceptorRegistry registry) {
+    registry.addInterceptor(this).addPathPatterns("/bunny", "/bunny/**");
+  }
+
+  /**
+   * Start counting the statements of the request.
+   */
+  @Override
+  public boolean preHandle(HttpServletRequest request, HttpServletResponse response,
+      Object handler) {
+    StatementStats.start();
+    return true;
+  }
+
+  /**
+   * Stop counting the statements of the request and log the request if it exceeded a limit. This
+   * is called whether or not the request succeeded.
+   */
+  @Override
+  public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+      Object handler, Exception ex) {
+    StatementStats.finish().filter(this::exceeded).ifPresent(stats -> {
+      String shapes = stats.getShapes().entrySet()
+          .stream() // @formatter:off
+          .map(entry -> entry.getValue() + " x " + entry.getKey())
+          .collect(Collectors.joining("; ")); // @formatter:on
+
+      log.warn("SQL budget exceeded: {} {} ran {} statements in {} ms: {}", request.getMethod(),
+          request.getRequestURI(), stats.getStatements(), stats.getMillis(), shapes);
+    });
+  }
+
+  /**
+   * The headers are added to every response body that is converted.
+   */
+  @Override
+  public boolean supports(MethodParameter returnType,
+      Class<? extends HttpMessageConverter<?>> converterType) {
+    return true;
+  }
+
+  /**
+   * Add the statement counts of the request to the response headers.
+   */
+  @Override
+  public Object beforeBodyWrite(Object body, MethodParameter returnType,
+      MediaType selectedContentType, Class<? extends HttpMessageConverter<?>> selectedConverterType,
+      ServerHttpRequest request, ServerHttpResponse response) {
+    StatementStats.current().ifPresent(stats -> {
+      response.getHeaders().set(STATEMENTS_HEADER, Integer.toString(stats.getStatements()));
+      response.getHeaders().set(TIME_HEADER, Long.toString(stats.getMillis()));
+
+      if (exceeded(stats)) {
+        response.getHeaders().set(EXCEEDED_HEADER, "true");
+      }
+    });
+
+    return body;
+  }
+
+  /**
+   * Returns {@code true} if a request exceeded the statement budget or the repeat limit.
+   *
+   * @param stats The statements of the request.
+   * @return {@code true} if a limit was exceeded.
+   */
+  private boolean exceeded(StatementStats stats) {
+    /* A shape can't run more often than there are statements, so the shapes are rarely needed. */
+    return stats.getStatements() > statementBudget
+        || stats.getStatements() > repeatLimit && stats.getMaxRepeats() > repeatLimit;
+  }
+}
@@ -0,0 +1,108 @@
+/**
+ *
+ */
+package bunny.dao;
+
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * This class runs code when the current transaction ends. The in-memory copies of the catalog (the
+ * caches, indexes and versions) must not see a change until the change is committed. Otherwise, a
+ * rollback would leave something in memory that is not in the database.
+ * <p>
+ * Each method runs the code right away if there is no transaction. Outside of a transaction each
+ * statement is committed as soon as it runs, so the change is already committed.
+ *
+ * @author Promineo
+ *
+ */
+public final class AfterCommit {
+
+  private AfterCommit() {}
+
+  /**
+   * Run the given code after the current transaction commits. Nothing is run if the transaction
+   * rolls back.
+   *
+   * @param action The code to run.
+   */
+  public static void run(Runnable action) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          action.run();
+        }
+      });
+    } else {
+      action.run();
+    }
+  }
+
+  /**
+   * Run the given code after the current transaction commits or rolls back.
+   *
+   * @param action The code to run.
+   */
+  public static void afterCompletion(Runnable action) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCompletion(int status) {
+          action.run();
+        }
+      });
+    } else {
+      action.run();
+    }
+  }
+
+  /**
+   * Add an item to the items collected by the current transaction, and pass all of them to the
+   * given code once after the transaction commits. The items are kept as a transaction resource
+   * under the given key. This is used when applying a change costs the same for one item as for
+   * many. For example, a bulk import of 1,000 breeds patches the catalog snapshot once, not 1,000
+   * times.
+   *
+   * @param <T> The type of the items.
+   * @param key The key of the items. Each caller must use its own key.
+   * @param item The item to add.
+   * @param action The code that is given the items. Only the action passed with the first item of
+   *        a transaction is run.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> void collect(Object key, T item, Consumer<Set<T>> action) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      action.accept(Set.of(item));
+      return;
+    }
+
+    Set<T> items = (Set<T>) TransactionSynchronizationManager.getResource(key);
+
+    if (Objects.isNull(items)) {
+      Set<T> pending = new LinkedHashSet<>();
+      TransactionSynchronizationManager.bindResource(key, pending);
+
+      TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+        @Override
+        public void afterCommit() {
+          action.accept(pending);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+          TransactionSynchronizationManager.unbindResourceIfPossible(key);
+        }
+      });
+
+      items = pending;
+    }
+
+    items.add(item);
+  }
+}
@@ -3,16 +3,36 @@
  */
 package bunny.dao;
 
-import java.math.BigInteger;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.regex.Pattern;
+import java.util.StringJoiner;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
@@ -22,7 +42,10 @@ import org.springframework.stereotype.Component;
 import bunny.entity.AddBreedRequest;
 import bunny.entity.Category;
 import bunny.entity.Breed;
+import bunny.entity.BreedField;
 import bunny.service.BunnyService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -66,12 +89,14 @@ import lombok.extern.slf4j.Slf4j;
 public class BunnyDao {
 
   /** These constants are the column names. They can be easily changed here if necessary. */
+  private static final String ALTERNATE_ID = "alternate_id";
   private static final String ALTERNATE_NAME = "alternate_name";
   private static final String BREED_ID = "breed_id";
   private static final String BREED_NAME = "breed_name";
   private static final String CATEGORY_ID = "category_id";
   private static final String CATEGORY_NAME = "category_name";
   private static final String DESCRIPTION = "description";
+  private static final String VERSION = "version";
 
   /** These are the table names. */
   private static final String ALT_NAME_TABLE = "alt_name";
@@ -79,6 +104,18 @@ public class BunnyDao {
   private static final String BREED_TABLE = "breed";
   private static final String CATEGORY_TABLE = "category";
 
+  /**
+   * These are the column aliases used when the alternate names or category IDs are joined into a
+   * single column with GROUP_CONCAT. The separator cannot appear in a name because the names are
+   * validated with the pattern "[\w- ]+".
+   */
+  private static final String ALTERNATE_NAMES = "alternate_names";
+  private static final String CATEGORY_IDS = "category_ids";
+  private static final String NAME_SEPARATOR = "|";
+
+  /** This is the largest number of values put in a single "IN (...)" list. */
+  private static final int MAX_IN_LIST_SIZE = 1000;
+
   /**
    * Spring injects a NamedParameterJdbcTemplate, which manages the conversion of placeholders to
    * parameter values. The parameter values are injected into a JDBC {@link PreparedStatement} in
@@ -87,186 +124,658 @@ public class BunnyDao {
   @Autowired
   private NamedParameterJdbcTemplate jdbcTemplate;
 
+  /** This maps category names to IDs and back. See {@link CategoryDictionary} for details. */
+  @Autowired
+  private CategoryDictionary categoryDictionary;
+
+  /**
+   * This is the JDBC fetch size used when breeds are streamed. See
+   * {@link #streamAllBreedDetails(Consumer)} for details.
+   */
+  @Value("${bunny.stream.fetch-size:1000}")
+  private int streamFetchSize;
+
+  /** Spring Boot creates the meter registry when Actuator is on the classpath. */
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  /**
+   * This records the number of rows inserted, updated and deleted by each call to
+   * {@link #modifyBunny(Breed)}.
+   */
+  private DistributionSummary modifyRowsTouched;
+
   /**
-   * This returns a list of all breeds in the breed table.
+   * This returns a list of all breeds in the breed table along with their alternate names and
+   * category names. Instead of running two child queries for every breed (which costs 2N+1 round
+   * trips for N breeds), the breeds are read with one query, all the alternate names are read with
+   * a second query, and all the breed categories are read with a third query. The child rows are
+   * then attached to their breeds in memory. So, no matter how many breeds there are, this method
+   * runs at most three queries.
+   * <p>
+   * Only the requested fields are read. The description column is only selected if the description
+   * is requested, and the alternate name and category queries are only run if the alternate names
+   * or category names are requested. So a list of breed IDs and names costs a single query.
    * 
-   * @return The list of breeds.
+   * @param fields The fields to read. Fields that are not requested are left {@code null}.
+   * @return The list of breeds with the requested fields.
    */
-  public List<Breed> fetchAllBreeds() {
-    log.info("Dao: List bunny breeds");
+  public List<Breed> fetchAllBreedDetails(Set<BreedField> fields) {
+    log.info("Dao: List bunny breeds with fields {}", fields);
 
     /*
-     * This is a text block. The parameter placeholders (%s) are replaced by the parameters in the
-     * formatted() method in the same order that they occur in the text block. When formatted, this
-     * will be "SELECT b.* FROM breed b ORDER BY b.breed_name". No parameter map is required.
+     * When formatted with every field, this will be: "SELECT b.breed_id, b.breed_name,
+     * b.description FROM breed b ORDER BY b.breed_name".
      */
     String sql = """
-        SELECT b.*
+        SELECT %s
         FROM %s b
         ORDER BY b.%s
-        """.formatted(BREED_TABLE, BREED_NAME);
+        """.formatted(breedColumns(fields), BREED_TABLE, BREED_NAME);
 
-    /*
-     * Note the Lambda expression that replaces the RowMapper anonymous inner class. This could also
-     * be written like this:
-     */
-    // return jdbcTemplate.query(sql, new RowMapper<>() {
-    // @Override
-    // public Breed mapRow(ResultSet rs, int rowNum) throws SQLException {
-    // return Breed.builder()
-    // .breedId(rs.getInt(BREED_ID))
-    // .breedName(rs.getString(BREED_NAME))
-    // .description(rs.getString(DESCRIPTION))
-    // .build();
-    // }});
-
-    return jdbcTemplate.query(sql, (rs, rowNum) -> // @formatter:off
-        Breed.builder()
-            .breedId(rs.getInt(BREED_ID))
-            .breedName(rs.getString(BREED_NAME))
-            .description(rs.getString(DESCRIPTION))
-            .build()); // @formatter:on
+    List<Breed> breeds = jdbcTemplate.query(sql, (rs, rowNum) -> mapBreed(rs, fields));
+
+    /* There is no WHERE clause because we want the child rows for every breed. */
+    addBreedDetails(breeds, "", Map.of(), fields);
+
+    return breeds;
   }
 
   /**
-   * Returns the alternate names for a given breed. This is done in a separate method because, if a
-   * join is used, the breed information is repeated for each row with an alternate name. For
-   * example, if you have the SQL query like this:
-   * 
-   * <pre>
-   * SELECT b.*, an.*
-   * FROM breed b
-   * LEFT JOIN alt_name an USING (breed_id)
-   * </pre>
+   * Returns the breed table columns needed for the given fields. The breed ID is always selected.
    * 
-   * you will get a bunch of nulls for breeds with no alternate names and duplicate row data for
-   * breeds with multiple alternate names like this partial report:
+   * @param fields The requested fields.
+   * @return The columns separated by commas, like "b.breed_id, b.breed_name".
+   */
+  private String breedColumns(Set<BreedField> fields) {
+    StringJoiner columns = new StringJoiner(", ");
+    columns.add("b." + BREED_ID);
+
+    if (fields.contains(BreedField.BREED_NAME)) {
+      columns.add("b." + BREED_NAME);
+    }
+
+    if (fields.contains(BreedField.DESCRIPTION)) {
+      columns.add("b." + DESCRIPTION);
+    }
+
+    return columns.toString();
+  }
+
+  /**
+   * Create a breed from the current row of a result set that was read with the columns returned by
+   * {@link #breedColumns(Set)}. The lists of the fields that were not requested are set to
+   * {@code null} so that they are not written to the JSON.
    * 
-   * <pre>
-   * breed_id | breed_name      | description  | alternate_id | breed_id | alternate_name 
-   *        1 | American Rabbit | American...  |       [NULL] |   [NULL] | [NULL]
-   *       10 | Checked Giant   | Checkered... |            2 |       10 | Giant Papillon
-   *       11 | Chinchilla      | Chinchill... |       [NULL] |   [NULL] | [NULL]
-   *       14 | Dwarf Lop       | Dwarf lop... |            5 |       14 | Klein Widder
-   *       14 | Dwarf Lop       | Dwarf lop... |            5 |       14 | Mini Lop
-   * </pre>
+   * @param rs The result set positioned on a row.
+   * @param fields The requested fields.
+   * @return The breed with the requested fields.
+   * @throws SQLException Thrown if a column can't be read.
+   */
+  private Breed mapBreed(ResultSet rs, Set<BreedField> fields) throws SQLException {
+    Breed breed = Breed
+        .builder() // @formatter:off
+        .breedId(rs.getInt(BREED_ID))
+        .breedName(fields.contains(BreedField.BREED_NAME) ? rs.getString(BREED_NAME) : null)
+        .description(fields.contains(BreedField.DESCRIPTION) ? rs.getString(DESCRIPTION) : null)
+        .build(); // @formatter:on
+
+    if (!fields.contains(BreedField.ALTERNAME_NAMES)) {
+      breed.setAlternameNames(null);
+    }
+
+    if (!fields.contains(BreedField.CATEGORY_NAMES)) {
+      breed.setCategoryNames(null);
+    }
+
+    return breed;
+  }
+
+  /**
+   * This passes every breed, with its alternate names and category names, to the given consumer.
+   * The breeds are passed one at a time as the rows are read. No list of breeds is built so the
+   * memory used does not depend on the number of breeds.
+   * <p>
+   * The alternate names and category names are returned in the same row as the breed by using
+   * GROUP_CONCAT in a subquery. GROUP_CONCAT joins the names into a single String separated by
+   * {@link #NAME_SEPARATOR}. Note that MySQL truncates GROUP_CONCAT results to group_concat_max_len
+   * characters (1024 by default). This is raised in the connection URL in application.yaml.
+   * <p>
+   * By default, MySQL Connector/J reads the entire result set into memory before the first row is
+   * returned. To read the rows one at a time, the statement must be forward-only and read-only, and
+   * the fetch size must be set to Integer.MIN_VALUE. The fetch size is set with the
+   * "bunny.stream.fetch-size" property so that other databases (like H2) can use a positive value.
+   * <p>
+   * While a MySQL result set is streaming, no other statement can run on the connection. So every
+   * category name is read before the stream is opened, and the category IDs in the rows are only
+   * looked up in those names. This must be called in a REPEATABLE READ transaction so that the
+   * stream sees the same categories.
    * 
-   * The bottom line: it's easier to do it like this so you don't have to churn through all the data
-   * in the service class to clean it up.
+   * @param consumer This is called with each breed in breed name order.
+   * @throws IllegalStateException Thrown if a breed has a category that was not read before the
+   *         stream was opened. This can only happen without REPEATABLE READ.
+   */
+  public void streamAllBreedDetails(Consumer<Breed> consumer) {
+    log.info("Dao: Stream bunny breeds with details");
+
+    /*
+     * A streaming result set must be read to the end before another statement can run on the
+     * connection, so a category that is missing from the dictionary could not be read in the middle
+     * of the stream. The category table is tiny, so it is simply read again before the stream is
+     * opened.
+     */
+    Map<Integer, String> categoryNames = new HashMap<>();
+    loadCategories("", Map.of()).forEach(
+        category -> categoryNames.put(category.getCategoryId(), category.getCategoryName()));
+
+    /* See breedDetailsSql() for the formatted SQL. */
+    String sql = breedDetailsSql(BreedField.ALL, "ORDER BY b.%s".formatted(BREED_NAME));
+
+    /*
+     * The PreparedStatementCreator lets us create the statement ourselves so that we can make it
+     * forward-only and set the fetch size. There are no parameters so the plain JdbcTemplate is
+     * used. The RowCallbackHandler is called once for each row.
+     */
+    jdbcTemplate.getJdbcTemplate().query(connection -> {
+      PreparedStatement statement =
+          connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+      statement.setFetchSize(streamFetchSize);
+      return statement;
+    }, (ResultSet rs) -> {
+      consumer.accept(mapBreedDetails(rs, BreedField.ALL,
+          categoryIds -> lookUpCategoryNames(categoryIds, categoryNames)));
+    });
+  }
+
+  /**
+   * Returns the SELECT statement that reads breeds with their alternate names and category names
+   * in a single row per breed. See {@link #streamAllBreedDetails(Consumer)} for details. The
+   * alternate name and category name subqueries are only added if those fields are requested.
    * 
-   * @param breedId The breed ID
-   * @return A list of alternate names for the given breed.
+   * @param fields The requested fields.
+   * @param clauses The WHERE and/or ORDER BY clauses added to the end of the statement.
+   * @return The SQL.
    */
-  public List<String> fetchAlternameNames(int breedId) {
+  private String breedDetailsSql(Set<BreedField> fields, String clauses) {
+    StringJoiner columns = new StringJoiner(",\n");
+    columns.add(breedColumns(fields));
+
     /*
-     * When formatted this will be: "SELECT alternate_name FROM alt_name WHERE breed_id = :breed_id
-     * ORDER BY alternate_name". The placeholder ":breed_id" means that "breed_id" must be added to
-     * the parameter map.
+     * When formatted with every field this will be: "SELECT b.breed_id, b.breed_name,
+     * b.description, (SELECT GROUP_CONCAT(an.alternate_name ORDER BY an.alternate_name SEPARATOR
+     * '|') FROM alt_name an WHERE an.breed_id = b.breed_id) AS alternate_names, (SELECT
+     * GROUP_CONCAT(bc.category_id SEPARATOR '|') FROM breed_category bc WHERE bc.breed_id =
+     * b.breed_id) AS category_ids FROM breed b" followed by the clauses. The category table is not
+     * joined because the category names are looked up in the category dictionary.
      */
-    String sql = """
+    if (fields.contains(BreedField.ALTERNAME_NAMES)) {
+      columns.add("""
+          (SELECT GROUP_CONCAT(an.%s ORDER BY an.%s SEPARATOR '%s')
+            FROM %s an
+            WHERE an.%s = b.%s) AS %s""".formatted(ALTERNATE_NAME, ALTERNATE_NAME, NAME_SEPARATOR,
+          ALT_NAME_TABLE, BREED_ID, BREED_ID, ALTERNATE_NAMES));
+    }
+
+    if (fields.contains(BreedField.CATEGORY_NAMES)) {
+      columns.add("""
+          (SELECT GROUP_CONCAT(bc.%s SEPARATOR '%s')
+            FROM %s bc
+            WHERE bc.%s = b.%s) AS %s""".formatted(CATEGORY_ID, NAME_SEPARATOR,
+          BREED_CATEGORY_TABLE, BREED_ID, BREED_ID, CATEGORY_IDS));
+    }
+
+    return """
         SELECT %s
-        FROM %s
-        WHERE %s = :%s
-        ORDER BY %s
-        """.formatted(ALTERNATE_NAME, ALT_NAME_TABLE, BREED_ID, BREED_ID, ALTERNATE_NAME);
+        FROM %s b
+        %s
+        """.formatted(columns, BREED_TABLE, clauses);
+  }
 
-    Map<String, Object> params = Map.of(BREED_ID, breedId);
-    return jdbcTemplate.query(sql, params, (rs, rowNum) -> rs.getString(ALTERNATE_NAME));
+  /**
+   * Create a breed from the current row of a result set read with
+   * {@link #breedDetailsSql(Set, String)}.
+   * 
+   * @param rs The result set positioned on a row.
+   * @param fields The requested fields.
+   * @param categoryLookUp This returns the sorted category names of the category IDs in the row.
+   * @return The breed with the requested fields.
+   * @throws SQLException Thrown if a column can't be read.
+   */
+  private Breed mapBreedDetails(ResultSet rs, Set<BreedField> fields,
+      Function<List<Integer>, List<String>> categoryLookUp) throws SQLException {
+    Breed breed = mapBreed(rs, fields);
+
+    if (fields.contains(BreedField.ALTERNAME_NAMES)) {
+      breed.getAlternameNames().addAll(splitNames(rs.getString(ALTERNATE_NAMES)));
+    }
+
+    if (fields.contains(BreedField.CATEGORY_NAMES)) {
+      List<Integer> categoryIds = splitNames(rs.getString(CATEGORY_IDS))
+          .stream() // @formatter:off
+          .map(Integer::valueOf)
+          .toList(); // @formatter:on
+
+      breed.getCategoryNames().addAll(categoryLookUp.apply(categoryIds));
+    }
 
-    /* The above line is the same as: */
-    // return jdbcTemplate.query(sql, params, new RowMapper<>() {
-    // @Override
-    // public String mapRow(ResultSet rs, int rowNum) throws SQLException {
-    // return rs.getString(ALTERNATE_NAME);
-    // }});
+    return breed;
   }
 
   /**
-   * Returns the breed categories associated with the given breed IDs.
+   * Split a list of names (or category IDs) that was joined with GROUP_CONCAT.
    * 
-   * @param breedId The breed ID.
-   * @return A list of category names.
+   * @param names The names separated by {@link #NAME_SEPARATOR}. This is {@code null} if there are
+   *        no names.
+   * @return The list of names. The list is empty if there are no names.
+   */
+  private List<String> splitNames(String names) {
+    if (Objects.isNull(names)) {
+      return List.of();
+    }
+
+    return List.of(names.split(Pattern.quote(NAME_SEPARATOR)));
+  }
+
+  /**
+   * This returns one page of breeds with alternate names and category names. The breeds are sorted
+   * by breed name and breed ID. The page starts after the breed with the given name and ID. This is
+   * called keyset (or seek) pagination. Instead of skipping over rows with OFFSET, which means that
+   * MySQL has to read and throw away every row before the page, the WHERE clause seeks directly to
+   * the starting position in the unique breed_name index. So the last page costs the same as the
+   * first page.
+   * 
+   * @param afterBreedName The breed name of the last breed on the previous page. This is
+   *        {@code null} for the first page.
+   * @param afterBreedId The breed ID of the last breed on the previous page. This is ignored if
+   *        afterBreedName is {@code null}.
+   * @param limit The maximum number of breeds to return.
+   * @return The page of breeds. The list is empty if there are no more breeds.
    */
-  public List<String> fetchBreedCategories(int breedId) {
+  public List<Breed> fetchBreedPage(String afterBreedName, int afterBreedId, int limit) {
+    log.info("Dao: List bunny breeds after {}, limit={}", afterBreedName, limit);
+
+    Map<String, Object> params = new HashMap<>();
+    params.put("limit", limit);
+
+    String filter = "";
+
+    if (Objects.nonNull(afterBreedName)) {
+      /*
+       * When formatted this will be: "WHERE b.breed_name > :breed_name OR (b.breed_name =
+       * :breed_name AND b.breed_id > :breed_id)". The breed name is unique, so the breed ID is only
+       * a tie-breaker that keeps the sort order stable.
+       */
+      filter = """
+          WHERE b.%s > :%s
+          OR (b.%s = :%s AND b.%s > :%s)
+          """.formatted(BREED_NAME, BREED_NAME, BREED_NAME, BREED_NAME, BREED_ID, BREED_ID);
+
+      params.put(BREED_NAME, afterBreedName);
+      params.put(BREED_ID, afterBreedId);
+    }
+
     /*
-     * When formatted this will be: "SELECT c.category_name FROM category c JOIN breed_category bc
-     * USING (category_id) WHERE bc.breed_id = :breed_id ORDER BY category_name". The parameter in
-     * the SQL query ":breed_id" means that the key "breed_id" and the value must be in the
-     * parameter map.
+     * When formatted (without the filter) this will be: "SELECT b.* FROM breed b ORDER BY
+     * b.breed_name, b.breed_id LIMIT :limit".
      */
     String sql = """
-        SELECT c.%s
-        FROM %s c
-        JOIN %s bc USING (%s)
-        WHERE bc.%s = :%s
-        ORDER BY c.%s
-        """.formatted(CATEGORY_NAME, CATEGORY_TABLE, BREED_CATEGORY_TABLE, CATEGORY_ID, BREED_ID,
-        BREED_ID, CATEGORY_NAME);
+        SELECT b.*
+        FROM %s b
+        %s
+        ORDER BY b.%s, b.%s
+        LIMIT :limit
+        """.formatted(BREED_TABLE, filter, BREED_NAME, BREED_ID);
 
-    Map<String, Object> params = Map.of(BREED_ID, breedId);
-    return jdbcTemplate.query(sql, params, (rs, rowNum) -> rs.getString(CATEGORY_NAME));
+    List<Breed> breeds = jdbcTemplate.query(sql, params, (rs, rowNum) -> // @formatter:off
+        Breed.builder()
+            .breedId(rs.getInt(BREED_ID))
+            .breedName(rs.getString(BREED_NAME))
+            .description(rs.getString(DESCRIPTION))
+            .build()); // @formatter:on
+
+    addBreedDetails(breeds);
 
-    /* The query in the line above can be replaced with the anonymous inner class like: */
-    // return jdbcTemplate.query(sql, params, new RowMapper<>() {
-    // @Override
-    // public String mapRow(ResultSet rs, int rowNum) throws SQLException {
-    // return rs.getString(CATEGORY_NAME);
-    // }});
+    return breeds;
   }
 
   /**
-   * Returns a specific bunny breed with the given the breed ID.
+   * Returns the breeds with the given breed IDs along with their alternate names and category
+   * names, sorted by breed name. The breeds are read with "WHERE breed_id IN (:breed_id)". A very
+   * long IN list is slow to parse and may be larger than the maximum packet size, so the IDs are
+   * read {@link #MAX_IN_LIST_SIZE} at a time. Each group of IDs costs three queries.
    * 
-   * @param breedId The breed ID.
-   * @return The Breed record if found. An empty Optional if not found.
+   * @param breedIds The breed IDs. IDs that don't exist are ignored.
+   * @return The breeds with alternate names and category names.
    */
-  public Optional<Breed> fetchBunny(int breedId) {
-    log.info("Dao: Get bunny with ID={}", breedId);
+  public List<Breed> fetchBreedDetails(Collection<Integer> breedIds) {
+    log.info("Dao: List {} bunny breeds by ID", breedIds.size());
 
     /*
-     * When formatted, the query will be: "SELECT * FROM breed b WHERE breed_id = :breed_id". The
-     * placeholder ":breed_id" means that the key "breed_id" and associated value must be put in the
-     * parameter map.
+     * When formatted this will be: "SELECT b.* FROM breed b WHERE b.breed_id IN (:breed_id)".
      */
     String sql = """
         SELECT b.*
         FROM %s b
-        WHERE %s = :%s
+        WHERE b.%s IN (:%s)
         """.formatted(BREED_TABLE, BREED_ID, BREED_ID);
 
-    Map<String, Object> params = Map.of(BREED_ID, breedId);
+    List<Integer> ids = List.copyOf(breedIds);
+    List<Breed> breeds = new ArrayList<>(ids.size());
 
-    Breed breed = jdbcTemplate.query(sql, params, (ResultSet rs) -> {
-      if (rs.next()) {
-        return Breed
-            .builder() // @formatter:off
-            .breedId(rs.getInt(BREED_ID))
-            .breedName(rs.getString(BREED_NAME))
-            .description(rs.getString(DESCRIPTION))
-            .build(); // @formatter:on
+    for (int start = 0; start < ids.size(); start += MAX_IN_LIST_SIZE) {
+      List<Integer> group = ids.subList(start, Math.min(start + MAX_IN_LIST_SIZE, ids.size()));
+
+      List<Breed> groupBreeds = jdbcTemplate.query(sql, Map.of(BREED_ID, group),
+          (rs, rowNum) -> Breed // @formatter:off
+              .builder()
+              .breedId(rs.getInt(BREED_ID))
+              .breedName(rs.getString(BREED_NAME))
+              .description(rs.getString(DESCRIPTION))
+              .build()); // @formatter:on
+
+      addBreedDetails(groupBreeds);
+      breeds.addAll(groupBreeds);
+    }
+
+    breeds.sort(Comparator.comparing(Breed::getBreedName));
+
+    return breeds;
+  }
+
+  /**
+   * Add the alternate names and category names to the given breeds. The child rows are restricted
+   * to the breeds in the list with "WHERE breed_id IN (:breed_id)". NamedParameterJdbcTemplate
+   * expands the list parameter into one placeholder per breed ID.
+   * 
+   * @param breeds The breeds that will receive the alternate names and category names.
+   */
+  private void addBreedDetails(List<Breed> breeds) {
+    /* "IN ()" is not valid SQL so don't run the queries if there are no breeds. */
+    if (!breeds.isEmpty()) {
+      List<Integer> breedIds = breeds.stream().map(Breed::getBreedId).toList();
+
+      addBreedDetails(breeds, "WHERE %s IN (:%s)".formatted(BREED_ID, BREED_ID),
+          Map.of(BREED_ID, breedIds), BreedField.ALL);
+    }
+  }
+
+  /**
+   * Add the alternate names and category names to the given breeds. This runs one query for the
+   * alternate names and one query for the categories, regardless of the number of breeds. Each
+   * query is skipped if its field is not requested. The filter is an optional WHERE clause that
+   * restricts the child rows to the breeds in the list. If the list holds every breed, the filter
+   * can be an empty String.
+   * 
+   * @param breeds The breeds that will receive the alternate names and category names.
+   * @param filter An optional WHERE clause on the breed_id column. This can be an empty String.
+   * @param params The parameters used by the filter.
+   * @param fields The requested fields.
+   */
+  private void addBreedDetails(List<Breed> breeds, String filter, Map<String, Object> params,
+      Set<BreedField> fields) {
+    Map<Integer, Breed> breedMap = new HashMap<>();
+    breeds.forEach(breed -> breedMap.put(breed.getBreedId(), breed));
+
+    if (fields.contains(BreedField.ALTERNAME_NAMES)) {
+      addAlternateNames(breedMap, filter, params);
+    }
+
+    if (fields.contains(BreedField.CATEGORY_NAMES)) {
+      addCategoryNames(breedMap, filter, params);
+    }
+  }
+
+  /**
+   * Add the alternate names to the given breeds with a single query. See
+   * {@link #addBreedDetails(List, String, Map, Set)} for details.
+   * 
+   * @param breedMap A map of breed ID to breed.
+   * @param filter An optional WHERE clause on the breed_id column. This can be an empty String.
+   * @param params The parameters used by the filter.
+   */
+  private void addAlternateNames(Map<Integer, Breed> breedMap, String filter,
+      Map<String, Object> params) {
+    /*
+     * When formatted (with no filter) this will be: "SELECT breed_id, alternate_name FROM alt_name
+     * ORDER BY alternate_name". Sorting by alternate name means that each breed receives its
+     * alternate names in alphabetical order.
+     */
+    String altNameSql = """
+        SELECT %s, %s
+        FROM %s
+        %s
+        ORDER BY %s
+        """.formatted(BREED_ID, ALTERNATE_NAME, ALT_NAME_TABLE, filter, ALTERNATE_NAME);
+
+    jdbcTemplate.query(altNameSql, params, (ResultSet rs) -> {
+      while (rs.next()) {
+        Breed breed = breedMap.get(rs.getInt(BREED_ID));
+
+        if (Objects.nonNull(breed)) {
+          breed.getAlternameNames().add(rs.getString(ALTERNATE_NAME));
+        }
       }
 
-      return null;
+      return breedMap;
+    });
+  }
+
+  /**
+   * Add the category names to the given breeds with a single query. See
+   * {@link #addBreedDetails(List, String, Map, Set)} for details.
+   * 
+   * @param breedMap A map of breed ID to breed.
+   * @param filter An optional WHERE clause on the breed_id column. This can be an empty String.
+   * @param params The parameters used by the filter.
+   */
+  private void addCategoryNames(Map<Integer, Breed> breedMap, String filter,
+      Map<String, Object> params) {
+    /*
+     * When formatted (with no filter) this will be: "SELECT breed_id, category_id FROM
+     * breed_category". The category table is not joined because the category names are looked up
+     * in the category dictionary.
+     */
+    String categorySql = """
+        SELECT %s, %s
+        FROM %s
+        %s
+        """.formatted(BREED_ID, CATEGORY_ID, BREED_CATEGORY_TABLE, filter);
+
+    Map<Integer, List<Integer>> categoryIdsByBreed =
+        jdbcTemplate.query(categorySql, params, (ResultSet rs) -> {
+          Map<Integer, List<Integer>> categoryIds = new HashMap<>();
+
+          while (rs.next()) {
+            categoryIds.computeIfAbsent(rs.getInt(BREED_ID), id -> new LinkedList<>())
+                .add(rs.getInt(CATEGORY_ID));
+          }
+
+          return categoryIds;
+        });
+
+    categoryIdsByBreed.forEach((breedId, categoryIds) -> {
+      Breed breed = breedMap.get(breedId);
+
+      if (Objects.nonNull(breed)) {
+        breed.getCategoryNames().addAll(lookUpCategoryNames(categoryIds));
+      }
     });
+  }
+
+  /**
+   * Returns the category names for the given category IDs sorted by name. The names are looked up
+   * in the {@link CategoryDictionary}. If a category ID is not in the dictionary (because it was
+   * created by another copy of this application), the missing categories are read from the
+   * database with a single query and added to the dictionary.
+   * 
+   * @param categoryIds The category IDs.
+   * @return The sorted list of category names.
+   */
+  private List<String> lookUpCategoryNames(Collection<Integer> categoryIds) {
+    List<Integer> missingIds = categoryIds
+        .stream() // @formatter:off
+        .filter(categoryId -> categoryDictionary.findCategoryName(categoryId).isEmpty())
+        .toList(); // @formatter:on
+
+    if (!missingIds.isEmpty()) {
+      loadCategories("WHERE %s IN (:%s)".formatted(CATEGORY_ID, CATEGORY_ID),
+          Map.of(CATEGORY_ID, missingIds));
+    }
+
+    return categoryIds
+        .stream() // @formatter:off
+        .map(categoryId -> categoryDictionary.findCategoryName(categoryId).orElseThrow())
+        .sorted(String.CASE_INSENSITIVE_ORDER)
+        .toList(); // @formatter:on
+  }
+
+  /**
+   * Returns the category names for the given category IDs sorted by name. Unlike
+   * {@link #lookUpCategoryNames(Collection)}, this never reads the database, so it can be used
+   * while a result set is streaming.
+   * 
+   * @param categoryIds The category IDs.
+   * @param categoryNames A map of category ID to category name that was read before the stream.
+   * @return The sorted list of category names.
+   * @throws IllegalStateException Thrown if a category ID is not in the map.
+   */
+  private List<String> lookUpCategoryNames(Collection<Integer> categoryIds,
+      Map<Integer, String> categoryNames) {
+    return categoryIds
+        .stream() // @formatter:off
+        .map(categoryId -> Optional.ofNullable(categoryNames.get(categoryId))
+            .orElseThrow(() -> new IllegalStateException("Category ID=" + categoryId
+                + " was not read before the breeds were streamed")))
+        .sorted(String.CASE_INSENSITIVE_ORDER)
+        .toList(); // @formatter:on
+  }
+
+  /**
+   * Get the DAO ready after Spring has injected its fields:
+   * <ol>
+   * <li>Register the meters.
+   * <li>Load the category dictionary.
+   * </ol>
+   */
+  @PostConstruct
+  public void initialize() {
+    registerMeters();
+    loadCategoryDictionary();
+  }
 
-    /* To use an anonymous inner class with a ResultSetExtractor, you would write it like this: */
-    // Breed breed = jdbcTemplate.query(sql, params, new ResultSetExtractor<>() {
-    // @Override
-    // public Breed extractData(ResultSet rs) throws SQLException {
-    // if (rs.next()) {
-    // return Breed
-    // .builder()
-    // .breedId(rs.getInt(BREED_ID))
-    // .breedName(rs.getString(BREED_NAME))
-    // .description(rs.getString(DESCRIPTION))
-    // .build();
-    // }
-    //
-    // return null;
-    // }
-    // });
+  /**
+   * Register the DAO's meters with the meter registry. The summary can be seen at
+   * http://localhost:8080/actuator/metrics/bunny.modify.rows.
+   */
+  private void registerMeters() {
+    modifyRowsTouched = DistributionSummary
+        .builder("bunny.modify.rows") // @formatter:off
+        .description("Rows inserted, updated and deleted when a breed is modified")
+        .baseUnit("rows")
+        .register(meterRegistry); // @formatter:on
+  }
 
-    return Optional.ofNullable(breed);
+  /**
+   * Load all the categories into the {@link CategoryDictionary}. This is done once, after the DAO
+   * has been created and the NamedParameterJdbcTemplate has been injected.
+   */
+  private void loadCategoryDictionary() {
+    /* There is no WHERE clause because we want every category. */
+    loadCategories("", Map.of());
+    log.info("Dao: Loaded {} categories into the category dictionary", categoryDictionary.size());
+  }
+
+  /**
+   * Read every breed ID and every breed_category row. This is used to load the category facets
+   * (see {@link bunny.service.CategoryFacets}). The breeds are read separately because a breed
+   * without categories must still be found by a "NOT" filter. Run this in a transaction so that
+   * both reads see the same rows.
+   *
+   * @param breedConsumer This is given each breed ID.
+   * @param categoryConsumer This is given the breed ID and category ID of each breed_category row.
+   */
+  public void streamBreedCategories(IntConsumer breedConsumer,
+      BiConsumer<Integer, Integer> categoryConsumer) {
+    /* When formatted this is: "SELECT breed_id FROM breed". */
+    String sql = """
+        SELECT %s
+        FROM %s
+        """.formatted(BREED_ID, BREED_TABLE);
+
+    jdbcTemplate.query(sql, Map.of(),
+        (RowCallbackHandler) rs -> breedConsumer.accept(rs.getInt(BREED_ID)));
+
+    /* When formatted this is: "SELECT breed_id, category_id FROM breed_category". */
+    sql = """
+        SELECT %s, %s
+        FROM %s
+        """.formatted(BREED_ID, CATEGORY_ID, BREED_CATEGORY_TABLE);
+
+    jdbcTemplate.query(sql, Map.of(), (RowCallbackHandler) rs -> categoryConsumer
+        .accept(rs.getInt(BREED_ID), rs.getInt(CATEGORY_ID)));
+  }
+
+  /**
+   * Read categories from the database and add them to the {@link CategoryDictionary}. Only
+   * committed rows are added. Categories inserted by the current transaction are added by
+   * {@link #fetchOrCreateCategories(List)} after the transaction commits.
+   * 
+   * @param filter An optional WHERE clause. This can be an empty String.
+   * @param params The parameters used by the filter.
+   * @return The categories that were read.
+   */
+  private List<Category> loadCategories(String filter, Map<String, Object> params) {
+    /* When formatted (with no filter), this will be: "SELECT * FROM category". */
+    String sql = """
+        SELECT *
+        FROM %s
+        %s
+        """.formatted(CATEGORY_TABLE, filter);
+
+    List<Category> categories = jdbcTemplate.query(sql, params, (rs, rowNum) -> Category
+        .builder() // @formatter:off
+        .categoryId(rs.getInt(CATEGORY_ID))
+        .categoryName(rs.getString(CATEGORY_NAME))
+        .build()); // @formatter:on
+
+    categories.forEach(categoryDictionary::add);
+
+    return categories;
+  }
+
+  /**
+   * Returns a specific bunny breed with its alternate names and category names. Instead of reading
+   * the breed, the alternate names and the categories with three round trips to the database, this
+   * reads everything in a single row with one query. The child rows are joined into single columns
+   * with GROUP_CONCAT. See {@link #streamAllBreedDetails(Consumer)} for details.
+   * 
+   * @param breedId The breed ID.
+   * @return The breed if found. An empty Optional if not found.
+   */
+  public Optional<Breed> fetchBunnyDetails(int breedId) {
+    return fetchBunnyDetails(breedId, BreedField.ALL);
+  }
+
+  /**
+   * Returns a specific bunny breed with only the requested fields. This is the same as
+   * {@link #fetchBunnyDetails(int)}, except that only the requested columns are selected and the
+   * alternate name and category name subqueries are left out if they are not requested.
+   * 
+   * @param breedId The breed ID.
+   * @param fields The fields to read. Fields that are not requested are left {@code null}.
+   * @return The breed if found. An empty Optional if not found.
+   */
+  public Optional<Breed> fetchBunnyDetails(int breedId, Set<BreedField> fields) {
+    log.info("Dao: Get bunny with ID={}, fields {}", breedId, fields);
+
+    /* See breedDetailsSql() for the formatted SQL. */
+    String sql = breedDetailsSql(fields, "WHERE b.%s = :%s".formatted(BREED_ID, BREED_ID));
+    Map<String, Object> params = Map.of(BREED_ID, breedId);
+
+    List<Breed> breeds =
+        jdbcTemplate.query(sql, params,
+            (rs, rowNum) -> mapBreedDetails(rs, fields, this::lookUpCategoryNames));
+    return breeds.stream().findFirst();
   }
 
   /**
@@ -297,269 +806,761 @@ public class BunnyDao {
     jdbcTemplate.update(sql, params, keyHolder);
 
     /*
-     * This method call retrieves the primary key value generated by MySQL. SonarLint generates
-     * warning "java:S2259" because it thinks that a NullPointerException could be thrown if
-     * getKeyAs() returns null. Although this may be true, it is extremely unlikely. Also, the
-     * NullPointerException will definitely pinpoint the problem, so allow it to be thrown if it
-     * ever is.
+     * This method call retrieves the primary key value generated by MySQL. SonarLint generates
+     * warning "java:S2259" because it thinks that a NullPointerException could be thrown if
+     * getKeyAs() returns null. Although this may be true, it is extremely unlikely. Also, the
+     * NullPointerException will definitely pinpoint the problem, so allow it to be thrown if it
+     * ever is. The key is read as a Number because MySQL returns a BigInteger but other databases
+     * (like H2) return an Integer.
+     */
+    @SuppressWarnings("java:S2259")
+    int breedId = keyHolder.getKeyAs(Number.class).intValue();
+
+    insertBreedCategories(breedId, breedRequest.getCategoryNames());
+    insertBreedAlternateNames(Map.of(breedId, breedRequest.getAlternameNames()));
+
+    Breed breed = Breed
+        .builder() // @formatter:off
+          .breedId(breedId)
+          .breedName(breedRequest.getBreedName())
+          .description(breedRequest.getDescription())
+          .build();// @formatter:on
+
+    breed.getAlternameNames().addAll(breedRequest.getAlternameNames());
+    breed.getCategoryNames().addAll(breedRequest.getCategoryNames());
+
+    return breed;
+  }
+
+  /**
+   * Add many bunny breeds with their alternate names and categories. This is used by the bulk
+   * import. Instead of running {@link #insertBunny(AddBreedRequest)} once per breed, each table is
+   * written with a single JDBC batch no matter how many breeds there are:
+   * <ol>
+   * <li>The breed rows are inserted in one batch.
+   * <li>The generated breed IDs are read back by breed name with one "IN" query. Spring JDBC can't
+   * return generated keys from a batch, but breed names are unique so this works just as well.
+   * <li>The alternate names of all the breeds are inserted in one batch.
+   * <li>The categories of all the breeds are looked up (or created) together, and the
+   * breed_category rows are inserted in one batch.
+   * </ol>
+   * If any breed name already exists, a {@link DuplicateKeyException} is thrown and the caller must
+   * roll back the transaction.
+   * 
+   * @param breedRequests The breeds to add. The breed names must be different from each other.
+   * @return The generated breed IDs in the same order as the breed requests.
+   */
+  public List<Integer> insertBunnies(List<AddBreedRequest> breedRequests) {
+    log.info("Dao: Adding {} bunnies", breedRequests.size());
+
+    /*
+     * This is the same statement used by insertBunny(). When formatted, it is: "INSERT INTO breed
+     * (breed_name, description) VALUES (:breed_name, :description)".
+     */
+    String sql = """
+        INSERT INTO %s
+        (%s, %s)
+        VALUES
+        (:%s, :%s)
+        """.formatted(BREED_TABLE, BREED_NAME, DESCRIPTION, BREED_NAME, DESCRIPTION);
+
+    SqlParameterSource[] batch = breedRequests
+        .stream() // @formatter:off
+        .map(breedRequest -> new MapSqlParameterSource(Map.of(
+            BREED_NAME, breedRequest.getBreedName(),
+            DESCRIPTION, breedRequest.getDescription())))
+        .toArray(SqlParameterSource[]::new); // @formatter:on
+
+    jdbcTemplate.batchUpdate(sql, batch);
+
+    Map<String, Integer> breedIdsByName = fetchBreedIdsByName(
+        breedRequests.stream().map(AddBreedRequest::getBreedName).toList());
+
+    List<Integer> breedIds = breedRequests
+        .stream() // @formatter:off
+        .map(breedRequest -> breedIdsByName.get(breedRequest.getBreedName()))
+        .toList(); // @formatter:on
+
+    /* The categories of all the breeds are resolved together. */
+    Map<String, Integer> categoryIdsByName = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    fetchOrCreateCategories(breedRequests
+        .stream() // @formatter:off
+        .flatMap(breedRequest -> breedRequest.getCategoryNames().stream())
+        .toList()) // @formatter:on
+            .forEach(category -> categoryIdsByName.put(category.getCategoryName(),
+                category.getCategoryId()));
+
+    Map<Integer, List<String>> alternateNames = new HashMap<>();
+    Map<Integer, Set<Integer>> categoryIds = new HashMap<>();
+
+    for (int index = 0; index < breedRequests.size(); index++) {
+      AddBreedRequest breedRequest = breedRequests.get(index);
+      int breedId = breedIds.get(index);
+
+      alternateNames.put(breedId, breedRequest.getAlternameNames());
+
+      /* A set is used because a category can only be added to a breed once. */
+      categoryIds.put(breedId, breedRequest.getCategoryNames()
+          .stream() // @formatter:off
+          .map(categoryIdsByName::get)
+          .collect(Collectors.toCollection(LinkedHashSet::new))); // @formatter:on
+    }
+
+    insertBreedAlternateNames(alternateNames);
+    insertBreedCategoryIds(categoryIds);
+
+    return breedIds;
+  }
+
+  /**
+   * Returns the IDs of the breeds with the given breed names.
+   * 
+   * @param breedNames The breed names. This must not be empty.
+   * @return A map of breed name to breed ID. Names are compared without regard to case because
+   *         MySQL compares them that way by default. Names that do not exist are not in the map.
+   */
+  public Map<String, Integer> fetchBreedIdsByName(Collection<String> breedNames) {
+    /*
+     * When formatted, the SQL query looks like this:
+     * "SELECT breed_id, breed_name FROM breed WHERE breed_name IN (:breed_name)".
+     */
+    String sql = """
+        SELECT %s, %s
+        FROM %s
+        WHERE %s IN (:%s)
+        """.formatted(BREED_ID, BREED_NAME, BREED_TABLE, BREED_NAME, BREED_NAME);
+
+    Map<String, Object> params = Map.of(BREED_NAME, breedNames);
+
+    return jdbcTemplate.query(sql, params, (ResultSet rs) -> {
+      Map<String, Integer> breedIds = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+      while (rs.next()) {
+        breedIds.put(rs.getString(BREED_NAME), rs.getInt(BREED_ID));
+      }
+
+      return breedIds;
+    });
+  }
+
+  /**
+   * Add the altername breed names to the alt_name table. All the names are sent to the database in
+   * a single JDBC batch rather than one INSERT statement per name. With the MySQL driver property
+   * "rewriteBatchedStatements=true" (see application.yaml), Connector/J rewrites the batch into a
+   * single multi-row INSERT, so adding 20 alternate names costs one round trip instead of 20.
+   * <p>
+   * The names of any number of breeds can be added in the same batch. This is used by the bulk
+   * import (see {@link #insertBunnies(List)}).
+   * 
+   * @param alternateNames A map of breed ID to the list of alternate names for the breed.
+   */
+  private void insertBreedAlternateNames(Map<Integer, List<String>> alternateNames) {
+    /*
+     * When formatted this will be:
+     * "INSERT INTO alt_name (breed_id, alternate_name) VALUES (:breed_id, :alternate_name)". There
+     * are two replaceable parameters, which means that the keys "breed_id" and "alternate_name"
+     * along with the values, must be added to the parameter map.
+     */
+    String sql = """
+        INSERT INTO %s
+        (%s, %s)
+        VALUES
+        (:%s, :%s)
+        """.formatted(ALT_NAME_TABLE, BREED_ID, ALTERNATE_NAME, BREED_ID, ALTERNATE_NAME);
+
+    /*
+     * Create one parameter source for each alternate name. Each one holds the parameters for one
+     * execution of the INSERT statement in the batch.
+     */
+    SqlParameterSource[] batch = alternateNames.entrySet()
+        .stream() // @formatter:off
+        .flatMap(entry -> entry.getValue()
+            .stream()
+            .map(alternateName -> new MapSqlParameterSource(
+                Map.of(BREED_ID, entry.getKey(), ALTERNATE_NAME, alternateName))))
+        .toArray(SqlParameterSource[]::new); // @formatter:on
+
+    jdbcTemplate.batchUpdate(sql, batch);
+  }
+
+  /**
+   * Insert the rows into the breed_category join table.
+   * 
+   * @param breedId The ID of the breed record.
+   * @param categoryNames The list of category names. If the category name does not exist in the
+   *        category table, it is added.
+   */
+  private void insertBreedCategories(int breedId, List<String> categoryNames) {
+    /*
+     * Here's the logic: 1) fetchOrCreateCategories() returns a list of Category objects. If the
+     * category name was already in the category table, it is returned. If the category name is not
+     * in the category table, it is added and returned in the list. 2) The category IDs are
+     * inserted into the breed_category table.
+     */
+    List<Integer> categoryIds = fetchOrCreateCategories(categoryNames)
+        .stream() // @formatter:off
+        .map(Category::getCategoryId)
+        .toList(); // @formatter:on
+
+    insertBreedCategoryIds(Map.of(breedId, categoryIds));
+  }
+
+  /**
+   * Insert a row into the breed_category join table for each category ID. Like the alternate
+   * names, the rows for any number of breeds are inserted in a single JDBC batch.
+   * 
+   * @param categoryIds A map of breed ID to the IDs of the breed's categories.
+   */
+  private void insertBreedCategoryIds(Map<Integer, ? extends Collection<Integer>> categoryIds) {
+    /*
+     * When formatted, the SQL looks like this:
+     * "INSERT INTO breed_category (breed_id, category_id) VALUES (:breed_id, :category_id)". The
+     * two parameter placeholders ":breed_id" and ":category_id" mean that the keys "breed_id" and
+     * "category_id" along with their associated values must be placed into each parameter source.
+     */
+    String sql = """
+        INSERT INTO %s (%s, %s)
+        VALUES
+        (:%s, :%s)
+        """.formatted(BREED_CATEGORY_TABLE, BREED_ID, CATEGORY_ID, BREED_ID, CATEGORY_ID);
+
+    SqlParameterSource[] batch = categoryIds.entrySet()
+        .stream() // @formatter:off
+        .flatMap(entry -> entry.getValue()
+            .stream()
+            .map(categoryId -> new MapSqlParameterSource(
+                Map.of(BREED_ID, entry.getKey(), CATEGORY_ID, categoryId))))
+        .toArray(SqlParameterSource[]::new); // @formatter:on
+
+    jdbcTemplate.batchUpdate(sql, batch);
+  }
+
+  /**
+   * Retrieve or create and retrieve the Category objects with the given category names. The
+   * category names are first looked up in the {@link CategoryDictionary}, which almost always has
+   * all of them. Names that are not in the dictionary are handled with a fixed number of statements
+   * no matter how many names there are:
+   * <ol>
+   * <li>The existing categories are read with a single "WHERE category_name IN (...)" query. These
+   * were created by another copy of this application, so they are added to the dictionary.
+   * <li>Any names that are still missing are inserted in a single batch. See
+   * {@link #insertCategories(Collection)}.
+   * <li>The inserted categories are read back with a second "IN" query.
+   * </ol>
+   * <p>
+   * Category names are compared without regard to case because MySQL compares them that way by
+   * default. If the same category name is given more than once, it is only returned once.
+   * 
+   * @param categoryNames A list of category names that belong to the working breed object.
+   * @return The list of {@link Category} objects, either fetched or inserted, in the same order as
+   *         the category names.
+   */
+  private List<Category> fetchOrCreateCategories(List<String> categoryNames) {
+    /* Remove duplicate names, keeping the names in the order they were given. */
+    Set<String> names = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    List<String> distinctNames = categoryNames.stream().filter(names::add).toList();
+
+    Map<String, Category> categories = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    distinctNames.forEach(name -> categoryDictionary.findCategoryId(name)
+        .ifPresent(categoryId -> categories.put(name,
+            Category.builder().categoryId(categoryId).categoryName(name).build())));
+
+    List<String> unknownNames =
+        distinctNames.stream().filter(name -> !categories.containsKey(name)).toList();
+
+    if (!unknownNames.isEmpty()) {
+      Map<String, Category> existing = fetchCategoriesByName(unknownNames, false);
+
+      existing.values().forEach(categoryDictionary::add);
+      categories.putAll(existing);
+
+      List<String> missingNames =
+          unknownNames.stream().filter(name -> !categories.containsKey(name)).toList();
+
+      if (!missingNames.isEmpty()) {
+        insertCategories(missingNames);
+
+        /*
+         * The missing categories are read back with a locking read (FOR UPDATE). If another
+         * transaction inserted the same category name at the same time, our insert waited for that
+         * transaction to commit and then did nothing. A plain SELECT would not see the other
+         * transaction's row because MySQL (in the default REPEATABLE READ isolation level) reads
+         * from the snapshot taken at the first read in this transaction. A locking read always sees
+         * the latest committed rows.
+         */
+        Map<String, Category> inserted = fetchCategoriesByName(missingNames, true);
+
+        inserted.values().forEach(categoryDictionary::addAfterCommit);
+        categories.putAll(inserted);
+      }
+    }
+
+    return distinctNames.stream().map(categories::get).toList();
+  }
+
+  /**
+   * Insert new category rows with the given category names. The rows are inserted in a single
+   * batch. "ON DUPLICATE KEY UPDATE" turns the INSERT into a no-op if the category name already
+   * exists. So, if two requests add a breed with the same new category name at the same time, one
+   * of them inserts the category and the other one simply uses it. Without this, the second request
+   * would fail with a {@link DuplicateKeyException} on the unique category name.
+   * 
+   * @param categoryNames The category names to add.
+   */
+  private void insertCategories(Collection<String> categoryNames) {
+    /*
+     * When formatted, the SQL statement looks like this: "INSERT INTO category (category_name)
+     * VALUES (:category_name) ON DUPLICATE KEY UPDATE category_name = category_name". The
+     * placeholder ":category_name" means the the key "category_name" and the name value must be
+     * added to each parameter source.
+     */
+    String sql = """
+        INSERT INTO %s
+        (%s)
+        VALUES
+        (:%s)
+        ON DUPLICATE KEY UPDATE %s = %s
+        """.formatted(CATEGORY_TABLE, CATEGORY_NAME, CATEGORY_NAME, CATEGORY_NAME, CATEGORY_NAME);
+
+    SqlParameterSource[] batch = categoryNames
+        .stream() // @formatter:off
+        .map(categoryName -> new MapSqlParameterSource(Map.of(CATEGORY_NAME, categoryName)))
+        .toArray(SqlParameterSource[]::new); // @formatter:on
+
+    jdbcTemplate.batchUpdate(sql, batch);
+  }
+
+  /**
+   * Returns the categories with the given names.
+   * 
+   * @param categoryNames The names of the categories to retrieve. This must not be empty.
+   * @param lock If {@code true}, a locking read (FOR UPDATE) is done. See
+   *        {@link #fetchOrCreateCategories(List)} for why this is needed.
+   * @return A map of category name to Category object. Names are compared without regard to case.
+   *         Names that do not exist in the table are not in the map.
+   */
+  private Map<String, Category> fetchCategoriesByName(Collection<String> categoryNames,
+      boolean lock) {
+    /*
+     * When formatted, the SQL query looks like this:
+     * "SELECT * FROM category WHERE category_name IN (:category_name)". NamedParameterJdbcTemplate
+     * expands the list of names into one placeholder per name.
+     */
+    String sql = """
+        SELECT *
+        FROM %s
+        WHERE %s IN (:%s)
+        %s
+        """.formatted(CATEGORY_TABLE, CATEGORY_NAME, CATEGORY_NAME, lock ? "FOR UPDATE" : "");
+
+    SqlParameterSource params = new MapSqlParameterSource(Map.of(CATEGORY_NAME, categoryNames));
+
+    return jdbcTemplate.query(sql, params, (ResultSet rs) -> {
+      Map<String, Category> categories = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+      while (rs.next()) {
+        Category category = Category
+            .builder() // @formatter:off
+            .categoryId(rs.getInt(CATEGORY_ID))
+            .categoryName(rs.getString(CATEGORY_NAME))
+            .build(); // @formatter:on
+
+        categories.put(category.getCategoryName(), category);
+      }
+
+      return categories;
+    });
+  }
+
+  /**
+   * Modify the bunny breed row or the alternate names or categories. Rather than deleting all the
+   * alternate names and categories and adding them back, the current rows are read and compared to
+   * the modified breed. Then only the changes are written:
+   * <ul>
+   * <li>The breed row is only updated if the breed name or description changed.
+   * <li>Alternate names and categories that are no longer in the breed are deleted.
+   * <li>Alternate names and categories that are new to the breed are inserted.
+   * </ul>
+   * So, if only the description changed, a single UPDATE is run. Deleting and re-inserting every
+   * child row causes a lot of needless index changes, binary log entries and locks in MySQL.
+   * <p>
+   * The breed's version (see {@link #fetchBreedVersion(int)}) goes up by one if any row changed.
+   * If nothing changed, nothing is written and the version stays the same.
+   * <p>
+   * The number of rows inserted, updated and deleted is recorded in the "bunny.modify.rows"
+   * distribution summary so that the savings can be seen in the metrics.
+   * 
+   * @param breedRequest The modified data. This must contain a valid breed ID.
+   * @return {@code true} if successful. Returns {@code false} if the breed ID is invalid.
+   */
+  public boolean modifyBunny(Breed breedRequest) {
+    int breedId = breedRequest.getBreedId();
+
+    /*
+     * The breed row is locked (FOR UPDATE) so that no other transaction can change the breed's
+     * alternate names or categories between the time they are read and the time they are changed.
      */
-    @SuppressWarnings("java:S2259")
-    int breedId = keyHolder.getKeyAs(BigInteger.class).intValue();
+    Optional<Breed> current = lockBunny(breedId);
 
-    insertBreedCategories(breedId, breedRequest.getCategoryNames());
-    insertBreedAlternateNames(breedId, breedRequest.getAlternameNames());
+    if (current.isEmpty()) {
+      return false;
+    }
 
-    Breed breed = Breed
-        .builder() // @formatter:off
-          .breedId(breedId)
-          .breedName(breedRequest.getBreedName())
-          .description(breedRequest.getDescription())
-          .build();// @formatter:on
+    int rowsTouched = 0;
+    boolean breedRowChanged =
+        !Objects.equals(current.get().getBreedName(), breedRequest.getBreedName())
+            || !Objects.equals(current.get().getDescription(), breedRequest.getDescription());
 
-    breed.getAlternameNames().addAll(breedRequest.getAlternameNames());
-    breed.getCategoryNames().addAll(breedRequest.getCategoryNames());
+    if (breedRowChanged) {
+      rowsTouched += updateBreed(breedRequest);
+    }
 
-    return breed;
+    int childRowsTouched = modifyBreedAlternateNames(breedId, breedRequest.getAlternameNames())
+        + modifyBreedCategories(breedId, breedRequest.getCategoryNames());
+    rowsTouched += childRowsTouched;
+
+    /* The breed row update changes the version. If only child rows changed, it is changed here. */
+    if (!breedRowChanged && childRowsTouched > 0) {
+      incrementVersions(List.of(breedId));
+    }
+
+    log.info("Dao: Modified bunny with ID={}, rows touched={}", breedId, rowsTouched);
+    modifyRowsTouched.record(rowsTouched);
+
+    return true;
   }
 
   /**
-   * Add the altername breed names to the alt_name table.
+   * Read the breed row with the given breed ID and lock it until the transaction ends. The SELECT
+   * has "FOR UPDATE" on the end.
    * 
-   * @param breedId The ID assigned to the breed.
-   * @param alternateNames The list of alternate breed names.
+   * @param breedId The breed ID
+   * @return The breed without alternate names or categories, or an empty Optional if the breed
+   *         does not exist.
    */
-  private void insertBreedAlternateNames(int breedId, List<String> alternateNames) {
+  private Optional<Breed> lockBunny(int breedId) {
     /*
-     * When formatted this will be:
-     * "INSERT INTO alt_name (breed_id, alternate_name) VALUES (:breed_id, :alternate_name)". There
-     * are two replaceable parameters, which means that the keys "breed_id" and "alternate_name"
-     * along with the values, must be added to the parameter map.
+     * When formatted, the query will be: "SELECT b.* FROM breed b WHERE breed_id = :breed_id FOR
+     * UPDATE".
      */
     String sql = """
-        INSERT INTO %s
-        (%s, %s)
-        VALUES
-        (:%s, :%s)
-        """.formatted(ALT_NAME_TABLE, BREED_ID, ALTERNATE_NAME, BREED_ID, ALTERNATE_NAME);
+        SELECT b.*
+        FROM %s b
+        WHERE %s = :%s
+        FOR UPDATE
+        """.formatted(BREED_TABLE, BREED_ID, BREED_ID);
 
-    /*
-     * Don't use Map.of() here because it returns an immutable map. We need to be able to replace
-     * the "alternate_name" value for each alternate name.
-     */
-    Map<String, Object> params = new HashMap<>();
-    params.put(BREED_ID, breedId);
+    Map<String, Object> params = Map.of(BREED_ID, breedId);
 
-    alternateNames.forEach(alternateName -> {
-      params.put(ALTERNATE_NAME, alternateName);
-      jdbcTemplate.update(sql, params);
-    });
+    List<Breed> breeds = jdbcTemplate.query(sql, params, (rs, rowNum) -> Breed
+        .builder() // @formatter:off
+        .breedId(rs.getInt(BREED_ID))
+        .breedName(rs.getString(BREED_NAME))
+        .description(rs.getString(DESCRIPTION))
+        .build()); // @formatter:on
 
-    /* If you don't like Lambda expressions, you can use an enhanced for loop like this: */
-    // for(String alternateName : alternateNames) {
-    // params.put(ALTERNATE_NAME, alternateName);
-    // jdbcTemplate.update(sql, params);
-    // }
+    return breeds.stream().findFirst();
   }
 
   /**
-   * Insert the rows into the breed_category join table.
+   * Modify many breeds at once. This does the same thing as {@link #modifyBunny(Breed)} for each
+   * breed, but each step is done for all the breeds together, so the number of statements does not
+   * depend on the number of breeds (the queries with an IN list are run once for each
+   * {@link #MAX_IN_LIST_SIZE} breeds):
+   * <ol>
+   * <li>The breed rows are locked with one "WHERE breed_id IN (...) FOR UPDATE" query.
+   * <li>The breed rows with a new name or description are updated in one batch.
+   * <li>The current alternate names are read with one query. The rows that are no longer needed
+   * are deleted with one statement and the new names are inserted in one batch.
+   * <li>The current breed_category rows are read with one query. The categories of all the breeds
+   * are looked up (or created) together. The rows that are no longer needed are deleted in one
+   * batch and the new rows are inserted in one batch.
+   * </ol>
+   * The version of each breed with a changed row goes up by one, like in
+   * {@link #modifyBunny(Breed)}, and the rows touched for each breed are recorded in the
+   * "bunny.modify.rows" distribution summary. If a breed ID is given more than once, the last one
+   * wins. Breed IDs that don't exist are skipped. If a new breed name is already used by another
+   * breed, a {@link DuplicateKeyException} is thrown and the caller must roll back the
+   * transaction.
    * 
-   * @param breedId The ID of the breed record.
-   * @param categoryNames The list of category names. If the category name does not exist in the
-   *        category table, it is added.
+   * @param breedRequests The modified breeds. Each must contain a breed ID.
+   * @return The IDs of the breeds that were modified.
    */
-  private void insertBreedCategories(int breedId, List<String> categoryNames) {
-    /*
-     * Here's the logic: 1) fetchOrCreateCategories() returns a list of Category objects. If the
-     * category name was already in the category table, it is returned. If the category name is not
-     * in the category table, it is added and returned in the list. 2) The forEach() method is
-     * called on the returned list of Category objects. The Lambda expression inserts a
-     * breed_category row for each category name.
-     */
-    fetchOrCreateCategories(categoryNames)
-        .forEach(category -> insertBreedCategory(breedId, category.getCategoryId()));
+  public Set<Integer> modifyBunnies(List<Breed> breedRequests) {
+    log.info("Dao: Modify {} bunnies", breedRequests.size());
+
+    Map<Integer, Breed> requests = new LinkedHashMap<>();
+    breedRequests.forEach(breedRequest -> requests.put(breedRequest.getBreedId(), breedRequest));
+
+    Map<Integer, Breed> current = lockBunnies(requests.keySet());
+    requests.keySet().retainAll(current.keySet());
+
+    if (requests.isEmpty()) {
+      return Set.of();
+    }
+
+    List<Breed> changedBreeds = requests.values()
+        .stream() // @formatter:off
+        .filter(breedRequest -> {
+          Breed breed = current.get(breedRequest.getBreedId());
+
+          return !Objects.equals(breed.getBreedName(), breedRequest.getBreedName())
+              || !Objects.equals(breed.getDescription(), breedRequest.getDescription());
+        })
+        .toList(); // @formatter:on
+
+    updateBreeds(changedBreeds);
+
+    /* This maps each breed ID to the number of its child rows that were inserted or deleted. */
+    Map<Integer, Integer> childRowsTouched = modifyBreedsAlternateNames(requests);
+    modifyBreedsCategories(requests).forEach(
+        (breedId, rows) -> childRowsTouched.merge(breedId, rows, Integer::sum));
+
+    /* The breed row updates changed those versions. The rest are changed here if needed. */
+    Set<Integer> updatedIds = new HashSet<>();
+    changedBreeds.forEach(breed -> updatedIds.add(breed.getBreedId()));
+
+    incrementVersions(childRowsTouched.entrySet()
+        .stream() // @formatter:off
+        .filter(entry -> entry.getValue() > 0 && !updatedIds.contains(entry.getKey()))
+        .map(Map.Entry::getKey)
+        .toList()); // @formatter:on
 
-    /* This could be written like this: */
-    // List<Category> categories = fetchOrCreateCategories(categoryNames);
-    //
-    // for(Category category : categories) {
-    // insertBreedCategory(breedId, category.getCategoryId());
-    // }
+    /* Like modifyBunny, each breed's rows are recorded, so the two can be compared. */
+    childRowsTouched.forEach((breedId, rows) -> modifyRowsTouched
+        .record(rows + (updatedIds.contains(breedId) ? 1 : 0)));
+
+    return requests.keySet();
   }
 
   /**
-   * Insert a row into the breed_category join table.
+   * Read the breed rows with the given breed IDs and lock them until the transaction ends. This is
+   * like {@link #lockBunny(int)} for many breeds. The IDs are read {@link #MAX_IN_LIST_SIZE} at a
+   * time.
    * 
-   * @param breedId The breed ID
-   * @param categoryId The category ID
+   * @param breedIds The breed IDs.
+   * @return A map of breed ID to breed (without alternate names or categories). IDs that don't
+   *         exist are not in the map.
    */
-  private void insertBreedCategory(int breedId, int categoryId) {
+  private Map<Integer, Breed> lockBunnies(Collection<Integer> breedIds) {
     /*
-     * When formatted, the SQL looks like this:
-     * "INSERT INTO breed_category (breed_id, category_id) VALUES (:breed_id, :category_id)". The
-     * two parameter placeholders ":breed_id" and ":category_id" mean that the keys "breed_id" and
-     * "category_id" along with their associated values must be placed into the parameter map.
+     * When formatted, the query will be: "SELECT b.* FROM breed b WHERE breed_id IN (:breed_id)
+     * FOR UPDATE".
      */
     String sql = """
-        INSERT INTO %s (%s, %s)
-        VALUES
-        (:%s, :%s)
-        """.formatted(BREED_CATEGORY_TABLE, BREED_ID, CATEGORY_ID, BREED_ID, CATEGORY_ID);
+        SELECT b.*
+        FROM %s b
+        WHERE %s IN (:%s)
+        FOR UPDATE
+        """.formatted(BREED_TABLE, BREED_ID, BREED_ID);
+
+    List<Integer> ids = List.copyOf(breedIds);
+    Map<Integer, Breed> breeds = new HashMap<>();
+
+    for (int start = 0; start < ids.size(); start += MAX_IN_LIST_SIZE) {
+      List<Integer> group = ids.subList(start, Math.min(start + MAX_IN_LIST_SIZE, ids.size()));
+
+      jdbcTemplate.query(sql, Map.of(BREED_ID, group), (RowCallbackHandler) rs -> breeds.put(
+          rs.getInt(BREED_ID), Breed // @formatter:off
+              .builder()
+              .breedId(rs.getInt(BREED_ID))
+              .breedName(rs.getString(BREED_NAME))
+              .description(rs.getString(DESCRIPTION))
+              .build())); // @formatter:on
+    }
 
-    Map<String, Object> params = Map.of(BREED_ID, breedId, CATEGORY_ID, categoryId);
-    jdbcTemplate.update(sql, params);
+    return breeds;
   }
 
   /**
-   * Retrieve or create and retrieve the Category objects with the given category names.
+   * Update the breed name and description of many breeds in a single JDBC batch. The statement is
+   * the same as the one in {@link #updateBreed(Breed)}.
    * 
-   * @param categoryNames A list of category names that belong to the working breed object.
-   * @return The list of {@link Category} objects, either fetched or inserted.
+   * @param breedRequests The modified breeds.
    */
-  private List<Category> fetchOrCreateCategories(List<String> categoryNames) {
-    List<Category> categories = new LinkedList<>();
-
-    /* Iterate over the list of category names. This could be written as an enhanced for loop. */
-    categoryNames.forEach(categoryName -> {
-      /*
-       * Retrieve the category with the given name. If the Optional is empty, create the category.
-       */
-      Optional<Category> optionalCategory = fetchCategoryByName(categoryName);
-
-      if (optionalCategory.isPresent()) {
-        /* Add the retrieved Category object to the list. */
-        categories.add(optionalCategory.get());
-      } else {
-        /* Add the created Category to the list. */
-        categories.add(insertCategory(categoryName));
-      }
-    });
-
-    return categories;
+  private void updateBreeds(List<Breed> breedRequests) {
+    if (!breedRequests.isEmpty()) {
+      String sql = """
+          UPDATE %s
+          SET %s = :%s, %s = :%s, %s = %s + 1
+          WHERE %s = :%s
+          """.formatted(BREED_TABLE, BREED_NAME, BREED_NAME, DESCRIPTION, DESCRIPTION, VERSION,
+          VERSION, BREED_ID, BREED_ID);
+
+      SqlParameterSource[] batch = breedRequests
+          .stream() // @formatter:off
+          .map(breedRequest -> new MapSqlParameterSource(Map.of(
+              BREED_NAME, breedRequest.getBreedName(),
+              DESCRIPTION, breedRequest.getDescription(),
+              BREED_ID, breedRequest.getBreedId())))
+          .toArray(SqlParameterSource[]::new); // @formatter:on
+
+      jdbcTemplate.batchUpdate(sql, batch);
+    }
   }
 
   /**
-   * Insert a new category row with the given category name.
+   * Change the alternate names of many breeds. This is like
+   * {@link #modifyBreedAlternateNames(int, List)}, except that the current rows of all the breeds
+   * are read with one query, the leftover rows are deleted with one statement and the new names
+   * are inserted in one batch.
    * 
-   * @param categoryName The category name.
-   * @return A {@link Category} object that contains the contents of the category row.
+   * @param requests A map of breed ID to the modified breed.
+   * @return A map of breed ID to the number of the breed's rows that were inserted and deleted.
    */
-  private Category insertCategory(String categoryName) {
+  private Map<Integer, Integer> modifyBreedsAlternateNames(Map<Integer, Breed> requests) {
     /*
-     * When formatted, the SQL statement looks like this:
-     * "INSERT INTO category (category_name) VALUES (:category_name)". The placeholder
-     * ":category_name" means the the key "category_name" and the name value must be added to the
-     * parameter map.
+     * When formatted, the SQL statement is: "SELECT alternate_id, breed_id, alternate_name FROM
+     * alt_name WHERE breed_id IN (:breed_id)".
      */
     String sql = """
-        INSERT INTO %s
-        (%s)
-        VALUES
-        (:%s)
-        """.formatted(CATEGORY_TABLE, CATEGORY_NAME, CATEGORY_NAME);
+        SELECT %s, %s, %s
+        FROM %s
+        WHERE %s IN (:%s)
+        """.formatted(ALTERNATE_ID, BREED_ID, ALTERNATE_NAME, ALT_NAME_TABLE, BREED_ID, BREED_ID);
 
-    SqlParameterSource params = new MapSqlParameterSource(Map.of(CATEGORY_NAME, categoryName));
-    KeyHolder keyHolder = new GeneratedKeyHolder();
+    /* This maps each breed ID to a map of alternate ID to name. */
+    Map<Integer, Map<Integer, String>> currentNames = new HashMap<>();
+    requests.keySet().forEach(breedId -> currentNames.put(breedId, new HashMap<>()));
 
-    jdbcTemplate.update(sql, params, keyHolder);
+    List<Integer> ids = List.copyOf(requests.keySet());
 
-    /*
-     * This method call retrieves the primary key value generated by MySQL. SonarLint generates
-     * warning "java:S2259" because it thinks that a NullPointerException could be thrown if
-     * getKeyAs() returns null. Although this may be true, it is extremely unlikely. Also, the
-     * NullPointerException will definitely pinpoint the problem, so allow it to be thrown if it
-     * ever is.
-     */
-    @SuppressWarnings("java:S2259")
-    int categoryId = keyHolder.getKeyAs(BigInteger.class).intValue();
+    for (int start = 0; start < ids.size(); start += MAX_IN_LIST_SIZE) {
+      List<Integer> group = ids.subList(start, Math.min(start + MAX_IN_LIST_SIZE, ids.size()));
 
-    return Category
-        .builder() // @formatter:off
-          .categoryId(categoryId)
-          .categoryName(categoryName)
-          .build(); // @formatter:on
+      jdbcTemplate.query(sql, Map.of(BREED_ID, group),
+          (RowCallbackHandler) rs -> currentNames.get(rs.getInt(BREED_ID))
+              .put(rs.getInt(ALTERNATE_ID), rs.getString(ALTERNATE_NAME)));
+    }
+
+    Map<Integer, List<String>> addedNames = new HashMap<>();
+    Set<Integer> removedIds = new HashSet<>();
+    Map<Integer, Integer> rowsTouched = new HashMap<>();
+
+    requests.forEach((breedId, breedRequest) -> {
+      Map<Integer, String> names = currentNames.get(breedId);
+      List<String> added = matchAlternateNames(names, breedRequest.getAlternameNames());
+
+      addedNames.put(breedId, added);
+      removedIds.addAll(names.keySet());
+      rowsTouched.put(breedId, names.size() + added.size());
+    });
+
+    deleteBreedAlternateNames(removedIds);
+    insertBreedAlternateNames(addedNames);
+
+    return rowsTouched;
   }
 
   /**
-   * Returns the Category object as an Optional.
+   * Change the categories of many breeds. This is like {@link #modifyBreedCategories(int, List)},
+   * except that the current rows of all the breeds are read with one query, the category names of
+   * all the breeds are resolved together, and the rows are deleted and inserted in one batch each.
    * 
-   * @param categoryName The name of the category to retrieve.
-   * @return If the category name exists in the table, the row is returned as a Category object in
-   *         the Optional. If it does not exist, an empty Optional is returned.
+   * @param requests A map of breed ID to the modified breed.
+   * @return A map of breed ID to the number of the breed's rows that were inserted and deleted.
    */
-  private Optional<Category> fetchCategoryByName(String categoryName) {
+  private Map<Integer, Integer> modifyBreedsCategories(Map<Integer, Breed> requests) {
     /*
-     * When formatted, the SQL query looks like this:
-     * "SELECT * FROM category WHERE category_name = :category_name". The placeholder
-     * ":category_name" means that the parameter map must contain the key "category_name" with the
-     * associated name value.
+     * When formatted, the SQL statement is: "SELECT breed_id, category_id FROM breed_category
+     * WHERE breed_id IN (:breed_id)".
      */
     String sql = """
-        SELECT *
+        SELECT %s, %s
         FROM %s
-        WHERE %s = :%s
-        """.formatted(CATEGORY_TABLE, CATEGORY_NAME, CATEGORY_NAME);
+        WHERE %s IN (:%s)
+        """.formatted(BREED_ID, CATEGORY_ID, BREED_CATEGORY_TABLE, BREED_ID, BREED_ID);
 
-    SqlParameterSource params = new MapSqlParameterSource(Map.of(CATEGORY_NAME, categoryName));
+    /* This maps each breed ID to the breed's current category IDs. */
+    Map<Integer, Set<Integer>> removedIds = new HashMap<>();
+    requests.keySet().forEach(breedId -> removedIds.put(breedId, new HashSet<>()));
 
-    /*
-     * The Lambda expression returns an Optional with a Category object if the category name is
-     * found. It returns an empty Optional if the category name is not found. Note that (at least at
-     * the time this was written) the Java compiler can't infer the parameter type for the
-     * ResultSetExtractor extractData method. So the parameter type (ResultSet) must be supplied.
-     */
-    return Optional.ofNullable(jdbcTemplate.query(sql, params, (ResultSet rs) -> {
-      if (rs.next()) {
-        return Category
-            .builder() // @formatter:off
-            .categoryId(rs.getInt(CATEGORY_ID))
-            .categoryName(rs.getString(CATEGORY_NAME))
-            .build(); // @formatter:on
-      }
+    List<Integer> ids = List.copyOf(requests.keySet());
+
+    for (int start = 0; start < ids.size(); start += MAX_IN_LIST_SIZE) {
+      List<Integer> group = ids.subList(start, Math.min(start + MAX_IN_LIST_SIZE, ids.size()));
+
+      jdbcTemplate.query(sql, Map.of(BREED_ID, group),
+          (RowCallbackHandler) rs -> removedIds.get(rs.getInt(BREED_ID))
+              .add(rs.getInt(CATEGORY_ID)));
+    }
+
+    /* The categories of all the breeds are resolved together. */
+    Map<String, Integer> categoryIdsByName = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    fetchOrCreateCategories(requests.values()
+        .stream() // @formatter:off
+        .flatMap(breedRequest -> breedRequest.getCategoryNames().stream())
+        .toList()) // @formatter:on
+            .forEach(category -> categoryIdsByName.put(category.getCategoryName(),
+                category.getCategoryId()));
 
-      return null;
-    }));
+    Map<Integer, Set<Integer>> addedIds = new HashMap<>();
+    Map<Integer, Integer> rowsTouched = new HashMap<>();
+
+    requests.forEach((breedId, breedRequest) -> {
+      Set<Integer> added = new LinkedHashSet<>();
+
+      breedRequest.getCategoryNames().forEach(name -> {
+        int categoryId = categoryIdsByName.get(name);
+
+        /* If the category was already there it is not removed. Otherwise, it is added. */
+        if (!removedIds.get(breedId).remove(categoryId)) {
+          added.add(categoryId);
+        }
+      });
+
+      addedIds.put(breedId, added);
+      rowsTouched.put(breedId, removedIds.get(breedId).size() + added.size());
+    });
 
     /*
-     * If you don't like Lambda expressions (or compound Optional assignments) you can write the
-     * above like this:
+     * When formatted, this works out to: "DELETE FROM breed_category WHERE breed_id = :breed_id
+     * AND category_id = :category_id".
      */
-    // Category category = jdbcTemplate.query(sql, params, new ResultSetExtractor<>() {
-    // @Override
-    // public Category extractData(ResultSet rs) throws SQLException {
-    // if (rs.next()) {
-    // return Category
-    // .builder()
-    // .categoryId(rs.getInt(CATEGORY_ID))
-    // .categoryName(rs.getString(CATEGORY_NAME))
-    // .build();
-    // }
-    //
-    // return null;
-    // }
-    // });
-    //
-    // return Optional.ofNullable(category);
-  }
-
-  /**
-   * Modify the bunny breed row or the alternate names or categories.
+    sql = """
+        DELETE FROM %s
+        WHERE %s = :%s
+        AND %s = :%s
+        """.formatted(BREED_CATEGORY_TABLE, BREED_ID, BREED_ID, CATEGORY_ID, CATEGORY_ID);
+
+    SqlParameterSource[] batch = removedIds.entrySet()
+        .stream() // @formatter:off
+        .flatMap(entry -> entry.getValue()
+            .stream()
+            .map(categoryId -> new MapSqlParameterSource(
+                Map.of(BREED_ID, entry.getKey(), CATEGORY_ID, categoryId))))
+        .toArray(SqlParameterSource[]::new); // @formatter:on
+
+    if (batch.length > 0) {
+      jdbcTemplate.batchUpdate(sql, batch);
+    }
+
+    insertBreedCategoryIds(addedIds);
+
+    return rowsTouched;
+  }
+
+  /**
+   * Update the breed name and description in the breed row, and increment the breed's version.
    * 
-   * @param breedRequest The modified data. This must contain a valid breed ID.
-   * @return {@code true} if successful. Returns {@code false} if the breed ID is invalid.
+   * @param breedRequest The modified data.
+   * @return The number of rows updated.
    */
-  public boolean modifyBunny(Breed breedRequest) {
+  private int updateBreed(Breed breedRequest) {
     /*
      * When formatted, the SQL statement is this: "UPDATE breed SET breed_name = :breed_name,
-     * description = :description WHERE breed_id = :breed_id". The parameter map must contain values
-     * for the keys "breed_name", "description", and "breed_id".
+     * description = :description, version = version + 1 WHERE breed_id = :breed_id". The parameter
+     * map must contain values for the keys "breed_name", "description", and "breed_id".
      */
     String sql = """
         UPDATE %s
-        SET %s = :%s, %s = :%s
+        SET %s = :%s, %s = :%s, %s = %s + 1
         WHERE %s = :%s
-        """.formatted(BREED_TABLE, BREED_NAME, BREED_NAME, DESCRIPTION, DESCRIPTION, BREED_ID,
-        BREED_ID);
+        """.formatted(BREED_TABLE, BREED_NAME, BREED_NAME, DESCRIPTION, DESCRIPTION, VERSION,
+        VERSION, BREED_ID, BREED_ID);
 
     Map<String, Object> params = Map
         .of( // @formatter:off
@@ -567,81 +1568,170 @@ public class BunnyDao {
         DESCRIPTION, breedRequest.getDescription(), 
         BREED_ID, breedRequest.getBreedId()); // @formatter:on
 
+    /* update() returns the number of rows updated. */
+    return jdbcTemplate.update(sql, params);
+  }
+
+  /**
+   * Change the alternate names of a breed to the given names. The current alternate name rows are
+   * read and matched up with the given names. Each current row with a matching name is kept. The
+   * rows that are left over are deleted by primary key, and the names that are left over are
+   * inserted. Alternate names may be repeated, so a name is matched with one row each time it
+   * appears.
+   * 
+   * @param breedId The breed ID
+   * @param alternameNames The new list of alternate names
+   * @return The number of rows inserted and deleted.
+   */
+  private int modifyBreedAlternateNames(int breedId, List<String> alternameNames) {
     /*
-     * update() returns the number of rows updated. If the primary key value is valid, the result
-     * should be 1 row.
+     * When formatted, the SQL statement is: "SELECT alternate_id, alternate_name FROM alt_name
+     * WHERE breed_id = :breed_id".
      */
-    boolean updated = jdbcTemplate.update(sql, params) == 1;
+    String sql = """
+        SELECT %s, %s
+        FROM %s
+        WHERE %s = :%s
+        """.formatted(ALTERNATE_ID, ALTERNATE_NAME, ALT_NAME_TABLE, BREED_ID, BREED_ID);
 
-    if (updated) {
-      updateBreedAlternateNames(breedRequest.getBreedId(), breedRequest.getAlternameNames());
-      updateBreedCategories(breedRequest.getBreedId(), breedRequest.getCategoryNames());
-    }
+    Map<String, Object> params = Map.of(BREED_ID, breedId);
+
+    /* This maps each current alternate ID to its name. */
+    Map<Integer, String> currentNames = jdbcTemplate.query(sql, params, (ResultSet rs) -> {
+      Map<Integer, String> names = new HashMap<>();
+
+      while (rs.next()) {
+        names.put(rs.getInt(ALTERNATE_ID), rs.getString(ALTERNATE_NAME));
+      }
+
+      return names;
+    });
 
-    return updated;
+    List<String> addedNames = matchAlternateNames(currentNames, alternameNames);
+
+    /* Whatever is left in the map is no longer an alternate name of the breed. */
+    deleteBreedAlternateNames(currentNames.keySet());
+    insertBreedAlternateNames(Map.of(breedId, addedNames));
+
+    return currentNames.size() + addedNames.size();
   }
 
   /**
-   * Rather than executing a complex algorithm to see what's in the database and adding changed
-   * values, it's a lot easier (and probably just a fast) to simply delete all the rows in the join
-   * table that match the breed ID and re-add the new ones.
+   * Match up the current alternate name rows of a breed with the new alternate names. Each current
+   * row with a matching name is removed from the map. The names that didn't match a row are
+   * returned.
    * 
-   * @param breedId The breed ID
-   * @param categoryNames The category names to add.
+   * @param currentNames A map of alternate ID to alternate name. When this method returns, the map
+   *        only holds the rows that must be deleted.
+   * @param alternameNames The new list of alternate names.
+   * @return The names that must be inserted.
    */
-  private void updateBreedCategories(Integer breedId, List<String> categoryNames) {
-    deleteBreedCategories(breedId);
-    insertBreedCategories(breedId, categoryNames);
+  private List<String> matchAlternateNames(Map<Integer, String> currentNames,
+      List<String> alternameNames) {
+    List<String> addedNames = new LinkedList<>();
+
+    alternameNames.forEach(name -> {
+      Optional<Integer> match = currentNames.entrySet()
+          .stream() // @formatter:off
+          .filter(entry -> entry.getValue().equals(name))
+          .map(Map.Entry::getKey)
+          .findFirst(); // @formatter:on
+
+      match.ifPresentOrElse(currentNames::remove, () -> addedNames.add(name));
+    });
+
+    return addedNames;
   }
 
   /**
-   * Delete the breed categories associated with the breed to be modified.
+   * Delete the alternate name rows with the given alternate IDs. The IDs are deleted
+   * {@link #MAX_IN_LIST_SIZE} at a time. No statement is run if there is nothing to delete, because
+   * "IN ()" is not valid SQL.
    * 
-   * @param breedId The breed ID
+   * @param alternateIds The alternate IDs (primary keys) of the rows to delete.
    */
-  private void deleteBreedCategories(Integer breedId) {
+  private void deleteBreedAlternateNames(Collection<Integer> alternateIds) {
     /*
-     * When formatted, this works out to: "DELETE FROM breed_category WHERE breed_id = :breed_id".
-     * This means that we need to add "breed_id" to the parameter map.
+     * When formatted, the SQL statement is: "DELETE FROM alt_name WHERE alternate_id IN
+     * (:alternate_id)".
      */
     String sql = """
         DELETE FROM %s
-        WHERE %s = :%s
-        """.formatted(BREED_CATEGORY_TABLE, BREED_ID, BREED_ID);
+        WHERE %s IN (:%s)
+        """.formatted(ALT_NAME_TABLE, ALTERNATE_ID, ALTERNATE_ID);
 
-    Map<String, Object> params = Map.of(BREED_ID, breedId);
-    jdbcTemplate.update(sql, params);
-  }
+    List<Integer> ids = List.copyOf(alternateIds);
 
-  /**
-   * Just like categories, delete all the alternate names associated with the breed ID and re-add
-   * the given ones.
-   * 
-   * @param breedId The breed ID
-   * @param alternameNames The list of alternate names
-   */
-  private void updateBreedAlternateNames(Integer breedId, List<String> alternameNames) {
-    deleteBreedAlternateNames(breedId);
-    insertBreedAlternateNames(breedId, alternameNames);
+    for (int start = 0; start < ids.size(); start += MAX_IN_LIST_SIZE) {
+      List<Integer> group = ids.subList(start, Math.min(start + MAX_IN_LIST_SIZE, ids.size()));
+      jdbcTemplate.update(sql, Map.of(ALTERNATE_ID, group));
+    }
   }
 
   /**
-   * Delete the alternate names associated with the breed.
+   * Change the categories of a breed to the given categories. The category IDs currently in the
+   * breed_category table are compared to the IDs of the given category names. Rows for categories
+   * that were removed from the breed are deleted, and rows for categories that were added to the
+   * breed are inserted. Rows for categories that did not change are left alone.
    * 
-   * @param breedId The breed ID that forms the association.
+   * @param breedId The breed ID
+   * @param categoryNames The new list of category names. If a category name does not exist in the
+   *        category table, it is added.
+   * @return The number of rows inserted and deleted.
    */
-  private void deleteBreedAlternateNames(Integer breedId) {
+  private int modifyBreedCategories(int breedId, List<String> categoryNames) {
     /*
-     * When formatted, the SQL statement is: "DELETE FROM alt_name WHERE breed_id = :breed_id". This
-     * means we need to add "breed_id" to the parameter map.
+     * When formatted, the SQL statement is: "SELECT category_id FROM breed_category WHERE breed_id
+     * = :breed_id".
      */
     String sql = """
-        DELETE FROM %s
+        SELECT %s
+        FROM %s
         WHERE %s = :%s
-        """.formatted(ALT_NAME_TABLE, BREED_ID, BREED_ID);
+        """.formatted(CATEGORY_ID, BREED_CATEGORY_TABLE, BREED_ID, BREED_ID);
 
     Map<String, Object> params = Map.of(BREED_ID, breedId);
-    jdbcTemplate.update(sql, params);
+
+    Set<Integer> removedIds =
+        new HashSet<>(jdbcTemplate.query(sql, params, (rs, rowNum) -> rs.getInt(CATEGORY_ID)));
+
+    List<Integer> addedIds = new LinkedList<>();
+
+    fetchOrCreateCategories(categoryNames).forEach(category -> {
+      /* If the category was already there it is not removed. Otherwise, it is added. */
+      if (!removedIds.remove(category.getCategoryId())) {
+        addedIds.add(category.getCategoryId());
+      }
+    });
+
+    deleteBreedCategories(breedId, removedIds);
+    insertBreedCategoryIds(Map.of(breedId, addedIds));
+
+    return removedIds.size() + addedIds.size();
+  }
+
+  /**
+   * Delete the breed_category rows for the given breed and category IDs.
+   * 
+   * @param breedId The breed ID
+   * @param categoryIds The IDs of the categories to remove from the breed.
+   */
+  private void deleteBreedCategories(int breedId, Collection<Integer> categoryIds) {
+    /* "IN ()" is not valid SQL so don't run the statement if there is nothing to delete. */
+    if (!categoryIds.isEmpty()) {
+      /*
+       * When formatted, this works out to: "DELETE FROM breed_category WHERE breed_id = :breed_id
+       * AND category_id IN (:category_id)".
+       */
+      String sql = """
+          DELETE FROM %s
+          WHERE %s = :%s
+          AND %s IN (:%s)
+          """.formatted(BREED_CATEGORY_TABLE, BREED_ID, BREED_ID, CATEGORY_ID, CATEGORY_ID);
+
+      Map<String, Object> params = Map.of(BREED_ID, breedId, CATEGORY_ID, categoryIds);
+      jdbcTemplate.update(sql, params);
+    }
   }
 
   /**
@@ -666,4 +1756,136 @@ public class BunnyDao {
     /* Return true if the number of rows deleted is 1. */
     return jdbcTemplate.update(sql, params) == 1;
   }
+
+  /**
+   * Delete the breeds with the given breed IDs. The breeds are locked first so that the IDs of the
+   * breeds that exist are known. Then they are deleted with "DELETE FROM breed WHERE breed_id IN
+   * (...)". Like {@link #deleteBunnyBreed(int)}, the child rows are deleted by ON DELETE CASCADE.
+   * The IDs are deleted {@link #MAX_IN_LIST_SIZE} at a time. This must be called in a transaction.
+   * 
+   * @param breedIds The breed IDs.
+   * @return The IDs of the breeds that were deleted.
+   */
+  public Set<Integer> deleteBunnyBreeds(Collection<Integer> breedIds) {
+    log.info("Dao: Delete {} bunnies", breedIds.size());
+
+    Set<Integer> deletedIds = lockBunnies(breedIds).keySet();
+
+    /* When formatted the SQL statement is: "DELETE FROM breed WHERE breed_id IN (:breed_id)" */
+    String sql = """
+        DELETE FROM %s
+        WHERE %s IN (:%s)
+        """.formatted(BREED_TABLE, BREED_ID, BREED_ID);
+
+    List<Integer> ids = List.copyOf(deletedIds);
+
+    for (int start = 0; start < ids.size(); start += MAX_IN_LIST_SIZE) {
+      List<Integer> group = ids.subList(start, Math.min(start + MAX_IN_LIST_SIZE, ids.size()));
+      jdbcTemplate.update(sql, Map.of(BREED_ID, group));
+    }
+
+    return deletedIds;
+  }
+
+  /**
+   * Returns the IDs of the breeds in the category with the given name.
+   * 
+   * @param categoryName The category name.
+   * @return The breed IDs. The list is empty if the category does not exist.
+   */
+  public List<Integer> fetchBreedIdsInCategory(String categoryName) {
+    /*
+     * When formatted, the SQL query is: "SELECT bc.breed_id FROM breed_category bc JOIN category c
+     * USING (category_id) WHERE c.category_name = :category_name".
+     */
+    String sql = """
+        SELECT bc.%s
+        FROM %s bc
+        JOIN %s c USING (%s)
+        WHERE c.%s = :%s
+        """.formatted(BREED_ID, BREED_CATEGORY_TABLE, CATEGORY_TABLE, CATEGORY_ID, CATEGORY_NAME,
+        CATEGORY_NAME);
+
+    Map<String, Object> params = Map.of(CATEGORY_NAME, categoryName);
+    return jdbcTemplate.query(sql, params, (rs, rowNum) -> rs.getInt(BREED_ID));
+  }
+
+  /**
+   * Returns the version of the breed with the given breed ID. A new breed starts at version 1, so
+   * a breed that doesn't exist (or was deleted) is returned as version 0.
+   * 
+   * @param breedId The breed ID.
+   * @return The breed version, or 0 if there is no such breed.
+   */
+  public long fetchBreedVersion(int breedId) {
+    /* When formatted, the SQL query is: "SELECT version FROM breed WHERE breed_id = :breed_id". */
+    String sql = """
+        SELECT %s
+        FROM %s
+        WHERE %s = :%s
+        """.formatted(VERSION, BREED_TABLE, BREED_ID, BREED_ID);
+
+    Map<String, Object> params = Map.of(BREED_ID, breedId);
+    List<Long> versions = jdbcTemplate.query(sql, params, (rs, rowNum) -> rs.getLong(VERSION));
+
+    return versions.isEmpty() ? 0 : versions.get(0);
+  }
+
+  /**
+   * Returns the version of the whole catalog. There is no catalog row to update, because every
+   * writer would have to lock it until it commits. Instead, the version is made from the breed
+   * table: the number of breeds, the sum of the breed versions and the largest breed ID. Any
+   * committed change moves at least one of them:
+   * <ul>
+   * <li>A new breed gets a breed ID larger than any breed ever had, so the largest ID goes up.
+   * <li>Otherwise, if a breed was deleted, the count goes down.
+   * <li>Otherwise, the same breeds are there, and a changed breed has a higher version, so the sum
+   * goes up.
+   * </ul>
+   * The largest version alone is not enough, because a change to a breed with a low version doesn't
+   * move it. The sum costs a scan of the breed table, so the service caches the version for a short
+   * time.
+   * 
+   * @return The catalog version, like "39-57-39".
+   */
+  public String fetchCatalogVersion() {
+    /*
+     * When formatted, the SQL query is: "SELECT COUNT(*) AS breeds, COALESCE(SUM(version), 0) AS
+     * versions, COALESCE(MAX(breed_id), 0) AS last_breed_id FROM breed".
+     */
+    String sql = """
+        SELECT COUNT(*) AS breeds, COALESCE(SUM(%s), 0) AS versions,
+          COALESCE(MAX(%s), 0) AS last_breed_id
+        FROM %s
+        """.formatted(VERSION, BREED_ID, BREED_TABLE);
+
+    return jdbcTemplate.queryForObject(sql, Map.of(), (rs, rowNum) -> rs.getLong("breeds") + "-"
+        + rs.getLong("versions") + "-" + rs.getInt("last_breed_id"));
+  }
+
+  /**
+   * Increment the versions of the given breeds. This is used when only the alternate names or
+   * categories of a breed changed. The breed rows are already locked by the modify, so this adds no
+   * new locks. The IDs are updated {@link #MAX_IN_LIST_SIZE} at a time.
+   * 
+   * @param breedIds The IDs of the breeds whose child rows changed.
+   */
+  private void incrementVersions(Collection<Integer> breedIds) {
+    /*
+     * When formatted, the SQL statement is: "UPDATE breed SET version = version + 1 WHERE breed_id
+     * IN (:breed_id)".
+     */
+    String sql = """
+        UPDATE %s
+        SET %s = %s + 1
+        WHERE %s IN (:%s)
+        """.formatted(BREED_TABLE, VERSION, VERSION, BREED_ID, BREED_ID);
+
+    List<Integer> ids = List.copyOf(breedIds);
+
+    for (int start = 0; start < ids.size(); start += MAX_IN_LIST_SIZE) {
+      List<Integer> group = ids.subList(start, Math.min(start + MAX_IN_LIST_SIZE, ids.size()));
+      jdbcTemplate.update(sql, Map.of(BREED_ID, group));
+    }
+  }
 }
@@ -0,0 +1,96 @@
+/**
+ *
+ */
+package bunny.dao;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.stereotype.Component;
+import bunny.entity.Category;
+
+/**
+ * This class is an in-memory dictionary of all the rows in the category table. It maps category
+ * names to category IDs and category IDs to category names. The category table is tiny and almost
+ * never changes, so there is no reason to read it from the database over and over.
+ * <p>
+ * The dictionary is loaded by the {@link BunnyDao} when the application starts. After that, the DAO
+ * adds new categories as they are created. Since categories are never renamed or deleted by this
+ * application, an entry never becomes wrong. An entry may be missing if another copy of the
+ * application created the category. In that case the DAO reads the category from the database and
+ * adds it.
+ * <p>
+ * The maps are ConcurrentHashMaps so that any number of requests can read the dictionary at the
+ * same time without locking. Category names are looked up without regard to case because MySQL
+ * compares them that way by default.
+ *
+ * @author Promineo
+ *
+ */
+@Component
+public class CategoryDictionary {
+
+  private final Map<String, Integer> idsByName = new ConcurrentHashMap<>();
+  private final Map<Integer, String> namesById = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the category ID for the given category name.
+   *
+   * @param categoryName The category name.
+   * @return The category ID, or an empty Optional if the name is not in the dictionary.
+   */
+  public Optional<Integer> findCategoryId(String categoryName) {
+    return Optional.ofNullable(idsByName.get(key(categoryName)));
+  }
+
+  /**
+   * Returns the category name for the given category ID.
+   *
+   * @param categoryId The category ID.
+   * @return The category name, or an empty Optional if the ID is not in the dictionary.
+   */
+  public Optional<String> findCategoryName(int categoryId) {
+    return Optional.ofNullable(namesById.get(categoryId));
+  }
+
+  /**
+   * Add a category that is known to be committed to the database.
+   *
+   * @param category The category to add.
+   */
+  public void add(Category category) {
+    idsByName.put(key(category.getCategoryName()), category.getCategoryId());
+    namesById.put(category.getCategoryId(), category.getCategoryName());
+  }
+
+  /**
+   * Add a category that was just inserted. If there is a transaction, the category is not added
+   * until the transaction commits. Otherwise, a rollback would leave a category ID in the
+   * dictionary that does not exist in the database.
+   *
+   * @param category The category to add.
+   */
+  public void addAfterCommit(Category category) {
+    AfterCommit.run(() -> add(category));
+  }
+
+  /**
+   * Returns the number of categories in the dictionary.
+   *
+   * @return The number of categories.
+   */
+  public int size() {
+    return namesById.size();
+  }
+
+  /**
+   * Category names are stored in lower case so that they are found without regard to case.
+   *
+   * @param categoryName The category name.
+   * @return The dictionary key.
+   */
+  private String key(String categoryName) {
+    return categoryName.toLowerCase(Locale.ROOT);
+  }
+}
@@ -0,0 +1,66 @@
+/**
+ *
+ */
+package bunny.dao;
+
+import java.time.Duration;
+import java.util.Objects;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.JdbcProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * This class replaces the JdbcTemplate and the NamedParameterJdbcTemplate that Spring Boot creates
+ * with a {@link MeteredJdbcTemplate} and a {@link MeteredNamedParameterJdbcTemplate}. The
+ * spring.jdbc.template properties are applied as before. The slow statement log is set with the
+ * property "bunny.sql.slow-threshold" (default 500 ms, 0 turns it off).
+ *
+ * @author Promineo
+ *
+ */
+@Configuration
+public class MeteredJdbcConfig {
+
+  @Value("${bunny.sql.slow-threshold:500ms}")
+  private Duration slowThreshold;
+
+  /**
+   * Create the JdbcTemplate.
+   *
+   * @param dataSource The DataSource.
+   * @param properties The spring.jdbc properties.
+   * @param meterRegistry The meter registry that the row counters are registered with.
+   * @return The JdbcTemplate.
+   */
+  @Bean
+  public MeteredJdbcTemplate jdbcTemplate(DataSource dataSource, JdbcProperties properties,
+      MeterRegistry meterRegistry) {
+    MeteredJdbcTemplate jdbcTemplate = new MeteredJdbcTemplate(dataSource, meterRegistry);
+    JdbcProperties.Template template = properties.getTemplate();
+
+    jdbcTemplate.setSlowStatementThreshold(slowThreshold);
+    jdbcTemplate.setFetchSize(template.getFetchSize());
+    jdbcTemplate.setMaxRows(template.getMaxRows());
+
+    if (Objects.nonNull(template.getQueryTimeout())) {
+      jdbcTemplate.setQueryTimeout((int) template.getQueryTimeout().getSeconds());
+    }
+
+    return jdbcTemplate;
+  }
+
+  /**
+   * Create the NamedParameterJdbcTemplate that the {@link BunnyDao} uses.
+   *
+   * @param jdbcTemplate The JdbcTemplate that runs the statements.
+   * @return The NamedParameterJdbcTemplate.
+   */
+  @Bean
+  public MeteredNamedParameterJdbcTemplate namedParameterJdbcTemplate(
+      MeteredJdbcTemplate jdbcTemplate) {
+    return new MeteredNamedParameterJdbcTemplate(jdbcTemplate);
+  }
+}
@@ -0,0 +1,263 @@
+/**
+ *
+ */
+package bunny.dao;
+
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.RowMapperResultSetExtractor;
+import org.springframework.jdbc.core.SqlProvider;
+import org.springframework.jdbc.support.KeyHolder;
+import bunny.dao.MeteredNamedParameterJdbcTemplate.DescribedStatementCreator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * This JdbcTemplate counts the rows that are read and written. The {@link BunnyDao} uses it
+ * through the {@link MeteredNamedParameterJdbcTemplate}, so the DAO code doesn't change. The counts
+ * are published as the bunny.dao.rows.read and bunny.dao.rows.written counters.
+ * <p>
+ * The counters are tagged with the DAO method that ran the statement. The method is set for each
+ * DAO call with {@link #setDaoMethod(String)}. Statements run outside of a DAO call (like the ones
+ * that load the in-memory indexes when the application starts) are tagged "other". The tag values
+ * are the DAO method names, so the number of counters stays small.
+ * <p>
+ * Only the methods that the NamedParameterJdbcTemplate calls are counted:
+ * <ul>
+ * <li>Rows read with a RowMapper are the size of the returned list. Rows read with a
+ * RowCallbackHandler are counted as the handler is called. Rows read with a ResultSetExtractor are
+ * counted with a {@link CountingResultSet}, which counts the calls to next().
+ * <li>Rows written are the update counts. A batch that MySQL Connector/J rewrites into a
+ * multi-row INSERT returns SUCCESS_NO_INFO, which is counted as one row.
+ * </ul>
+ * <p>
+ * Each statement is also timed and counted for the current HTTP request (see
+ * {@link StatementStats}). A statement that takes longer than the slow statement threshold is
+ * written to the "bunny.sql.slow" log with its shape and a summary of its bind parameters (see
+ * {@link MeteredNamedParameterJdbcTemplate}).
+ *
+ * @author Promineo
+ *
+ */
+public class MeteredJdbcTemplate extends JdbcTemplate {
+
+  /** This is the tag value for statements that are run outside of a DAO call. */
+  private static final String OTHER = "other";
+
+  /** This is the DAO method that is running on the current thread. */
+  private static final ThreadLocal<String> daoMethod = new ThreadLocal<>();
+
+  /** Slow statements are written to this log so that they can be sent to their own file. */
+  private static final Logger slowLog = LoggerFactory.getLogger("bunny.sql.slow");
+
+  private final MeterRegistry meterRegistry;
+
+  private long slowStatementNanos;
+
+  private final Map<String, Counter> rowsRead = new ConcurrentHashMap<>();
+  private final Map<String, Counter> rowsWritten = new ConcurrentHashMap<>();
+
+  /**
+   * Create the template.
+   *
+   * @param dataSource The DataSource.
+   * @param meterRegistry The meter registry that the counters are registered with.
+   */
+  public MeteredJdbcTemplate(DataSource dataSource, MeterRegistry meterRegistry) {
+    super(dataSource);
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * Set the DAO method that is running on the current thread.
+   *
+   * @param method The method name, or {@code null} when the method is finished.
+   * @return The DAO method that was running before. Pass it back when the method is finished.
+   */
+  public static String setDaoMethod(String method) {
+    String previous = daoMethod.get();
+
+    if (Objects.isNull(method)) {
+      daoMethod.remove();
+    } else {
+      daoMethod.set(method);
+    }
+
+    return previous;
+  }
+
+  /**
+   * Set the time after which a statement is written to the slow statement log.
+   *
+   * @param slowStatementThreshold The time. Zero turns the slow statement log off.
+   */
+  public void setSlowStatementThreshold(Duration slowStatementThreshold) {
+    this.slowStatementNanos = slowStatementThreshold.toNanos();
+  }
+
+  /*
+   * The query methods below call the three-argument query method directly. The two-argument
+   * methods call each other, so calling them would count the rows twice.
+   */
+
+  @Override
+  public <T> List<T> query(PreparedStatementCreator psc, RowMapper<T> rowMapper) {
+    List<T> results = track(psc,
+        () -> super.query(psc, null, new RowMapperResultSetExtractor<>(rowMapper)));
+
+    read(results.size());
+    return results;
+  }
+
+  @Override
+  public void query(PreparedStatementCreator psc, RowCallbackHandler rch) {
+    long[] rows = {0};
+
+    try {
+      track(psc, () -> super.query(psc, null, rs -> {
+        while (rs.next()) {
+          rows[0]++;
+          rch.processRow(rs);
+        }
+
+        return null;
+      }));
+    } finally {
+      read(rows[0]);
+    }
+  }
+
+  @Override
+  public <T> T query(PreparedStatementCreator psc, ResultSetExtractor<T> rse) {
+    CountingResultSet[] counting = {null};
+
+    try {
+      return track(psc, () -> super.query(psc, null, rs -> {
+        counting[0] = new CountingResultSet(rs);
+        return rse.extractData(counting[0]);
+      }));
+    } finally {
+      read(Objects.isNull(counting[0]) ? 0 : counting[0].getRows());
+    }
+  }
+
+  @Override
+  public int update(PreparedStatementCreator psc) {
+    int rows = track(psc, () -> super.update(psc));
+
+    written(rows);
+    return rows;
+  }
+
+  @Override
+  public int update(PreparedStatementCreator psc, KeyHolder generatedKeyHolder) {
+    int rows = track(psc, () -> super.update(psc, generatedKeyHolder));
+
+    written(rows);
+    return rows;
+  }
+
+  @Override
+  public int[] batchUpdate(String sql, BatchPreparedStatementSetter pss) {
+    long start = System.nanoTime();
+    int[] counts;
+
+    try {
+      counts = super.batchUpdate(sql, pss);
+    } finally {
+      statementFinished(sql, () -> "batch of " + pss.getBatchSize(), System.nanoTime() - start);
+    }
+
+    long rows = 0;
+
+    for (int count : counts) {
+      rows += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(0, count);
+    }
+
+    written(rows);
+    return counts;
+  }
+
+  /**
+   * Run a statement and time it.
+   *
+   * @param <T> The type of the result.
+   * @param psc The statement creator.
+   * @param statement This runs the statement.
+   * @return The result of the statement.
+   */
+  private <T> T track(PreparedStatementCreator psc, Supplier<T> statement) {
+    long start = System.nanoTime();
+
+    try {
+      return statement.get();
+    } finally {
+      long nanos = System.nanoTime() - start;
+      String sql = psc instanceof SqlProvider provider ? provider.getSql() : null;
+      Supplier<String> parameters = psc instanceof DescribedStatementCreator described
+          ? described::getParameters
+          : () -> "";
+
+      statementFinished(Objects.isNull(sql) ? psc.toString() : sql, parameters, nanos);
+    }
+  }
+
+  /**
+   * Count a statement for the current request and write it to the slow statement log if it took
+   * too long.
+   *
+   * @param sql The SQL statement.
+   * @param parameters This returns the bind parameter summary. It is only called if the statement
+   *        is slow.
+   * @param nanos The time the statement took.
+   */
+  private void statementFinished(String sql, Supplier<String> parameters, long nanos) {
+    StatementStats.record(sql, nanos);
+
+    if (slowStatementNanos > 0 && nanos >= slowStatementNanos) {
+      slowLog.warn("{} ms: {} [{}]", nanos / 1_000_000, StatementStats.shape(sql),
+          parameters.get());
+    }
+  }
+
+  private void read(long rows) {
+    increment(rowsRead, "bunny.dao.rows.read", rows);
+  }
+
+  private void written(long rows) {
+    increment(rowsWritten, "bunny.dao.rows.written", rows);
+  }
+
+  /**
+   * Add rows to the counter of the current DAO method.
+   *
+   * @param counters The counters of one direction by DAO method.
+   * @param name The counter name.
+   * @param rows The number of rows.
+   */
+  private void increment(Map<String, Counter> counters, String name, long rows) {
+    String method = daoMethod.get();
+    String tag = Objects.isNull(method) ? OTHER : method;
+
+    counters.computeIfAbsent(tag, key -> Counter
+        .builder(name) // @formatter:off
+        .baseUnit("rows")
+        .tag("method", key)
+        .register(meterRegistry)) // @formatter:on
+        .increment(rows);
+  }
+}
@@ -0,0 +1,126 @@
+/**
+ *
+ */
+package bunny.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.function.Consumer;
+import org.springframework.jdbc.core.ParameterDisposer;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementCreatorFactory;
+import org.springframework.jdbc.core.SqlProvider;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+/**
+ * This NamedParameterJdbcTemplate adds the bind parameters to each statement that it passes to the
+ * {@link MeteredJdbcTemplate}. A summary of the parameters is written to the slow statement log. It
+ * lists each parameter by name. Long strings are cut short and lists show only their size, so a
+ * summary is always short and never contains a long description or a thousand breed IDs. The
+ * summary is only made if the statement is slow.
+ *
+ * @author Promineo
+ *
+ */
+public class MeteredNamedParameterJdbcTemplate extends NamedParameterJdbcTemplate {
+
+  /** Strings longer than this are cut short in the summary. */
+  private static final int MAX_STRING_LENGTH = 40;
+
+  /**
+   * Create the template.
+   *
+   * @param jdbcTemplate The JdbcTemplate that runs the statements.
+   */
+  public MeteredNamedParameterJdbcTemplate(MeteredJdbcTemplate jdbcTemplate) {
+    super(jdbcTemplate);
+  }
+
+  @Override
+  protected PreparedStatementCreator getPreparedStatementCreator(String sql,
+      SqlParameterSource paramSource, Consumer<PreparedStatementCreatorFactory> customizer) {
+    return new DescribedStatementCreator(
+        super.getPreparedStatementCreator(sql, paramSource, customizer), paramSource);
+  }
+
+  /**
+   * Summarize the bind parameters, like "breed_id=[250 values], breed_name='Dwarf Lop'".
+   *
+   * @param paramSource The parameters.
+   * @return The summary.
+   */
+  private static String summarize(SqlParameterSource paramSource) {
+    String[] names = paramSource.getParameterNames();
+
+    if (Objects.isNull(names)) {
+      return "";
+    }
+
+    StringJoiner summary = new StringJoiner(", ");
+
+    for (String name : names) {
+      Object value = paramSource.getValue(name);
+
+      if (value instanceof Collection<?> values) {
+        summary.add(name + "=[" + values.size() + " values]");
+      } else if (value instanceof String text) {
+        String shortText = text.length() > MAX_STRING_LENGTH
+            ? text.substring(0, MAX_STRING_LENGTH) + "..."
+            : text;
+
+        summary.add(name + "='" + shortText + "'");
+      } else {
+        summary.add(name + "=" + value);
+      }
+    }
+
+    return summary.toString();
+  }
+
+  /**
+   * This wraps a statement creator and adds the bind parameters. The SQL and the clean up are
+   * passed to the wrapped creator so that the JdbcTemplate works the same as before.
+   */
+  static final class DescribedStatementCreator
+      implements PreparedStatementCreator, SqlProvider, ParameterDisposer {
+    private final PreparedStatementCreator creator;
+    private final SqlParameterSource paramSource;
+
+    private DescribedStatementCreator(PreparedStatementCreator creator,
+        SqlParameterSource paramSource) {
+      this.creator = creator;
+      this.paramSource = paramSource;
+    }
+
+    @Override
+    public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
+      return creator.createPreparedStatement(con);
+    }
+
+    @Override
+    public String getSql() {
+      return creator instanceof SqlProvider provider ? provider.getSql() : null;
+    }
+
+    @Override
+    public void cleanupParameters() {
+      if (creator instanceof ParameterDisposer disposer) {
+        disposer.cleanupParameters();
+      }
+    }
+
+    /**
+     * Returns the bind parameter summary. It is made each time this is called.
+     *
+     * @return The summary.
+     */
+    String getParameters() {
+      return summarize(paramSource);
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/**
+ *
+ */
+package bunny.dao;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class creates the DataSource when replica databases are configured. Read-only transactions
+ * are then sent to the replicas by the {@link ReplicaRoutingDataSource}. Without replicas, this
+ * class does nothing and Spring Boot creates the usual DataSource from the spring.datasource
+ * properties.
+ * <p>
+ * The primary database is configured with the spring.datasource properties as before. The replicas
+ * are configured with these properties:
+ * <ul>
+ * <li>bunny.replicas.urls - The JDBC URLs of the replicas separated by commas. This turns the
+ * replicas on.
+ * <li>bunny.replicas.username and bunny.replicas.password - The replica user (default: the
+ * primary user).
+ * <li>bunny.replicas.selection - round-robin (the default) or least-loaded.
+ * <li>bunny.replicas.connection-timeout - How long to wait for a replica connection before the
+ * replica is marked down (default 2 seconds).
+ * <li>bunny.replicas.retry-interval - How long a replica that is down is skipped (default 30
+ * seconds).
+ * <li>bunny.replicas.max-lag - How long all reads go to the primary after a write (default 1
+ * second). This should be at least the usual replication lag.
+ * <li>bunny.replicas.read-your-writes - How long the reads of a client that wrote go to the
+ * primary (default 0, which turns it off).
+ * </ul>
+ * The driver is found from the URL, so the replicas can be any database with a JDBC driver on the
+ * classpath. To try the routing locally, point the primary and a replica at two embedded H2
+ * databases (i.e., jdbc:h2:mem:primary;MODE=MySQL and jdbc:h2:mem:replica;MODE=MySQL).
+ *
+ * @author Promineo
+ *
+ */
+@Configuration
+@ConditionalOnProperty("bunny.replicas.urls")
+@Slf4j
+public class ReplicaDataSourceConfig {
+
+  @Value("${bunny.replicas.urls}")
+  private List<String> urls;
+
+  @Value("${bunny.replicas.username:${spring.datasource.username:}}")
+  private String username;
+
+  @Value("${bunny.replicas.password:${spring.datasource.password:}}")
+  private String password;
+
+  @Value("${bunny.replicas.selection:round-robin}")
+  private String selection;
+
+  @Value("${bunny.replicas.connection-timeout:2s}")
+  private Duration connectionTimeout;
+
+  @Value("${bunny.replicas.retry-interval:30s}")
+  private Duration retryInterval;
+
+  @Value("${bunny.replicas.max-lag:1s}")
+  private Duration maxLag;
+
+  @Value("${bunny.replicas.read-your-writes:0s}")
+  private Duration readYourWrites;
+
+  /**
+   * Create the routing DataSource with the primary and replica connection pools. The primary pool
+   * is configured like the one Spring Boot creates, including the spring.datasource.hikari
+   * properties.
+   *
+   * @param properties The spring.datasource properties.
+   * @return The routing DataSource.
+   */
+  @Bean(destroyMethod = "close")
+  public ReplicaRoutingDataSource replicaRoutingDataSource(DataSourceProperties properties) {
+    HikariDataSource primary = primaryDataSource(properties);
+    List<HikariDataSource> replicas = new ArrayList<>();
+
+    for (String url : urls) {
+      HikariDataSource replica = new HikariDataSource();
+
+      replica.setPoolName("replica-" + (replicas.size() + 1));
+      replica.setJdbcUrl(url.trim());
+      replica.setUsername(username);
+      replica.setPassword(password);
+      replica.setReadOnly(true);
+      replica.setConnectionTimeout(connectionTimeout.toMillis());
+
+      /* Start the pool even if the replica is down. The replica is skipped until it is back. */
+      replica.setInitializationFailTimeout(-1);
+
+      replicas.add(replica);
+    }
+
+    log.info("DataSource: Routing read-only transactions to {} replicas ({})", replicas.size(),
+        selection);
+
+    ReplicaRoutingDataSource.Selection replicaSelection = ReplicaRoutingDataSource.Selection
+        .valueOf(selection.toUpperCase(Locale.ROOT).replace('-', '_'));
+
+    return new ReplicaRoutingDataSource(primary, replicas, replicaSelection, retryInterval, maxLag,
+        readYourWrites);
+  }
+
+  /**
+   * Create the primary connection pool.
+   *
+   * @param properties The spring.datasource properties.
+   * @return The primary connection pool.
+   */
+  @Bean
+  @ConfigurationProperties("spring.datasource.hikari")
+  public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+    return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+  }
+
+  /**
+   * Create the DataSource that the rest of the application uses. The routing DataSource is wrapped
+   * so that the connection isn't requested until the transaction is marked read-only. See
+   * {@link ReplicaRoutingDataSource}.
+   *
+   * @param router The routing DataSource.
+   * @return The DataSource.
+   */
+  @Bean
+  @Primary
+  public DataSource dataSource(ReplicaRoutingDataSource router) {
+    return new LazyConnectionDataSourceProxy(router);
+  }
+}
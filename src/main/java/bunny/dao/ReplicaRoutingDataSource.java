@@ -0,0 +1,281 @@
+/**
+ *
+ */
+package bunny.dao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This DataSource sends read-only transactions to the replica databases and everything else to the
+ * primary database. A transaction is read-only if it is started with
+ * {@code @Transactional(readOnly = true)} or with a read-only TransactionTemplate. See
+ * {@link ReplicaDataSourceConfig} for how it is turned on.
+ * <p>
+ * The transaction manager asks for a connection before it marks the transaction as read-only, so
+ * this DataSource must be wrapped in a {@link LazyConnectionDataSourceProxy}. The proxy doesn't
+ * ask for the real connection until the first statement is run, and by then the transaction is
+ * marked.
+ * <p>
+ * A replica is picked in one of two ways:
+ * <ul>
+ * <li>{@link Selection#ROUND_ROBIN} - Each read goes to the next replica in turn.
+ * <li>{@link Selection#LEAST_LOADED} - Each read goes to the replica with the fewest connections
+ * in use.
+ * </ul>
+ * If a replica can't give a connection, it is marked down and the read goes to the primary. The
+ * replica is skipped until the retry interval has passed. If every replica is down, all reads go
+ * to the primary.
+ * <p>
+ * A replica lags behind the primary. The breed versions (and so the ETags and the cached
+ * responses) change as soon as a write commits, so a read that sees an old breed on a replica
+ * would be cached with the new ETag and never corrected. To prevent this, every read goes to the
+ * primary for the "max lag" after any write commits. On top of that, a client that has written
+ * can be sent to the primary for a longer read-your-writes window. The client is set for each
+ * request by {@link #setClient(String)}.
+ * <p>
+ * Some reads must see the latest commit, like the background reads that keep the in-memory copies
+ * of the catalog up to date. They run in a read-only transaction named {@link #PRIMARY_READ} (see
+ * {@link #primaryReadTransaction(PlatformTransactionManager)}), which is sent to the primary.
+ * Because they are read-only, they don't start the "max lag" or read-your-writes windows.
+ *
+ * @author Promineo
+ *
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource {
+
+  /** This is how a replica is picked for a read. */
+  public enum Selection {
+    ROUND_ROBIN, LEAST_LOADED
+  }
+
+  /** A read-only transaction with this name is read from the primary. */
+  public static final String PRIMARY_READ = "primary-read";
+
+  /** This holds a replica and the time it can be tried again after a failure. */
+  private static final class Replica {
+    private final HikariDataSource dataSource;
+    private volatile long downUntil;
+
+    private Replica(HikariDataSource dataSource) {
+      this.dataSource = dataSource;
+    }
+
+    private boolean isUp(long now) {
+      return now - downUntil >= 0;
+    }
+
+    /**
+     * Returns the number of connections in use. The pool isn't started until the first connection
+     * is requested, so an unused replica has none.
+     */
+    private int activeConnections() {
+      HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+      return Objects.isNull(pool) ? 0 : pool.getActiveConnections();
+    }
+  }
+
+  private final HikariDataSource primary;
+  private final List<Replica> replicas;
+  private final Selection selection;
+  private final long retryIntervalNanos;
+  private final long maxLagNanos;
+
+  private final AtomicInteger next = new AtomicInteger();
+
+  /** This is the System.nanoTime() of the last write that committed. */
+  private final AtomicLong lastWrite = new AtomicLong(System.nanoTime() - Long.MAX_VALUE / 2);
+
+  /** These are the clients that wrote during the read-your-writes window. */
+  private final Cache<String, Boolean> recentWriters;
+
+  /** This is the client of the current request. */
+  private final ThreadLocal<String> client = new ThreadLocal<>();
+
+  /**
+   * Create the DataSource.
+   *
+   * @param primary The primary database.
+   * @param replicas The replica databases.
+   * @param selection How a replica is picked.
+   * @param retryInterval How long a failed replica is skipped.
+   * @param maxLag How long all reads go to the primary after a write.
+   * @param readYourWrites How long the reads of a client that wrote go to the primary. Zero turns
+   *        this off.
+   */
+  public ReplicaRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicas,
+      Selection selection, Duration retryInterval, Duration maxLag, Duration readYourWrites) {
+    this.primary = primary;
+    this.replicas = replicas.stream().map(Replica::new).toList();
+    this.selection = selection;
+    this.retryIntervalNanos = retryInterval.toNanos();
+    this.maxLagNanos = maxLag.toNanos();
+
+    this.recentWriters = readYourWrites.isZero() ? null
+        : Caffeine.newBuilder().expireAfterWrite(readYourWrites).build();
+  }
+
+  /**
+   * Set the client of the current request. A client is anything that identifies the caller, like
+   * an IP address. Call {@link #clearClient()} when the request is finished.
+   *
+   * @param clientKey The client.
+   */
+  public void setClient(String clientKey) {
+    client.set(clientKey);
+  }
+
+  /**
+   * Clear the client of the current request.
+   */
+  public void clearClient() {
+    client.remove();
+  }
+
+  /**
+   * Returns a transaction template that reads from the primary database without starting the "max
+   * lag" or read-your-writes windows. The isolation level is REPEATABLE READ so that every read in
+   * the transaction sees the same commits. Without replicas, this is just a read-only transaction.
+   *
+   * @param transactionManager The transaction manager.
+   * @return The transaction template.
+   */
+  public static TransactionTemplate primaryReadTransaction(
+      PlatformTransactionManager transactionManager) {
+    TransactionTemplate primaryRead = new TransactionTemplate(transactionManager);
+
+    primaryRead.setName(PRIMARY_READ);
+    primaryRead.setReadOnly(true);
+    primaryRead.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+
+    return primaryRead;
+  }
+
+  /**
+   * Returns a replica connection for a read-only transaction and a primary connection for
+   * everything else. A read-only transaction named {@link #PRIMARY_READ} gets a primary connection.
+   */
+  @Override
+  public Connection getConnection() throws SQLException {
+    if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+      watchForCommit();
+      return primary.getConnection();
+    }
+
+    if (PRIMARY_READ.equals(TransactionSynchronizationManager.getCurrentTransactionName())) {
+      return primary.getConnection();
+    }
+
+    long now = System.nanoTime();
+
+    if (now - lastWrite.get() < maxLagNanos || hasRecentlyWritten()) {
+      return primary.getConnection();
+    }
+
+    Replica replica = selectReplica(now);
+
+    if (Objects.isNull(replica)) {
+      return primary.getConnection();
+    }
+
+    try {
+      return replica.dataSource.getConnection();
+    } catch (SQLException e) {
+      replica.downUntil = now + retryIntervalNanos;
+
+      log.warn("Replica {} is down, reading from the primary: {}",
+          replica.dataSource.getPoolName(), e.getMessage());
+
+      return primary.getConnection();
+    }
+  }
+
+  /**
+   * A connection for another user is always taken from the primary.
+   */
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    return primary.getConnection(username, password);
+  }
+
+  /**
+   * Close the replica connection pools. The primary pool is a Spring bean, so Spring closes it.
+   */
+  public void close() {
+    replicas.forEach(replica -> replica.dataSource.close());
+  }
+
+  /**
+   * Returns {@code true} if the client of the current request wrote during the read-your-writes
+   * window.
+   */
+  private boolean hasRecentlyWritten() {
+    String clientKey = client.get();
+
+    return Objects.nonNull(recentWriters) && Objects.nonNull(clientKey)
+        && Objects.nonNull(recentWriters.getIfPresent(clientKey));
+  }
+
+  /**
+   * Record the time (and the client) when the current transaction commits. A connection outside of
+   * a transaction can't be told apart from a read, so it is recorded right away as if it wrote.
+   * That only sends a few more reads to the primary.
+   */
+  private void watchForCommit() {
+    String clientKey = client.get();
+
+    AfterCommit.run(() -> {
+      lastWrite.set(System.nanoTime());
+
+      if (Objects.nonNull(recentWriters) && Objects.nonNull(clientKey)) {
+        recentWriters.put(clientKey, Boolean.TRUE);
+      }
+    });
+  }
+
+  /**
+   * Pick a replica that is up.
+   *
+   * @param now The current System.nanoTime().
+   * @return The replica, or {@code null} if every replica is down.
+   */
+  private Replica selectReplica(long now) {
+    if (selection == Selection.LEAST_LOADED) {
+      return replicas
+          .stream() // @formatter:off
+          .filter(replica -> replica.isUp(now))
+          .min(Comparator.comparingInt(Replica::activeConnections))
+          .orElse(null); // @formatter:on
+    }
+
+    int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+
+    for (int offset = 0; offset < replicas.size(); offset++) {
+      Replica replica = replicas.get((start + offset) % replicas.size());
+
+      if (replica.isUp(now)) {
+        return replica;
+      }
+    }
+
+    return null;
+  }
+}
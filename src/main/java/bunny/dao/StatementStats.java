@@ -0,0 +1,180 @@
+/**
+ *
+ */
+package bunny.dao;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * This class counts the SQL statements run by one HTTP request and the time they take. The
+ * statements are counted by the {@link MeteredJdbcTemplate}. A request is tracked from
+ * {@link #start()} to {@link #finish()} on the thread that runs it. Statements run on a thread
+ * that isn't tracking a request are not counted.
+ * <p>
+ * The statements are also counted by shape. The shape is the SQL with the white space collapsed
+ * and every "IN (?, ?, ...)" list shortened to "IN (?...)", so the same query with different
+ * parameters has the same shape. A shape that is run many times in one request is the sign of an
+ * N+1 query: one query for a list and then one more query for each item in the list.
+ * <p>
+ * Counting a statement only adds its SQL to a map. The shapes are worked out when they are asked
+ * for, which is only when a request may have exceeded a limit. The shape of each SQL statement is
+ * cached, so the regular expressions are run once per statement, not once per call.
+ *
+ * @author Promineo
+ *
+ */
+public final class StatementStats {
+
+  /** The statement shapes of one request are limited to this many. */
+  private static final int MAX_SHAPES = 50;
+
+  /** The different SQL statements counted for one request are limited to this many. */
+  private static final int MAX_STATEMENTS = 200;
+
+  /** This is the shape that the statements are counted under when there are too many shapes. */
+  private static final String OTHER_SHAPES = "(other statements)";
+
+  private static final Pattern WHITE_SPACE = Pattern.compile("\\s+");
+  private static final Pattern PARAMETER_LIST = Pattern.compile("\\?(\\s*,\\s*\\?)+");
+
+  private static final ThreadLocal<StatementStats> current = new ThreadLocal<>();
+
+  /** This maps SQL statements to their shapes. */
+  private static final Cache<String, String> shapeCache =
+      Caffeine.newBuilder().maximumSize(1000).build();
+
+  private int statements;
+  private long nanos;
+
+  /** This counts each SQL statement in the order they were first run. */
+  private final Map<String, Integer> counts = new LinkedHashMap<>();
+
+  private StatementStats() {}
+
+  /**
+   * Start tracking the statements of the request on the current thread.
+   */
+  public static void start() {
+    current.set(new StatementStats());
+  }
+
+  /**
+   * Returns the statements of the request on the current thread so far.
+   *
+   * @return The statements, or an empty Optional if no request is being tracked.
+   */
+  public static Optional<StatementStats> current() {
+    return Optional.ofNullable(current.get());
+  }
+
+  /**
+   * Stop tracking the request on the current thread.
+   *
+   * @return The statements of the request, or an empty Optional if no request was being tracked.
+   */
+  public static Optional<StatementStats> finish() {
+    StatementStats stats = current.get();
+    current.remove();
+
+    return Optional.ofNullable(stats);
+  }
+
+  /**
+   * Returns the shape of a SQL statement. See the class comment.
+   *
+   * @param sql The SQL statement.
+   * @return The shape.
+   */
+  public static String shape(String sql) {
+    return shapeCache.get(sql, key -> {
+      String shape = WHITE_SPACE.matcher(key.trim()).replaceAll(" ");
+      return PARAMETER_LIST.matcher(shape).replaceAll("?...");
+    });
+  }
+
+  /**
+   * Count a statement for the request on the current thread.
+   *
+   * @param sql The SQL statement.
+   * @param statementNanos The time the statement took.
+   */
+  static void record(String sql, long statementNanos) {
+    StatementStats stats = current.get();
+
+    if (Objects.isNull(stats)) {
+      return;
+    }
+
+    stats.statements++;
+    stats.nanos += statementNanos;
+
+    String key = sql;
+
+    if (stats.counts.size() >= MAX_STATEMENTS && !stats.counts.containsKey(key)) {
+      key = OTHER_SHAPES;
+    }
+
+    stats.counts.merge(key, 1, Integer::sum);
+  }
+
+  /**
+   * Returns the number of statements.
+   *
+   * @return The number of statements.
+   */
+  public int getStatements() {
+    return statements;
+  }
+
+  /**
+   * Returns the total time of the statements in milliseconds.
+   *
+   * @return The time.
+   */
+  public long getMillis() {
+    return nanos / 1_000_000;
+  }
+
+  /**
+   * Returns the number of times each statement shape was run, in the order the shapes were first
+   * run.
+   *
+   * @return A map of shape to count.
+   */
+  public Map<String, Integer> getShapes() {
+    Map<String, Integer> shapes = new LinkedHashMap<>();
+
+    counts.forEach((sql, count) -> {
+      String shape = OTHER_SHAPES.equals(sql) ? OTHER_SHAPES : shape(sql);
+
+      if (shapes.size() >= MAX_SHAPES && !shapes.containsKey(shape)) {
+        shape = OTHER_SHAPES;
+      }
+
+      shapes.merge(shape, count, Integer::sum);
+    });
+
+    return Collections.unmodifiableMap(shapes);
+  }
+
+  /**
+   * Returns the number of times the most repeated statement shape was run.
+   *
+   * @return The count, or 0 if there were no statements.
+   */
+  public int getMaxRepeats() {
+    return getShapes().entrySet()
+        .stream() // @formatter:off
+        .filter(entry -> !OTHER_SHAPES.equals(entry.getKey()))
+        .mapToInt(Map.Entry::getValue)
+        .max()
+        .orElse(0); // @formatter:on
+  }
+}
@@ -0,0 +1,35 @@
+/**
+ *
+ */
+package bunny.entity;
+
+import java.util.List;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * This class is a Data Transfer Object (DTO) that holds the result of a batch modify or batch
+ * delete operation. There is one {@link BreedOutcome} for each distinct breed ID, in the order that
+ * the IDs were given. The counts are the number of breeds that were changed and the number of IDs
+ * that did not exist. Here is a sample:
+ *
+ * <pre>
+ * {
+ *   "results": [ { "breedId": 14, "outcome": "deleted" }, { "breedId": 107, "outcome": "not found" } ],
+ *   "changed": 1,
+ *   "notFound": 1
+ * }
+ * </pre>
+ *
+ * The Lombok @Value annotation makes this class immutable. See {@link Category} for details.
+ *
+ * @author Promineo
+ *
+ */
+@Value
+@Builder
+public class BatchResult {
+  private List<BreedOutcome> results;
+  private int changed;
+  private int notFound;
+}
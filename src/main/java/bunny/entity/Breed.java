@@ -10,6 +10,8 @@ import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Pattern;
 import javax.validation.constraints.Positive;
 import org.hibernate.validator.constraints.Length;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -73,12 +75,16 @@ import lombok.NoArgsConstructor;
  * </table>
  * The value in the JSON also must match the Java data type. For example, an exception is thrown if
  * "abc" is present and the Java object expects and Integer.
+ * <p>
+ * Fields that are {@code null} are not written to the JSON. When a caller asks for only some of the
+ * fields (see {@link BreedField}), the other fields are left {@code null}.
  * 
  * @author Promineo
  *
  */
 @Data
 @NoArgsConstructor
+@JsonInclude(Include.NON_NULL)
 public class Breed {
   @NotNull
   @Positive
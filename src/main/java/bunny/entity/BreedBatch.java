@@ -0,0 +1,33 @@
+/**
+ *
+ */
+package bunny.entity;
+
+import java.util.List;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * This class is a Data Transfer Object (DTO) that holds the breeds returned by the batch get
+ * operation. The breeds are in the order that their IDs were requested. Requested breed IDs that
+ * don't exist are listed in {@link #missing} instead of failing the whole request. Here is a
+ * sample:
+ *
+ * <pre>
+ * {
+ *   "breeds": [ ... ],
+ *   "missing": [ 107, 212 ]
+ * }
+ * </pre>
+ *
+ * The Lombok @Value annotation makes this class immutable. See {@link Category} for details.
+ *
+ * @author Promineo
+ *
+ */
+@Value
+@Builder
+public class BreedBatch {
+  private List<Breed> breeds;
+  private List<Integer> missing;
+}
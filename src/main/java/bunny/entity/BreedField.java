@@ -0,0 +1,75 @@
+/**
+ *
+ */
+package bunny.entity;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * This enum lists the {@link Breed} fields that a caller can ask for with the "fields" parameter
+ * (i.e., http://localhost:8080/bunny?fields=breedId,breedName). Only the requested fields are read
+ * from the database and written to the JSON. The breed ID is always returned, so
+ * {@link #BREED_ID} does not need to be requested.
+ *
+ * @author Promineo
+ *
+ */
+public enum BreedField {
+  BREED_ID("breedId"), BREED_NAME("breedName"), DESCRIPTION("description"),
+  CATEGORY_NAMES("categoryNames"), ALTERNAME_NAMES("alternameNames");
+
+  /** This is the regular expression used to validate the field names passed by the caller. */
+  public static final String FIELD_NAME_PATTERN =
+      "breedId|breedName|description|categoryNames|alternameNames";
+
+  /** These are the fields returned when the caller does not ask for specific fields. */
+  public static final Set<BreedField> ALL =
+      Collections.unmodifiableSet(EnumSet.allOf(BreedField.class));
+
+  private final String fieldName;
+
+  /**
+   * Create a field.
+   *
+   * @param fieldName The name of the field in the JSON.
+   */
+  BreedField(String fieldName) {
+    this.fieldName = fieldName;
+  }
+
+  /**
+   * Returns the name of the field in the JSON.
+   *
+   * @return The field name.
+   */
+  public String getFieldName() {
+    return fieldName;
+  }
+
+  /**
+   * Convert the field names passed by the caller to a set of fields. The breed ID is always added.
+   * The names must already be validated with {@link #FIELD_NAME_PATTERN}.
+   *
+   * @param fieldNames The field names. If this is {@code null} or empty, all fields are returned.
+   * @return The set of fields.
+   */
+  public static Set<BreedField> fromFieldNames(Collection<String> fieldNames) {
+    if (Objects.isNull(fieldNames) || fieldNames.isEmpty()) {
+      return ALL;
+    }
+
+    Set<BreedField> fields = EnumSet.of(BREED_ID);
+
+    fields.addAll(EnumSet.allOf(BreedField.class)
+        .stream() // @formatter:off
+        .filter(field -> fieldNames.contains(field.fieldName))
+        .collect(Collectors.toSet())); // @formatter:on
+
+    return fields;
+  }
+}
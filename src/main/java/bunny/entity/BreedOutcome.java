@@ -0,0 +1,38 @@
+/**
+ *
+ */
+package bunny.entity;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * This class is a Data Transfer Object (DTO) that holds the outcome of one breed ID in a batch
+ * modify or batch delete operation. The outcome is {@link #MODIFIED}, {@link #DELETED} or
+ * {@link #NOT_FOUND}. Here are two samples:
+ *
+ * <pre>
+ * { "breedId": 14, "outcome": "modified" }
+ * { "breedId": 107, "outcome": "not found" }
+ * </pre>
+ *
+ * The Lombok @Value annotation makes this class immutable. See {@link Category} for details.
+ *
+ * @author Promineo
+ *
+ */
+@Value
+@Builder
+public class BreedOutcome {
+  /** The breed was modified. */
+  public static final String MODIFIED = "modified";
+
+  /** The breed was deleted. */
+  public static final String DELETED = "deleted";
+
+  /** There is no breed with the breed ID. */
+  public static final String NOT_FOUND = "not found";
+
+  private int breedId;
+  private String outcome;
+}
@@ -0,0 +1,33 @@
+/**
+ * 
+ */
+package bunny.entity;
+
+import java.util.List;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * This class is a Data Transfer Object (DTO) that holds one page of bunny breeds. It is returned by
+ * the paged list operation. The breeds are sorted by breed name. If there are more breeds after
+ * this page, {@link #next} contains an opaque cursor that is passed in the "after" parameter to
+ * fetch the next page. If this is the last page, {@link #next} is {@code null}. Here is a sample:
+ * 
+ * <pre>
+ * {
+ *   "breeds": [ ... ],
+ *   "next": "MTQ6RHdhcmYgTG9w"
+ * }
+ * </pre>
+ * 
+ * The Lombok @Value annotation makes this class immutable. See {@link Category} for details.
+ * 
+ * @author Promineo
+ *
+ */
+@Value
+@Builder
+public class BreedPage {
+  private List<Breed> breeds;
+  private String next;
+}
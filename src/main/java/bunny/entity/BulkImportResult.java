@@ -0,0 +1,34 @@
+/**
+ *
+ */
+package bunny.entity;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * This class is a Data Transfer Object (DTO) that holds the outcome of one record in a bulk import.
+ * The line is the line number of the record in the uploaded NDJSON. If the breed was added, the
+ * breed ID is set. If not, the error says why. Fields that are {@code null} are not written to the
+ * JSON. Here are two samples:
+ *
+ * <pre>
+ * { "line": 1, "breedId": 63 }
+ * { "line": 2, "error": "Invalid field(s): breedName" }
+ * </pre>
+ *
+ * The Lombok @Value annotation makes this class immutable. See {@link Category} for details.
+ *
+ * @author Promineo
+ *
+ */
+@Value
+@Builder
+@JsonInclude(Include.NON_NULL)
+public class BulkImportResult {
+  private long line;
+  private Integer breedId;
+  private String error;
+}
@@ -0,0 +1,38 @@
+/**
+ *
+ */
+package bunny.entity;
+
+import java.util.List;
+import java.util.Map;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * This class is a Data Transfer Object (DTO) that holds one page of the breeds that match a
+ * category filter. The breeds are sorted by breed ID. If there are more matching breeds after this
+ * page, {@link #next} contains an opaque cursor that is passed in the "after" parameter to fetch
+ * the next page. The facets map each category name to the number of matching breeds in the
+ * category (on every page, not just this one), so the caller can see how the filter could be
+ * narrowed further. Here is a sample:
+ *
+ * <pre>
+ * {
+ *   "breeds": [ ... ],
+ *   "next": "MTQ",
+ *   "facets": { "Fancy": 4, "Lop-eared": 7, "Meat": 2 }
+ * }
+ * </pre>
+ *
+ * The Lombok @Value annotation makes this class immutable. See {@link Category} for details.
+ *
+ * @author Promineo
+ *
+ */
+@Value
+@Builder
+public class FacetedBreeds {
+  private List<Breed> breeds;
+  private String next;
+  private Map<String, Integer> facets;
+}
@@ -0,0 +1,29 @@
+/**
+ *
+ */
+package bunny.entity;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * This class is a Data Transfer Object (DTO) that holds one result of a breed search. The score
+ * says how well the breed matches the search terms. Higher is better. The scores are only useful
+ * for comparing the results of the same search. Here is a sample:
+ *
+ * <pre>
+ * { "breedId": 3, "breedName": "Angora Rabbit", "score": 4.71 }
+ * </pre>
+ *
+ * The Lombok @Value annotation makes this class immutable. See {@link Category} for details.
+ *
+ * @author Promineo
+ *
+ */
+@Value
+@Builder
+public class SearchHit {
+  private int breedId;
+  private String breedName;
+  private double score;
+}
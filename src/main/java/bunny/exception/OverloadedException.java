@@ -0,0 +1,40 @@
+/**
+ * 
+ */
+package bunny.exception;
+
+import java.time.Duration;
+
+/**
+ * This class is an unchecked exception. It is thrown if a request is rejected because too many
+ * requests of the same kind are already running. The caller is told when to try again.
+ * 
+ * @author Promineo
+ *
+ */
+@SuppressWarnings("serial")
+public class OverloadedException extends RuntimeException {
+
+  /** This is how long the caller should wait before trying again. */
+  private final Duration retryAfter;
+
+  /**
+   * Create an exception with a message.
+   * 
+   * @param message The message
+   * @param retryAfter How long the caller should wait before trying again.
+   */
+  public OverloadedException(String message, Duration retryAfter) {
+    super(message);
+    this.retryAfter = retryAfter;
+  }
+
+  /**
+   * Returns how long the caller should wait before trying again.
+   * 
+   * @return The wait time.
+   */
+  public Duration getRetryAfter() {
+    return retryAfter;
+  }
+}
@@ -0,0 +1,124 @@
+/**
+ *
+ */
+package bunny.service;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+/**
+ * This enum lists the formats that breeds can be read and written in. JSON is the default. CBOR and
+ * Smile are binary formats with the same data model as JSON. They are smaller and much faster to
+ * encode and decode, so they are meant for other services that read the catalog. A caller asks for
+ * a binary format with the Accept header (i.e., "Accept: application/cbor"), and sends one with the
+ * Content-Type header.
+ * <p>
+ * The mapper for each format is kept in {@link BodyMappers}.
+ *
+ * @author Promineo
+ *
+ */
+public enum BodyFormat {
+  JSON(MediaType.APPLICATION_JSON, ""), CBOR(MediaType.APPLICATION_CBOR, "-cbor"),
+  SMILE(MediaType.parseMediaType(BodyFormat.APPLICATION_SMILE_VALUE), "-smile");
+
+  /** This is the Smile media type. Spring does not have a constant for it. */
+  public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+
+  private final MediaType mediaType;
+  private final String etagSuffix;
+
+  /**
+   * Create a format.
+   *
+   * @param mediaType The media type of the format.
+   * @param etagSuffix This is added to the ETag of a response in this format. A response in a
+   *        binary format is a different representation than the JSON response, so it must have a
+   *        different ETag.
+   */
+  BodyFormat(MediaType mediaType, String etagSuffix) {
+    this.mediaType = mediaType;
+    this.etagSuffix = etagSuffix;
+  }
+
+  /**
+   * Returns the media type of the format.
+   *
+   * @return The media type.
+   */
+  public MediaType getMediaType() {
+    return mediaType;
+  }
+
+  /**
+   * Returns the suffix that is added to the ETag of a response in this format.
+   *
+   * @return The suffix. It is empty for JSON.
+   */
+  public String getETagSuffix() {
+    return etagSuffix;
+  }
+
+  /**
+   * Returns the format that best matches the Accept header. The media types are tried in order of
+   * quality. A wildcard ("*&#47;*") or a media type that isn't supported selects JSON.
+   *
+   * @param accept The Accept header. This may be {@code null}.
+   * @return The response format.
+   */
+  public static BodyFormat fromAccept(String accept) {
+    if (Objects.isNull(accept)) {
+      return JSON;
+    }
+
+    try {
+      List<MediaType> mediaTypes = MediaType.parseMediaTypes(accept);
+      MediaType.sortBySpecificityAndQuality(mediaTypes);
+
+      for (MediaType mediaType : mediaTypes) {
+        if (mediaType.getQualityValue() == 0) {
+          continue;
+        }
+
+        for (BodyFormat format : values()) {
+          if (!mediaType.isWildcardSubtype() && mediaType.isCompatibleWith(format.mediaType)) {
+            return format;
+          }
+        }
+      }
+    } catch (InvalidMediaTypeException e) {
+      /* A bad Accept header is treated as if it were missing. */
+    }
+
+    return JSON;
+  }
+
+  /**
+   * Returns the format of a request body with the given Content-Type header.
+   *
+   * @param contentType The Content-Type header. This may be {@code null}.
+   * @return The format, or an empty Optional if the body is not CBOR or Smile.
+   */
+  public static Optional<BodyFormat> fromBinaryContentType(String contentType) {
+    if (Objects.nonNull(contentType)) {
+      try {
+        MediaType mediaType = MediaType.parseMediaType(contentType);
+
+        if (mediaType.isCompatibleWith(CBOR.mediaType)) {
+          return Optional.of(CBOR);
+        }
+
+        if (mediaType.isCompatibleWith(SMILE.mediaType)) {
+          return Optional.of(SMILE);
+        }
+      } catch (InvalidMediaTypeException e) {
+        /* A bad Content-Type header is treated as if it were missing. */
+      }
+    }
+
+    return Optional.empty();
+  }
+}
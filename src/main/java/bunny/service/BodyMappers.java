@@ -0,0 +1,59 @@
+/**
+ *
+ */
+package bunny.service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * This class holds the Jackson ObjectMapper for each {@link BodyFormat}. The JSON mapper is the one
+ * configured by Spring Boot. The CBOR and Smile mappers are built with the same settings (from the
+ * Spring Boot {@link Jackson2ObjectMapperBuilder}) so that a breed looks the same in every format.
+ * <p>
+ * Spring MVC adds CBOR and Smile message converters on its own when the Jackson CBOR and Smile
+ * modules are on the classpath, so the operations that return objects support the binary formats
+ * without any help. These mappers are used by the operations that write their own responses.
+ *
+ * @author Promineo
+ *
+ */
+@Component
+public class BodyMappers {
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  /** Spring Boot creates a new builder, with the Spring Boot settings, for each injection. */
+  @Autowired
+  private Jackson2ObjectMapperBuilder builder;
+
+  private final Map<BodyFormat, ObjectMapper> mappers = new EnumMap<>(BodyFormat.class);
+
+  /**
+   * Create the mappers after Spring has injected the fields.
+   */
+  @PostConstruct
+  public void createMappers() {
+    mappers.put(BodyFormat.JSON, objectMapper);
+    mappers.put(BodyFormat.CBOR, builder.factory(new CBORFactory()).build());
+    mappers.put(BodyFormat.SMILE, builder.factory(new SmileFactory()).build());
+  }
+
+  /**
+   * Returns the mapper for the given format.
+   *
+   * @param format The format.
+   * @return The mapper.
+   */
+  public ObjectMapper get(BodyFormat format) {
+    return mappers.get(format);
+  }
+}
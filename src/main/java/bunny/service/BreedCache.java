@@ -0,0 +1,141 @@
+/**
+ * 
+ */
+package bunny.service;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.IntFunction;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import bunny.dao.AfterCommit;
+import bunny.entity.Breed;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class is an in-memory cache of fully assembled {@link Breed} objects (breed name,
+ * description, category names and alternate names) keyed by breed ID. Reading a breed from the
+ * database takes three queries, so keeping recently read breeds in memory saves a lot of work when
+ * the same breeds are read over and over.
+ * <p>
+ * The cache is a Caffeine cache. Caffeine limits the number of breeds in the cache and evicts
+ * breeds based on how frequently and how recently they were read (the W-TinyLFU policy). Breeds
+ * are also removed after a time-to-live so that changes made outside of this application are
+ * eventually seen. The size and time-to-live are set with these properties:
+ * <ul>
+ * <li>bunny.cache.maximum-size - The maximum number of breeds in the cache (default 10,000).
+ * <li>bunny.cache.time-to-live - How long a breed stays in the cache (default 10 minutes).
+ * </ul>
+ * The cache statistics (hits, misses, evictions, size) are published to Micrometer with the cache
+ * name "breeds". They can be seen at http://localhost:8080/actuator/metrics/cache.gets.
+ * <p>
+ * The cached Breed objects are never handed out. A copy is stored in the cache and a copy is
+ * returned from the cache. Otherwise, a caller could add a name to one of the lists in a returned
+ * breed, which would change the cached breed for everybody.
+ * 
+ * @author Promineo
+ *
+ */
+@Component
+@Slf4j
+public class BreedCache {
+
+  /** This is the name of the cache in the metrics. */
+  private static final String CACHE_NAME = "breeds";
+
+  @Value("${bunny.cache.maximum-size:10000}")
+  private long maximumSize;
+
+  @Value("${bunny.cache.time-to-live:10m}")
+  private Duration timeToLive;
+
+  /** Spring Boot creates the meter registry when Actuator is on the classpath. */
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  private Cache<Integer, Breed> cache;
+
+  /**
+   * Create the cache after Spring has injected the properties. The cache is registered with the
+   * meter registry so that the statistics are published.
+   */
+  @PostConstruct
+  public void createCache() {
+    log.info("Cache: Creating breed cache with maximum size={}, time to live={}", maximumSize,
+        timeToLive);
+
+    cache = Caffeine.newBuilder() // @formatter:off
+        .maximumSize(maximumSize)
+        .expireAfterWrite(timeToLive)
+        .recordStats()
+        .build(); // @formatter:on
+
+    CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+  }
+
+  /**
+   * Return a copy of the breed with the given breed ID. If the breed is not in the cache, the
+   * loader is called to read it. If the loader throws an exception, nothing is cached and the
+   * exception is passed on to the caller.
+   * 
+   * @param breedId The breed ID.
+   * @param loader This is called with the breed ID if the breed is not in the cache.
+   * @return A copy of the cached breed.
+   */
+  public Breed get(int breedId, IntFunction<Breed> loader) {
+    return copyOf(cache.get(breedId, id -> copyOf(loader.apply(id))));
+  }
+
+  /**
+   * Return a copy of the breed with the given breed ID if it is in the cache. Unlike
+   * {@link #get(int, IntFunction)}, nothing is read or cached if the breed is not there.
+   * 
+   * @param breedId The breed ID.
+   * @return A copy of the cached breed, or an empty Optional if the breed is not cached.
+   */
+  public Optional<Breed> getIfPresent(int breedId) {
+    return Optional.ofNullable(cache.getIfPresent(breedId)).map(this::copyOf);
+  }
+
+  /**
+   * Remove the breed with the given breed ID from the cache. This is called by the service methods
+   * that change a breed.
+   * <p>
+   * The breed is removed right away, and if there is a transaction it is removed again after the
+   * transaction commits or rolls back. This is because another request may read the breed (and put
+   * it back in the cache) before the transaction commits. That request would see the old breed
+   * because the change isn't visible until the transaction commits.
+   * 
+   * @param breedId The breed ID.
+   */
+  public void invalidate(int breedId) {
+    cache.invalidate(breedId);
+    AfterCommit.afterCompletion(() -> cache.invalidate(breedId));
+  }
+
+  /**
+   * Make a copy of a breed. The copy has its own category name and alternate name lists.
+   * 
+   * @param breed The breed to copy.
+   * @return The copy.
+   */
+  private Breed copyOf(Breed breed) {
+    Breed copy = Breed
+        .builder() // @formatter:off
+        .breedId(breed.getBreedId())
+        .breedName(breed.getBreedName())
+        .description(breed.getDescription())
+        .build(); // @formatter:on
+
+    copy.getCategoryNames().addAll(breed.getCategoryNames());
+    copy.getAlternameNames().addAll(breed.getAlternameNames());
+
+    return copy;
+  }
+}
@@ -0,0 +1,393 @@
+/**
+ *
+ */
+package bunny.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import bunny.dao.BunnyDao;
+import bunny.dao.ReplicaRoutingDataSource;
+import bunny.entity.Breed;
+import bunny.entity.SearchHit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class is an in-memory full-text index of the bunny breeds. It is used to search the breed
+ * names, alternate names and descriptions without touching the database.
+ * <p>
+ * The index is an inverted index. The text of each breed is split into words (terms). Each term is
+ * given a number in the term dictionary, and each term number has a posting list. The posting list
+ * holds the breeds that contain the term and how often they contain it. The posting lists are
+ * stored in plain int arrays sorted by document number, so they take very little memory. To search,
+ * the posting lists of the search terms are read and each breed in them is scored with the BM25
+ * formula. The highest scoring breeds are returned.
+ * <p>
+ * A word in the breed name counts more than a word in an alternate name, which counts more than a
+ * word in the description. This is done by counting each word in the breed name
+ * {@link #BREED_NAME_WEIGHT} times, and so on.
+ * <p>
+ * The index is built from the {@link BunnyDao} when the application starts. After that, the
+ * {@link CatalogChanges} passes it each added, modified or deleted breed as it was committed to the
+ * database, so a rollback never leaves a breed in the index and the last commit always wins. The
+ * whole index is rebuilt by the periodic reload. A read/write lock lets any number of searches run
+ * at the same time. Updates wait for the searches to finish.
+ *
+ * @author Promineo
+ *
+ */
+@Component
+@Slf4j
+public class BreedIndex implements CatalogChanges.Listener {
+
+  /** These are the BM25 parameters. These values work well for most text. */
+  private static final double K1 = 1.2;
+  private static final double B = 0.75;
+
+  /** Words in these parts of a breed count this many times. */
+  private static final int BREED_NAME_WEIGHT = 3;
+  private static final int ALTERNATE_NAME_WEIGHT = 2;
+  private static final int DESCRIPTION_WEIGHT = 1;
+
+  /** Text is split into terms wherever there is something that isn't a letter or a digit. */
+  private static final Pattern TERM_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+  /** This matches the accent marks that are split off of letters by Unicode normalization. */
+  private static final Pattern ACCENT_MARKS = Pattern.compile("\\p{M}+");
+
+  /**
+   * These words are so common that they don't help find a breed. Leaving them out keeps the
+   * posting lists short.
+   */
+  private static final Set<String> STOP_WORDS = Set.of("a", "an", "and", "are", "as", "at", "be",
+      "but", "by", "for", "from", "has", "have", "in", "is", "it", "its", "of", "on", "or", "that",
+      "the", "their", "they", "this", "to", "was", "were", "with");
+
+  @Autowired
+  private BunnyDao dao;
+
+  @Autowired
+  private CatalogChanges catalogChanges;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  /** This is replaced by a reload and changed by the CatalogChanges, under the write lock. */
+  private Index index = new Index();
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /**
+   * This holds an indexed breed. The term numbers are kept so that the breed can be removed from the
+   * posting lists.
+   */
+  private record Document(int breedId, String breedName, int length, int[] termNumbers) {}
+
+  /**
+   * This is a compact list of document numbers with the (weighted) number of times the term
+   * appears in each document. The document numbers are in ascending order.
+   */
+  private static final class PostingList {
+    private int[] documentNumbers = new int[4];
+    private int[] frequencies = new int[4];
+    private int size;
+
+    private void add(int documentNumber, int frequency) {
+      if (size == documentNumbers.length) {
+        documentNumbers = Arrays.copyOf(documentNumbers, size * 2);
+        frequencies = Arrays.copyOf(frequencies, size * 2);
+      }
+
+      documentNumbers[size] = documentNumber;
+      frequencies[size] = frequency;
+      size++;
+    }
+
+    private void remove(int documentNumber) {
+      int index = Arrays.binarySearch(documentNumbers, 0, size, documentNumber);
+
+      if (index >= 0) {
+        System.arraycopy(documentNumbers, index + 1, documentNumbers, index, size - index - 1);
+        System.arraycopy(frequencies, index + 1, frequencies, index, size - index - 1);
+        size--;
+      }
+    }
+  }
+
+  /**
+   * This is the term dictionary, the posting lists and the documents. A reload builds a new one
+   * without holding the lock, so searches keep running on the old one until it is swapped in.
+   */
+  private static final class Index {
+
+    /** This maps each term to its term number. */
+    private final Map<String, Integer> termNumbers = new HashMap<>();
+
+    /** The posting list for a term is at the index of the term number. */
+    private final List<PostingList> postings = new ArrayList<>();
+
+    /** This maps document numbers to the indexed breeds. */
+    private final Map<Integer, Document> documents = new HashMap<>();
+
+    /** This maps breed IDs to document numbers. */
+    private final Map<Integer, Integer> documentNumbers = new HashMap<>();
+
+    /**
+     * Document numbers are never reused. Since each new document gets a higher number than all the
+     * documents before it, adding a document to a posting list is always an append.
+     */
+    private int nextDocumentNumber;
+
+    /** This is the total weighted number of terms in all documents. It is used by BM25. */
+    private long totalLength;
+
+    /**
+     * Add a breed as a new document.
+     *
+     * @param breed The breed to add.
+     */
+    private void addDocument(Breed breed) {
+      Map<String, Integer> frequencies = tokenize(breed.getBreedName(), BREED_NAME_WEIGHT);
+
+      breed.getAlternameNames()
+          .forEach(name -> tokenize(name, ALTERNATE_NAME_WEIGHT).forEach(
+              (term, frequency) -> frequencies.merge(term, frequency, Integer::sum)));
+
+      tokenize(breed.getDescription(), DESCRIPTION_WEIGHT)
+          .forEach((term, frequency) -> frequencies.merge(term, frequency, Integer::sum));
+
+      int documentNumber = nextDocumentNumber++;
+      int[] documentTerms = new int[frequencies.size()];
+      int length = 0;
+      int index = 0;
+
+      for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+        int termNumber = termNumbers.computeIfAbsent(entry.getKey(), term -> {
+          postings.add(new PostingList());
+          return postings.size() - 1;
+        });
+
+        postings.get(termNumber).add(documentNumber, entry.getValue());
+        documentTerms[index++] = termNumber;
+        length += entry.getValue();
+      }
+
+      documents.put(documentNumber,
+          new Document(breed.getBreedId(), breed.getBreedName(), length, documentTerms));
+      documentNumbers.put(breed.getBreedId(), documentNumber);
+      totalLength += length;
+    }
+
+    /**
+     * Remove a breed's document from the posting lists.
+     *
+     * @param breedId The breed ID. Nothing happens if the breed isn't in the index.
+     */
+    private void removeDocument(int breedId) {
+      Integer documentNumber = documentNumbers.remove(breedId);
+
+      if (Objects.nonNull(documentNumber)) {
+        Document document = documents.remove(documentNumber);
+
+        for (int termNumber : document.termNumbers()) {
+          postings.get(termNumber).remove(documentNumber);
+        }
+
+        totalLength -= document.length();
+      }
+    }
+  }
+
+  /**
+   * Build the index from all the breeds in the database when the application starts, and start
+   * listening for changes.
+   */
+  @PostConstruct
+  public void buildIndex() {
+    reload();
+    catalogChanges.addListener(this);
+  }
+
+  /**
+   * Build a new index from all the breeds in the database and swap it in. The breeds are streamed
+   * so that they don't all have to be in memory at the same time. They are read in a primary read
+   * transaction so that they come from the primary database, like the changes.
+   */
+  @Override
+  public void reload() {
+    TransactionTemplate primaryTransaction =
+        ReplicaRoutingDataSource.primaryReadTransaction(transactionManager);
+
+    Index loaded = new Index();
+    primaryTransaction
+        .executeWithoutResult(status -> dao.streamAllBreedDetails(loaded::addDocument));
+
+    lock.writeLock().lock();
+
+    try {
+      index = loaded;
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+    log.info("Index: Indexed {} breeds with {} terms", loaded.documents.size(),
+        loaded.termNumbers.size());
+  }
+
+  /**
+   * Replace the changed breeds in the index. This is called by the {@link CatalogChanges} with the
+   * breeds as they were committed, so the index always ends up with the state of the last commit.
+   *
+   * @param changes A map of breed ID to the breed. The value is {@code null} if the breed was
+   *        deleted.
+   */
+  @Override
+  public void breedsChanged(Map<Integer, Breed> changes) {
+    lock.writeLock().lock();
+
+    try {
+      changes.forEach((breedId, breed) -> {
+        index.removeDocument(breedId);
+
+        if (Objects.nonNull(breed)) {
+          index.addDocument(breed);
+        }
+      });
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Find the breeds that best match the given text. A breed matches if it contains any of the
+   * search terms. Breeds are ranked by their BM25 score, so breeds that contain more of the terms,
+   * contain them more often, or contain rare terms come first.
+   *
+   * @param text The search text.
+   * @param limit The maximum number of breeds to return.
+   * @return The best matching breeds, best match first.
+   */
+  public List<SearchHit> search(String text, int limit) {
+    Map<String, Integer> queryTerms = tokenize(text, 1);
+
+    lock.readLock().lock();
+
+    try {
+      Index current = index;
+
+      if (current.documents.isEmpty()) {
+        return List.of();
+      }
+
+      double averageLength = (double) current.totalLength / current.documents.size();
+      Map<Integer, Double> scores = new HashMap<>();
+
+      for (String term : queryTerms.keySet()) {
+        Integer termNumber = current.termNumbers.get(term);
+
+        if (Objects.isNull(termNumber) || current.postings.get(termNumber).size == 0) {
+          continue;
+        }
+
+        PostingList postingList = current.postings.get(termNumber);
+        double idf = Math.log(1 + (current.documents.size() - postingList.size + 0.5)
+            / (postingList.size + 0.5));
+
+        for (int index = 0; index < postingList.size; index++) {
+          int documentNumber = postingList.documentNumbers[index];
+          int frequency = postingList.frequencies[index];
+          double lengthNorm =
+              1 - B + B * current.documents.get(documentNumber).length() / averageLength;
+
+          double score = idf * frequency * (K1 + 1) / (frequency + K1 * lengthNorm);
+          scores.merge(documentNumber, score, Double::sum);
+        }
+      }
+
+      return topHits(current, scores, limit);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Return the highest scoring documents. A min-heap of size limit is used so that the scores
+   * don't have to be sorted.
+   *
+   * @param current The index that was searched.
+   * @param scores A map of document number to score.
+   * @param limit The maximum number of hits.
+   * @return The hits, highest score first. Ties are sorted by breed name.
+   */
+  private List<SearchHit> topHits(Index current, Map<Integer, Double> scores, int limit) {
+    Comparator<SearchHit> ranking = Comparator
+        .comparingDouble(SearchHit::getScore) // @formatter:off
+        .thenComparing(SearchHit::getBreedName, Comparator.reverseOrder()); // @formatter:on
+
+    PriorityQueue<SearchHit> heap = new PriorityQueue<>(limit + 1, ranking);
+
+    scores.forEach((documentNumber, score) -> {
+      Document document = current.documents.get(documentNumber);
+
+      heap.add(SearchHit
+          .builder() // @formatter:off
+          .breedId(document.breedId())
+          .breedName(document.breedName())
+          .score(score)
+          .build()); // @formatter:on
+
+      if (heap.size() > limit) {
+        heap.poll();
+      }
+    });
+
+    List<SearchHit> hits = new ArrayList<>(heap);
+    hits.sort(ranking.reversed());
+
+    return hits;
+  }
+
+  /**
+   * Split text into terms and count each term. Terms are lower case with the accents removed, so
+   * "Crème" and "creme" are the same term. Stop words are left out.
+   *
+   * @param text The text. This may be {@code null}.
+   * @param weight Each term is counted this many times.
+   * @return A map of term to count in the order the terms first appear.
+   */
+  private static Map<String, Integer> tokenize(String text, int weight) {
+    Map<String, Integer> frequencies = new LinkedHashMap<>();
+
+    if (Objects.nonNull(text)) {
+      String normalized = ACCENT_MARKS
+          .matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+          .replaceAll("")
+          .toLowerCase(Locale.ROOT);
+
+      for (String term : TERM_SEPARATOR.split(normalized)) {
+        if (!term.isEmpty() && !STOP_WORDS.contains(term)) {
+          frequencies.merge(term, weight, Integer::sum);
+        }
+      }
+    }
+
+    return frequencies;
+  }
+}
@@ -0,0 +1,147 @@
+/**
+ *
+ */
+package bunny.service;
+
+import java.time.Duration;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import bunny.dao.AfterCommit;
+import bunny.dao.BunnyDao;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+
+/**
+ * This class returns the version of each breed and of the whole catalog. The versions are used to
+ * create the ETags returned by the get breed and list breeds operations. A caller that sends the
+ * ETag back in an If-None-Match header gets a 304 (Not Modified) response if the version hasn't
+ * changed.
+ * <p>
+ * The versions are kept in the database: each breed row has a version column that the DAO
+ * increments whenever one of the breed's rows changes. The catalog version is made from the breed
+ * table (see {@link BunnyDao#fetchCatalogVersion()}), so no single row is locked by every write.
+ * Every instance of the application reads the same versions, so an ETag returned by one instance is
+ * valid on all of them, and the versions survive a restart. The {@link BunnyService} and the
+ * {@link BulkImporter} call {@link #breedChanged(int)} whenever a breed is added, modified or
+ * deleted.
+ * <p>
+ * Reading the versions for every request would cost a query per request, so the versions are
+ * cached in memory for a short time. A change made by this instance removes the cached versions
+ * when its transaction commits, so this instance sees the new versions right away. A change made by
+ * another instance is seen when the cached version expires. The cache is set with these
+ * properties:
+ * <ul>
+ * <li>bunny.versions.maximum-size - The maximum number of breed versions kept (default 100,000).
+ * <li>bunny.versions.time-to-live - How long a version is kept (default 1 second).
+ * </ul>
+ * <p>
+ * A version is read in a read-only transaction, like the breeds. With replicas, the version comes
+ * from the same kind of database as the breed, so a breed is never older than its version. A
+ * request that reads an old version and then a newer breed returns the new breed with the old
+ * ETag. That's safe: the next request with that ETag sees a newer version and reads the breed
+ * again. The reverse (an old breed with a new version) would never be corrected.
+ *
+ * @author Promineo
+ *
+ */
+@Component
+public class BreedVersions {
+
+  /** This is the only key of the catalog version cache. */
+  private static final String CATALOG = "catalog";
+
+  @Value("${bunny.versions.maximum-size:100000}")
+  private long maximumSize;
+
+  @Value("${bunny.versions.time-to-live:1s}")
+  private Duration timeToLive;
+
+  @Autowired
+  private BunnyDao dao;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  /** This reads the versions. */
+  private TransactionTemplate readOnlyTransaction;
+
+  /** This maps breed IDs to the breed versions. */
+  private LoadingCache<Integer, Long> breedVersions;
+
+  private LoadingCache<String, String> catalogVersion;
+
+  /**
+   * Create the caches and the read-only transaction template after Spring has injected the
+   * properties.
+   */
+  @PostConstruct
+  public void createCaches() {
+    readOnlyTransaction = new TransactionTemplate(transactionManager);
+    readOnlyTransaction.setReadOnly(true);
+
+    breedVersions = Caffeine.newBuilder() // @formatter:off
+        .maximumSize(maximumSize)
+        .expireAfterWrite(timeToLive)
+        .build(breedId -> readOnlyTransaction.execute(
+            status -> dao.fetchBreedVersion(breedId))); // @formatter:on
+
+    catalogVersion = Caffeine.newBuilder() // @formatter:off
+        .expireAfterWrite(timeToLive)
+        .build(key -> readOnlyTransaction.execute(
+            status -> dao.fetchCatalogVersion())); // @formatter:on
+  }
+
+  /**
+   * Returns the ETag of the breed with the given breed ID. A breed that doesn't exist is at version
+   * 0, and it has no ETag: otherwise an If-None-Match: * request would get a 304 response for a
+   * breed that isn't there.
+   *
+   * @param breedId The breed ID.
+   * @return The ETag value without quotes, like "29-3".
+   * @throws NoSuchElementException Thrown if the breed ID does not exist in the database.
+   */
+  public String breedETag(int breedId) {
+    long version = breedVersions.get(breedId);
+
+    if (version == 0) {
+      throw new NoSuchElementException("Unknown bunny with breed ID=" + breedId);
+    }
+
+    return breedId + "-" + version;
+  }
+
+  /**
+   * Returns the ETag of the list of all breeds.
+   *
+   * @return The ETag value without quotes, like "c39-57-39".
+   */
+  public String catalogETag() {
+    return "c" + catalogVersion.get(CATALOG);
+  }
+
+  /**
+   * Remove the cached versions of the given breed and of the catalog after the transaction
+   * commits. The versions themselves were changed in the database by the DAO.
+   *
+   * @param breedId The ID of the breed that was added, modified or deleted.
+   */
+  public void breedChanged(int breedId) {
+    AfterCommit.collect(breedVersions, breedId, this::invalidate);
+  }
+
+  /**
+   * Remove the cached versions of the given breeds and the cached catalog version.
+   *
+   * @param breedIds The IDs of the breeds that changed.
+   */
+  private void invalidate(Set<Integer> breedIds) {
+    breedVersions.invalidateAll(breedIds);
+    catalogVersion.invalidateAll();
+  }
+}
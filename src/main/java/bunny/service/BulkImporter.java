@@ -0,0 +1,416 @@
+/**
+ *
+ */
+package bunny.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.validation.Validator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import bunny.dao.BunnyDao;
+import bunny.entity.AddBreedRequest;
+import bunny.entity.Breed;
+import bunny.entity.BulkImportResult;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class adds bunny breeds in bulk from NDJSON (newline-delimited JSON) input. Each line of the
+ * input is one {@link AddBreedRequest} JSON object. The input is read one line at a time and the
+ * breeds are added in chunks, so the memory used does not depend on the size of the input. CBOR
+ * and Smile input is read the same way, one object at a time.
+ * <p>
+ * Each line is parsed and checked with Bean Validation, just like the body of the add breed
+ * operation. The lines are collected into a chunk, and lines that can't be added are marked with
+ * the reason. When the chunk is full, the chunk is added in its own transaction using a few batched
+ * statements (see {@link BunnyDao#insertBunnies(List)}). So, a failure only rolls back the current
+ * chunk. The chunk size is set with the property "bunny.bulk.chunk-size" (default 1,000).
+ * <p>
+ * Breed names that already exist are found with a single query before the chunk is added. If the
+ * chunk still fails (for example, if another request added one of the breed names in the
+ * meantime), the breeds in the chunk are added one at a time so that only the bad ones are
+ * rejected.
+ * <p>
+ * The outcome of every line is passed to a consumer after the chunk is committed.
+ *
+ * @author Promineo
+ *
+ */
+@Component
+@Slf4j
+public class BulkImporter {
+
+  /** This is the error reported for a breed name that already exists. */
+  private static final String DUPLICATE_BREED = "Breed name already exists";
+
+  @Value("${bunny.bulk.chunk-size:1000}")
+  private int chunkSize;
+
+  @Autowired
+  private BunnyDao dao;
+
+  /** The catalog version is incremented when a chunk commits. */
+  @Autowired
+  private BreedVersions breedVersions;
+
+  /** The cached list responses are removed when breeds are added. */
+  @Autowired
+  private ResponseCache responseCache;
+
+  /**
+   * New breeds are read back into the full-text index, the category facets and the catalog snapshot
+   * when their chunk commits.
+   */
+  @Autowired
+  private CatalogChanges catalogChanges;
+
+  /** This is the Jackson ObjectMapper configured by Spring Boot. */
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  /** Spring Boot creates a Bean Validation validator when Hibernate Validator is on the classpath. */
+  @Autowired
+  private Validator validator;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  /** This is used to start one transaction per chunk. */
+  private TransactionTemplate transaction;
+
+  /** An ObjectReader is thread safe and faster to use than the ObjectMapper for a single type. */
+  private ObjectReader breedReader;
+
+  /**
+   * This holds a line of the input and its line number. If the line can't be added, the error
+   * says why.
+   */
+  private record ImportRecord(long line, AddBreedRequest breedRequest, String error) {}
+
+  /**
+   * Create the transaction template and the object reader after Spring has injected the fields.
+   */
+  @PostConstruct
+  public void createTemplates() {
+    transaction = new TransactionTemplate(transactionManager);
+    breedReader = objectMapper.readerFor(AddBreedRequest.class);
+  }
+
+  /**
+   * This collects the records of one import into chunks. The records are numbered from one in the
+   * order they are read. For NDJSON input the number is the line number.
+   */
+  private final class ImportBatch {
+    private final Consumer<BulkImportResult> consumer;
+    private final List<ImportRecord> chunk = new ArrayList<>(chunkSize);
+    private final Set<String> chunkNames = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    private long lineNumber = 0;
+    private int imported = 0;
+
+    private ImportBatch(Consumer<BulkImportResult> consumer) {
+      this.consumer = consumer;
+    }
+
+    /**
+     * Check a record and add it to the chunk. The chunk is added when it is full.
+     *
+     * @param breedRequest The parsed record, or {@code null} if the record could not be parsed.
+     */
+    private void add(AddBreedRequest breedRequest) {
+      String error = validate(breedRequest);
+
+      /* The same breed name can't be added twice in one chunk, so the second one is rejected. */
+      if (Objects.isNull(error) && !chunkNames.add(breedRequest.getBreedName())) {
+        error = DUPLICATE_BREED;
+      }
+
+      /*
+       * Records with errors are kept in the chunk so that the outcomes are reported in order.
+       */
+      chunk.add(new ImportRecord(lineNumber, breedRequest, error));
+
+      if (chunk.size() == chunkSize) {
+        imported += importChunk(chunk, consumer);
+        chunk.clear();
+        chunkNames.clear();
+      }
+    }
+
+    /**
+     * Add the last partial chunk.
+     *
+     * @return The number of breeds that were added.
+     */
+    private int finish() {
+      if (!chunk.isEmpty()) {
+        imported += importChunk(chunk, consumer);
+      }
+
+      log.info("Import: Added {} of {} records", imported, lineNumber);
+
+      return imported;
+    }
+  }
+
+  /**
+   * Add the breeds in the given NDJSON input. Blank lines are skipped.
+   *
+   * @param input The NDJSON input.
+   * @param consumer This is called with the outcome of each line in line number order.
+   * @return The number of breeds that were added.
+   * @throws IOException Thrown if the input can't be read. Chunks that were already committed stay
+   *         committed.
+   */
+  public int importBreeds(BufferedReader input, Consumer<BulkImportResult> consumer)
+      throws IOException {
+    ImportBatch batch = new ImportBatch(consumer);
+    String line;
+
+    while (Objects.nonNull(line = input.readLine())) {
+      batch.lineNumber++;
+
+      if (!line.isBlank()) {
+        batch.add(parse(line));
+      }
+    }
+
+    return batch.finish();
+  }
+
+  /**
+   * Add the breeds in the given binary (CBOR or Smile) input. The input is either a sequence of
+   * {@link AddBreedRequest} objects, one after the other, or a single array of them. Each object
+   * is numbered like a line of NDJSON input. An object that isn't a valid breed request is
+   * rejected, but the input must be well formed. Otherwise the import stops.
+   *
+   * @param input A parser created by the mapper for the format. See {@link BodyMappers}.
+   * @param consumer This is called with the outcome of each object in order.
+   * @return The number of breeds that were added.
+   * @throws IOException Thrown if the input can't be read or is not well formed. Chunks that were
+   *         already committed stay committed.
+   */
+  public int importBreeds(JsonParser input, Consumer<BulkImportResult> consumer)
+      throws IOException {
+    ImportBatch batch = new ImportBatch(consumer);
+    JsonToken token = input.nextToken();
+
+    if (token == JsonToken.START_ARRAY) {
+      token = input.nextToken();
+    }
+
+    while (Objects.nonNull(token) && token != JsonToken.END_ARRAY) {
+      batch.lineNumber++;
+
+      /* The value is read as a tree first so that a bad object doesn't stop the parser. */
+      batch.add(parse(input.<JsonNode>readValueAsTree()));
+      token = input.nextToken();
+    }
+
+    return batch.finish();
+  }
+
+  /**
+   * Convert one line of JSON to an {@link AddBreedRequest}.
+   *
+   * @param line The line of JSON.
+   * @return The breed request, or {@code null} if the line is not a valid JSON object.
+   */
+  private AddBreedRequest parse(String line) {
+    try {
+      return withEmptyLists(breedReader.readValue(line));
+    } catch (JsonProcessingException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Convert one object of binary input to an {@link AddBreedRequest}.
+   *
+   * @param node The object.
+   * @return The breed request, or {@code null} if the object is not a valid breed request.
+   */
+  private AddBreedRequest parse(JsonNode node) {
+    if (!node.isObject()) {
+      return null;
+    }
+
+    try {
+      return withEmptyLists(breedReader.readValue(node));
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Replace missing lists with empty lists so that the breed can be added without categories or
+   * alternate names.
+   *
+   * @param breedRequest The breed request. This may be {@code null}.
+   * @return The same breed request.
+   */
+  private AddBreedRequest withEmptyLists(AddBreedRequest breedRequest) {
+    if (Objects.nonNull(breedRequest)) {
+      if (Objects.isNull(breedRequest.getCategoryNames())) {
+        breedRequest.setCategoryNames(new LinkedList<>());
+      }
+
+      if (Objects.isNull(breedRequest.getAlternameNames())) {
+        breedRequest.setAlternameNames(new LinkedList<>());
+      }
+    }
+
+    return breedRequest;
+  }
+
+  /**
+   * Check a breed request with Bean Validation. The error lists the invalid fields in the same way
+   * as the error handler does for the add breed operation (i.e., "Invalid field(s): breedName,
+   * categoryNames[0]").
+   *
+   * @param breedRequest The breed request. This is {@code null} if the line could not be parsed.
+   * @return The error, or {@code null} if the breed request is valid.
+   */
+  private String validate(AddBreedRequest breedRequest) {
+    if (Objects.isNull(breedRequest)) {
+      return "Invalid JSON";
+    }
+
+    String errorFieldNames = validator.validate(breedRequest)
+        .stream() // @formatter:off
+        .map(violation -> violation.getPropertyPath().toString().replace(".<list element>", ""))
+        .sorted()
+        .distinct()
+        .collect(Collectors.joining(", ")); // @formatter:on
+
+    return errorFieldNames.isEmpty() ? null : "Invalid field(s): " + errorFieldNames;
+  }
+
+  /**
+   * Add the breeds in a chunk in a single transaction. Then pass the outcome of each line to the
+   * consumer. If the transaction fails, the breeds are added one at a time.
+   *
+   * @param chunk The lines in the chunk.
+   * @param consumer This is called with the outcome of each line.
+   * @return The number of breeds that were added.
+   */
+  private int importChunk(List<ImportRecord> chunk, Consumer<BulkImportResult> consumer) {
+    List<BulkImportResult> results;
+
+    try {
+      results = transaction.execute(status -> insertChunk(chunk));
+    } catch (DataAccessException e) {
+      log.warn("Import: Chunk at line {} failed, adding breeds one at a time: {}",
+          chunk.get(0).line(), e.getMessage());
+
+      results = chunk.stream().map(this::insertOne).toList();
+    }
+
+    results.forEach(consumer);
+
+    return (int) results.stream().filter(result -> Objects.nonNull(result.getBreedId())).count();
+  }
+
+  /**
+   * Add the breeds in a chunk. Breeds with names that already exist are rejected first so that
+   * they don't cause the whole batch to fail.
+   *
+   * @param chunk The lines in the chunk.
+   * @return The outcome of each line in the chunk.
+   */
+  private List<BulkImportResult> insertChunk(List<ImportRecord> chunk) {
+    List<ImportRecord> valid =
+        chunk.stream().filter(record -> Objects.isNull(record.error())).toList();
+
+    Map<String, Integer> existing = valid.isEmpty() ? Map.of()
+        : dao.fetchBreedIdsByName(
+            valid.stream().map(record -> record.breedRequest().getBreedName()).toList());
+
+    List<ImportRecord> records = valid
+        .stream() // @formatter:off
+        .filter(record -> !existing.containsKey(record.breedRequest().getBreedName()))
+        .toList(); // @formatter:on
+
+    List<Integer> breedIds = records.isEmpty() ? List.of()
+        : dao.insertBunnies(records.stream().map(ImportRecord::breedRequest).toList());
+
+    List<BulkImportResult> results = new ArrayList<>(chunk.size());
+    int index = 0;
+
+    for (ImportRecord record : chunk) {
+      BulkImportResult.BulkImportResultBuilder result =
+          BulkImportResult.builder().line(record.line());
+
+      if (Objects.nonNull(record.error())) {
+        result.error(record.error());
+      } else if (existing.containsKey(record.breedRequest().getBreedName())) {
+        result.error(DUPLICATE_BREED);
+      } else {
+        int breedId = breedIds.get(index++);
+
+        result.breedId(breedId);
+
+        responseCache.invalidate(breedId);
+        catalogChanges.breedChanged(breedId);
+        breedVersions.breedChanged(breedId);
+      }
+
+      results.add(result.build());
+    }
+
+    return results;
+  }
+
+  /**
+   * Add a single breed in its own transaction.
+   *
+   * @param record The line to add.
+   * @return The outcome of the line.
+   */
+  private BulkImportResult insertOne(ImportRecord record) {
+    BulkImportResult.BulkImportResultBuilder result =
+        BulkImportResult.builder().line(record.line());
+
+    if (Objects.nonNull(record.error())) {
+      return result.error(record.error()).build();
+    }
+
+    try {
+      result.breedId(transaction.execute(status -> {
+        Breed breed = dao.insertBunny(record.breedRequest());
+
+        responseCache.invalidate(breed.getBreedId());
+        catalogChanges.breedChanged(breed.getBreedId());
+        breedVersions.breedChanged(breed.getBreedId());
+        return breed.getBreedId();
+      }));
+    } catch (DuplicateKeyException e) {
+      result.error(DUPLICATE_BREED);
+    } catch (DataAccessException e) {
+      log.warn("Import: Unable to add line {}: {}", record.line(), e.getMessage());
+      result.error("Unable to add breed");
+    }
+
+    return result.build();
+  }
+}
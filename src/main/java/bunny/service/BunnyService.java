@@ -3,15 +3,44 @@
  */
 package bunny.service;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import bunny.dao.BunnyDao;
 import bunny.entity.AddBreedRequest;
+import bunny.entity.BatchResult;
 import bunny.entity.Breed;
-import bunny.exception.DeleteBreedException;
+import bunny.entity.BreedBatch;
+import bunny.entity.BreedField;
+import bunny.entity.BreedOutcome;
+import bunny.entity.BreedPage;
+import bunny.entity.BulkImportResult;
+import bunny.entity.FacetedBreeds;
+import bunny.entity.SearchHit;
+import bunny.exception.FieldValidationException;
+import com.fasterxml.jackson.core.JsonParser;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -39,35 +68,333 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j // Add an Slf4j logger (Lombok)
 public class BunnyService {
 
+  /** This separates the breed ID from the breed name in a page cursor. */
+  private static final String CURSOR_SEPARATOR = ":";
+
   /** Tell Spring to create and inject a DAO object. */
   @Autowired
   private BunnyDao dao;
 
+  /** This caches fully assembled breeds. See {@link BreedCache} for details. */
+  @Autowired
+  private BreedCache breedCache;
+
+  /** This is the full-text index of the breeds. See {@link BreedIndex} for details. */
+  @Autowired
+  private BreedIndex breedIndex;
+
+  /** This maps categories to breeds. See {@link CategoryFacets} for details. */
+  @Autowired
+  private CategoryFacets categoryFacets;
+
+  /** This holds the breed and catalog versions. See {@link BreedVersions} for details. */
+  @Autowired
+  private BreedVersions breedVersions;
+
+  /** This adds breeds in bulk. See {@link BulkImporter} for details. */
+  @Autowired
+  private BulkImporter bulkImporter;
+
+  /** This caches the encoded hot responses. See {@link ResponseCache} for details. */
+  @Autowired
+  private ResponseCache responseCache;
+
+  /** This is the in-memory copy of the catalog. See {@link CatalogSnapshot} for details. */
+  @Autowired
+  private CatalogSnapshot catalogSnapshot;
+
+  /** This passes the committed breeds to the in-memory copies. See {@link CatalogChanges}. */
+  @Autowired
+  private CatalogChanges catalogChanges;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  /** This runs the reads that are not started through an at-transactional method. */
+  private TransactionTemplate readOnlyTransaction;
+
   /**
-   * Returns a list of bunny breeds. This method first gets the list of breeds, then it gets the
-   * alternate breed names and category names if they exist. It is possible to do joins in such a
-   * way as to get all the information in one query but this causes a lot of data to be duplicated
-   * as well as returning a lot of {@code null}s. By fetching the breed list and then adding in
-   * categories and alternate names, it makes the Java code a lot easier and more understandable.
+   * Create the read-only transaction template after the transaction manager has been injected.
+   */
+  @PostConstruct
+  public void createTransactionTemplate() {
+    readOnlyTransaction = new TransactionTemplate(transactionManager);
+    readOnlyTransaction.setReadOnly(true);
+  }
+
+  /**
+   * Returns a list of bunny breeds with the alternate breed names and category names if they exist.
+   * It is possible to do joins in such a way as to get all the information in one query but this
+   * causes a lot of data to be duplicated as well as returning a lot of {@code null}s. Fetching the
+   * alternate names and categories for each breed separately is easy to understand, but it costs
+   * two extra queries per breed. So, the DAO reads the breeds, the alternate names and the
+   * categories in three queries and puts them together. Only the requested fields are read, so
+   * asking for breed IDs and names costs a single query. See
+   * {@link BunnyDao#fetchAllBreedDetails(Set)} for details.
+   * <p>
+   * If snapshot reads are turned on, the breeds are returned from the {@link CatalogSnapshot} and
+   * the database is not touched. That is why this method is not annotated with @Transactional,
+   * which would reserve a database connection either way. The queries are run in a read-only
+   * transaction only when the snapshot is turned off.
    * 
+   * @param fields The fields to return. See {@link BreedField}.
    * @return The list of breeds.
    */
+  public List<Breed> listBunnyBreeds(Set<BreedField> fields) {
+    log.info("Service: List bunny breeds with fields {}", fields);
+
+    if (catalogSnapshot.isEnabled()) {
+      return catalogSnapshot.listBreeds(fields);
+    }
+
+    return readOnlyTransaction.execute(status -> dao.fetchAllBreedDetails(fields));
+  }
+
+  /**
+   * Returns the list of breeds as encoded bytes. The bytes are returned from the
+   * {@link ResponseCache} if they were cached with the given ETag. If not, the breeds are read with
+   * {@link #listBunnyBreeds(Set)} and encoded.
+   * 
+   * @param fields The fields to return. See {@link BreedField}.
+   * @param format The format of the bytes.
+   * @param etag The current catalog ETag. See {@link #getCatalogETag(Set, BodyFormat)}.
+   * @param gzip If {@code true}, the bytes are gzip compressed.
+   * @return The encoded bytes. The array must not be changed.
+   */
+  public byte[] listBunnyBreedsBytes(Set<BreedField> fields, BodyFormat format, String etag,
+      boolean gzip) {
+    return responseCache.get(null, fields, format, gzip, etag, () -> listBunnyBreeds(fields));
+  }
+
+  /**
+   * Returns the ETag of the list of all breeds with the given fields and format. The catalog
+   * version is usually in memory, so this rarely touches the database. See {@link BreedVersions}
+   * for details. If snapshot reads are turned on, the ETag comes from the snapshot (see
+   * {@link CatalogSnapshot#catalogETag()}).
+   * 
+   * @param fields The fields that are returned.
+   * @param format The format of the response.
+   * @return The ETag value without quotes.
+   */
+  public String getCatalogETag(Set<BreedField> fields, BodyFormat format) {
+    String catalogETag = catalogSnapshot.isEnabled() ? catalogSnapshot.catalogETag()
+        : breedVersions.catalogETag();
+
+    return catalogETag + fieldsTag(fields) + format.getETagSuffix();
+  }
+
+  /**
+   * Returns the ETag of the breed with the given breed ID, fields and format. This reads only the
+   * breed version (which is usually in memory), so it can be used to decide if the breed needs to
+   * be read at all. See {@link BreedVersions} for details. If snapshot reads are turned on, the
+   * ETag comes from the snapshot (see {@link CatalogSnapshot#breedETag(int)}).
+   * 
+   * @param breedId The breed ID.
+   * @param fields The fields that are returned.
+   * @param format The format of the response.
+   * @return The ETag value without quotes.
+   * @throws NoSuchElementException Thrown if the breed ID does not exist, so that a conditional
+   *         request for a missing breed gets a 404 (Not Found) response instead of a 304.
+   */
+  public String getBreedETag(int breedId, Set<BreedField> fields, BodyFormat format) {
+    String breedETag = catalogSnapshot.isEnabled() ? catalogSnapshot.breedETag(breedId)
+        : breedVersions.breedETag(breedId);
+
+    return breedETag + fieldsTag(fields) + format.getETagSuffix();
+  }
+
+  /**
+   * Returns the part of an ETag that tells which fields are in the response. A response with only
+   * some of the fields is a different representation than the full breed, so it must have a
+   * different ETag. Nothing is added if all the fields are returned, so the full breed ETags don't
+   * change.
+   * 
+   * @param fields The fields that are returned.
+   * @return The fields tag, like "-f3", or an empty String.
+   */
+  private String fieldsTag(Set<BreedField> fields) {
+    if (fields.containsAll(BreedField.ALL)) {
+      return "";
+    }
+
+    int mask = fields
+        .stream() // @formatter:off
+        .mapToInt(field -> 1 << field.ordinal())
+        .sum(); // @formatter:on
+
+    return "-f" + Integer.toString(mask, Character.MAX_RADIX);
+  }
+
+  /**
+   * Passes every bunny breed, with alternate breed names and category names, to the given consumer
+   * one at a time. Unlike {@link #listBunnyBreeds(Set)}, the breeds are never collected into a
+   * list. This allows the caller to write each breed to the response as soon as it is read. The
+   * transaction stays open until the last breed has been passed to the consumer.
+   * <p>
+   * The transaction uses the REPEATABLE READ isolation level so that every breed is read from the
+   * same consistent snapshot of the database, even if breeds are changed while a large export is
+   * running. This is the MySQL default, but it is set here so that it doesn't depend on the server
+   * configuration.
+   * 
+   * @param consumer This is called with each breed in breed name order.
+   */
+  @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+  public void streamBunnyBreeds(Consumer<Breed> consumer) {
+    log.info("Service: Stream bunny breeds");
+    dao.streamAllBreedDetails(consumer);
+  }
+
+  /**
+   * Returns one page of bunny breeds sorted by breed name. One more breed than the limit is
+   * requested from the DAO. If it comes back, there is another page and the cursor for the next
+   * page is created from the last breed on this page.
+   * <p>
+   * The cursor is opaque to the caller. It is simply the breed ID and breed name of the last breed
+   * on the page, Base64 encoded so that it can be safely passed as a URL parameter.
+   * 
+   * @param limit The maximum number of breeds on the page.
+   * @param after The cursor returned with the previous page. This is {@code null} for the first
+   *        page.
+   * @return The page of breeds with the cursor for the next page.
+   * @throws FieldValidationException Thrown if the cursor is invalid.
+   */
   @Transactional(readOnly = true)
-  public List<Breed> listBunnyBreeds() {
-    log.info("Service: List bunny breeds");
+  public BreedPage listBunnyBreedPage(int limit, String after) {
+    log.info("Service: List bunny breeds after {}, limit={}", after, limit);
 
-    List<Breed> breeds = dao.fetchAllBreeds();
+    String afterBreedName = null;
+    int afterBreedId = 0;
 
-    breeds.forEach(breed -> {
-      breed.getAlternameNames().addAll(dao.fetchAlternameNames(breed.getBreedId()));
-      breed.getCategoryNames().addAll(dao.fetchBreedCategories(breed.getBreedId()));
-    });
+    if (Objects.nonNull(after)) {
+      String cursor = decodeCursor(after);
+      int separator = cursor.indexOf(CURSOR_SEPARATOR);
+
+      try {
+        afterBreedId = Integer.parseInt(cursor.substring(0, separator));
+        afterBreedName = cursor.substring(separator + 1);
+      } catch (IndexOutOfBoundsException | NumberFormatException e) {
+        throw new FieldValidationException("Invalid field(s): after");
+      }
+    }
+
+    List<Breed> breeds = dao.fetchBreedPage(afterBreedName, afterBreedId, limit + 1);
+    String next = null;
+
+    if (breeds.size() > limit) {
+      breeds = breeds.subList(0, limit);
+
+      Breed last = breeds.get(limit - 1);
+      next = encodeCursor(last.getBreedId() + CURSOR_SEPARATOR + last.getBreedName());
+    }
+
+    return BreedPage.builder().breeds(breeds).next(next).build();
+  }
+
+  /**
+   * Encode a page cursor as a URL-safe Base64 String.
+   * 
+   * @param cursor The cursor in the form "breedId:breedName".
+   * @return The encoded cursor.
+   */
+  private String encodeCursor(String cursor) {
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Decode a cursor that was encoded with {@link #encodeCursor(String)}.
+   * 
+   * @param cursor The encoded cursor.
+   * @return The cursor in the form "breedId:breedName".
+   * @throws FieldValidationException Thrown if the cursor is not valid Base64.
+   */
+  private String decodeCursor(String cursor) {
+    try {
+      return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    } catch (IllegalArgumentException e) {
+      throw new FieldValidationException("Invalid field(s): after");
+    }
+  }
+
+  /**
+   * Returns one page of the bunny breeds that match the given category filter, along with the
+   * number of matching breeds in each category. The filter is evaluated in memory by the
+   * {@link CategoryFacets}, so the breed_category table is not read at all. The matching breed IDs
+   * are paged in breed ID order before anything is read, so only the breeds on the page are read
+   * from the database. The counts are for all the matching breeds, not just the page. See
+   * {@link CategoryFacets} for the filter syntax.
+   * 
+   * @param clauses The filter clauses. A breed must match every clause.
+   * @param limit The maximum number of breeds to return.
+   * @param after The cursor returned with the previous page, or {@code null} for the first page.
+   * @return The page of matching breeds sorted by breed ID, the cursor of the next page and the
+   *         category counts.
+   * @throws FieldValidationException Thrown if the cursor is invalid.
+   */
+  @Transactional(readOnly = true)
+  public FacetedBreeds listBunnyBreedsByCategory(List<String> clauses, int limit, String after) {
+    log.info("Service: List bunny breeds in categories {} after {}, limit={}", clauses, after,
+        limit);
+
+    int afterBreedId = 0;
+
+    if (Objects.nonNull(after)) {
+      try {
+        afterBreedId = Integer.parseInt(decodeCursor(after));
+      } catch (NumberFormatException e) {
+        throw new FieldValidationException("Invalid field(s): after");
+      }
+
+      if (afterBreedId < 0 || afterBreedId == Integer.MAX_VALUE) {
+        throw new FieldValidationException("Invalid field(s): after");
+      }
+    }
 
-    return breeds;
+    BitSet matches = categoryFacets.filter(clauses);
+    List<Integer> pageIds = new ArrayList<>(limit);
+
+    for (int breedId = matches.nextSetBit(afterBreedId + 1); breedId >= 0
+        && pageIds.size() < limit; breedId = matches.nextSetBit(breedId + 1)) {
+      pageIds.add(breedId);
+    }
+
+    String next = null;
+
+    if (pageIds.size() == limit && matches.nextSetBit(pageIds.get(limit - 1) + 1) >= 0) {
+      next = encodeCursor(String.valueOf(pageIds.get(limit - 1)));
+    }
+
+    List<Breed> breeds = new ArrayList<>(dao.fetchBreedDetails(pageIds));
+    breeds.sort(Comparator.comparing(Breed::getBreedId));
+
+    return FacetedBreeds.builder() // @formatter:off
+        .breeds(breeds)
+        .next(next)
+        .facets(categoryFacets.countCategories(matches))
+        .build(); // @formatter:on
   }
 
   /**
-   * Return a specific breed that has the given breed ID.
+   * Search the breed names, alternate names and descriptions. The search is done entirely in
+   * memory by the {@link BreedIndex}, so no transaction is needed.
+   * 
+   * @param text The search text.
+   * @param limit The maximum number of results.
+   * @return The best matching breeds, best match first.
+   */
+  public List<SearchHit> searchBunnyBreeds(String text, int limit) {
+    log.info("Service: Search bunny breeds for \"{}\", limit={}", text, limit);
+    return breedIndex.search(text, limit);
+  }
+
+  /**
+   * Return a specific breed that has the given breed ID. If snapshot reads are turned on, the breed
+   * is returned from the {@link CatalogSnapshot}. Otherwise, the breed is returned from the
+   * {@link BreedCache} if it is there. If not, it is read from the database (with a single query)
+   * and cached.
+   * <p>
+   * The read-only transaction lets the replica DataSource send the query to a replica (see
+   * {@link bunny.dao.ReplicaRoutingDataSource}).
    * 
    * @param breedId The breed ID
    * @return A bunny breed object with all category names and alternate breed names
@@ -77,17 +404,133 @@ public class BunnyService {
   public Breed getBunnyBreed(int breedId) {
     log.info("Service: Get bunny with ID={}", breedId);
 
-    Breed breed = dao.fetchBunny(breedId)
+    if (catalogSnapshot.isEnabled()) {
+      return catalogSnapshot.getBreed(breedId, BreedField.ALL)
+          .orElseThrow(() -> new NoSuchElementException("Unknown bunny with breed ID=" + breedId));
+    }
+
+    return breedCache.get(breedId, id -> dao.fetchBunnyDetails(id)
+        .orElseThrow(() -> new NoSuchElementException("Unknown bunny with breed ID=" + id)));
+  }
+
+  /**
+   * Return the requested fields of a specific breed. If all the fields are requested, this is the
+   * same as {@link #getBunnyBreed(int)}. If snapshot reads are turned on, the requested fields are
+   * returned from the {@link CatalogSnapshot}. Otherwise, if the breed is in the
+   * {@link BreedCache}, the fields that were not requested are removed from the cached copy. If
+   * not, only the requested fields are read from the database. A partial breed is not cached.
+   * 
+   * @param breedId The breed ID
+   * @param fields The fields to return. See {@link BreedField}.
+   * @return A bunny breed object with the requested fields
+   * @throws NoSuchElementException Thrown if the breed ID does not exist in the database.
+   */
+  @Transactional(readOnly = true)
+  public Breed getBunnyBreed(int breedId, Set<BreedField> fields) {
+    if (fields.containsAll(BreedField.ALL)) {
+      return getBunnyBreed(breedId);
+    }
+
+    log.info("Service: Get bunny with ID={}, fields {}", breedId, fields);
+
+    if (catalogSnapshot.isEnabled()) {
+      return catalogSnapshot.getBreed(breedId, fields)
+          .orElseThrow(() -> new NoSuchElementException("Unknown bunny with breed ID=" + breedId));
+    }
+
+    return breedCache.getIfPresent(breedId)
+        .map(breed -> project(breed, fields))
+        .or(() -> dao.fetchBunnyDetails(breedId, fields))
         .orElseThrow(() -> new NoSuchElementException("Unknown bunny with breed ID=" + breedId));
+  }
+
+  /**
+   * Returns a specific breed as encoded bytes. The bytes are returned from the
+   * {@link ResponseCache} if they were cached with the given ETag. If not, the breed is read with
+   * {@link #getBunnyBreed(int, Set)} in a read-only transaction and encoded. The transaction is
+   * started by the loader, not by an annotation, so a cached response never starts one.
+   * 
+   * @param breedId The breed ID
+   * @param fields The fields to return. See {@link BreedField}.
+   * @param format The format of the bytes.
+   * @param etag The current breed ETag. See {@link #getBreedETag(int, Set, BodyFormat)}.
+   * @param gzip If {@code true}, the bytes are gzip compressed.
+   * @return The encoded bytes. The array must not be changed.
+   * @throws NoSuchElementException Thrown if the breed ID does not exist in the database.
+   */
+  public byte[] getBunnyBreedBytes(int breedId, Set<BreedField> fields, BodyFormat format,
+      String etag, boolean gzip) {
+    return responseCache.get(breedId, fields, format, gzip, etag,
+        () -> readOnlyTransaction.execute(status -> getBunnyBreed(breedId, fields)));
+  }
+
+  /**
+   * Set the fields of the breed that were not requested to {@code null} so that they are not
+   * written to the JSON.
+   * 
+   * @param breed The breed. This must be a copy because it is changed.
+   * @param fields The requested fields.
+   * @return The breed.
+   */
+  private Breed project(Breed breed, Set<BreedField> fields) {
+    if (!fields.contains(BreedField.BREED_NAME)) {
+      breed.setBreedName(null);
+    }
+
+    if (!fields.contains(BreedField.DESCRIPTION)) {
+      breed.setDescription(null);
+    }
 
-    breed.getAlternameNames().addAll(dao.fetchAlternameNames(breedId));
-    breed.getCategoryNames().addAll(dao.fetchBreedCategories(breedId));
+    if (!fields.contains(BreedField.CATEGORY_NAMES)) {
+      breed.setCategoryNames(null);
+    }
+
+    if (!fields.contains(BreedField.ALTERNAME_NAMES)) {
+      breed.setAlternameNames(null);
+    }
 
     return breed;
   }
 
   /**
-   * Add a new bunny breed.
+   * Return the breeds with the given breed IDs. All the breeds are read together with
+   * {@link BunnyDao#fetchBreedDetails(Collection)}, which costs three queries no matter how many IDs
+   * are requested (up to 1,000). The breeds are returned in the order that they were requested.
+   * Duplicate IDs are returned once. IDs that don't exist are returned in the missing list.
+   * 
+   * @param breedIds The breed IDs.
+   * @return The breeds that were found and the IDs that were not.
+   */
+  @Transactional(readOnly = true)
+  public BreedBatch getBunnyBreeds(List<Integer> breedIds) {
+    log.info("Service: Get {} bunnies by ID", breedIds.size());
+
+    Set<Integer> uniqueIds = new LinkedHashSet<>(breedIds);
+
+    Map<Integer, Breed> breedsById = dao.fetchBreedDetails(uniqueIds)
+        .stream() // @formatter:off
+        .collect(Collectors.toMap(Breed::getBreedId, Function.identity())); // @formatter:on
+
+    List<Breed> breeds = uniqueIds
+        .stream() // @formatter:off
+        .map(breedsById::get)
+        .filter(Objects::nonNull)
+        .toList(); // @formatter:on
+
+    List<Integer> missing = uniqueIds
+        .stream() // @formatter:off
+        .filter(breedId -> !breedsById.containsKey(breedId))
+        .toList(); // @formatter:on
+
+    return BreedBatch.builder().breeds(breeds).missing(missing).build();
+  }
+
+  /**
+   * Add a new bunny breed. A new breed can't be in the {@link BreedCache} because only breeds that
+   * were found in the database are cached. So there is nothing to remove from the cache, but the
+   * cached list responses are removed from the {@link ResponseCache}. The new breed is read back
+   * into the {@link BreedIndex} and the other in-memory copies after the transaction commits (see
+   * {@link CatalogChanges}).
    * 
    * @param breedRequest The breed request object
    * @return The bunny breed with the breed ID created by MySQL
@@ -95,7 +538,44 @@ public class BunnyService {
   @Transactional(readOnly = false)
   public Breed addBunny(AddBreedRequest breedRequest) {
     log.info("Service: Adding bunny {}", breedRequest);
-    return dao.insertBunny(breedRequest);
+
+    Breed breed = dao.insertBunny(breedRequest);
+    responseCache.invalidate(breed.getBreedId());
+    catalogChanges.breedChanged(breed.getBreedId());
+    breedVersions.breedChanged(breed.getBreedId());
+
+    return breed;
+  }
+
+  /**
+   * Add the bunny breeds in the given NDJSON input. This method is not annotated with
+   * at-transactional because the breeds are added in chunks, each in its own transaction. See
+   * {@link BulkImporter} for details.
+   * 
+   * @param input The NDJSON input. Each line is an add breed request.
+   * @param consumer This is called with the outcome of each line after it is committed.
+   * @return The number of breeds that were added.
+   * @throws IOException Thrown if the input can't be read.
+   */
+  public int importBunnies(BufferedReader input, Consumer<BulkImportResult> consumer)
+      throws IOException {
+    log.info("Service: Import bunnies");
+    return bulkImporter.importBreeds(input, consumer);
+  }
+
+  /**
+   * Add the bunny breeds in the given CBOR or Smile input. Like the NDJSON import, the breeds are
+   * added in chunks. See {@link BulkImporter#importBreeds(JsonParser, Consumer)} for details.
+   * 
+   * @param input A parser for the binary input.
+   * @param consumer This is called with the outcome of each object after it is committed.
+   * @return The number of breeds that were added.
+   * @throws IOException Thrown if the input can't be read.
+   */
+  public int importBunnies(JsonParser input, Consumer<BulkImportResult> consumer)
+      throws IOException {
+    log.info("Service: Import bunnies");
+    return bulkImporter.importBreeds(input, consumer);
   }
 
   /**
@@ -107,28 +587,142 @@ public class BunnyService {
    */
   @Transactional(readOnly = false)
   public Breed modifyBunny(Breed breed) {
+    breedCache.invalidate(breed.getBreedId());
+    responseCache.invalidate(breed.getBreedId());
+
     if (!dao.modifyBunny(breed)) {
       throw new NoSuchElementException("Unknown bunny with breed ID=" + breed.getBreedId());
     }
 
+    catalogChanges.breedChanged(breed.getBreedId());
+    breedVersions.breedChanged(breed.getBreedId());
+
     return breed;
   }
 
   /**
-   * Delete a bunny breed and all associated breed categories and alternate breed names.
+   * Modify many bunny breeds in a single transaction. The DAO changes all the breeds together with a
+   * fixed number of statements (see {@link BunnyDao#modifyBunnies(List)}), so this is much faster
+   * than calling {@link #modifyBunny(Breed)} once per breed. If a breed ID is given more than once,
+   * the last one wins. Breed IDs that don't exist are reported as not found instead of failing the
+   * batch. If any breed can't be changed (a duplicate breed name, for example), the whole batch is
+   * rolled back.
+   * 
+   * @param breeds The modified breeds. Each must contain a breed ID.
+   * @return The outcome of each breed ID.
+   */
+  @Transactional(readOnly = false)
+  public BatchResult modifyBunnies(List<Breed> breeds) {
+    log.info("Service: Modify {} bunnies", breeds.size());
+
+    Map<Integer, Breed> breedsById = new LinkedHashMap<>();
+    breeds.forEach(breed -> breedsById.put(breed.getBreedId(), breed));
+
+    breedsById.keySet().forEach(breedId -> {
+      breedCache.invalidate(breedId);
+      responseCache.invalidate(breedId);
+    });
+
+    Set<Integer> modifiedIds = dao.modifyBunnies(breeds);
+
+    modifiedIds.forEach(breedId -> {
+      catalogChanges.breedChanged(breedId);
+      breedVersions.breedChanged(breedId);
+    });
+
+    return batchResult(breedsById.keySet(), modifiedIds, BreedOutcome.MODIFIED);
+  }
+
+  /**
+   * Delete many bunny breeds in a single transaction. The breeds are deleted with "DELETE ... WHERE
+   * breed_id IN (...)" (see {@link BunnyDao#deleteBunnyBreeds(Collection)}). Breed IDs that don't
+   * exist are reported as not found instead of failing the batch.
+   * 
+   * @param breedIds The IDs of the breeds to delete.
+   * @return The outcome of each breed ID.
+   */
+  @Transactional(readOnly = false)
+  public BatchResult deleteBunnies(List<Integer> breedIds) {
+    log.info("Service: Delete {} bunnies", breedIds.size());
+
+    Set<Integer> uniqueIds = new LinkedHashSet<>(breedIds);
+    Set<Integer> deletedIds = dao.deleteBunnyBreeds(uniqueIds);
+
+    deletedIds.forEach(this::breedDeleted);
+
+    return batchResult(uniqueIds, deletedIds, BreedOutcome.DELETED);
+  }
+
+  /**
+   * Delete every bunny breed in the category with the given name in a single transaction. The
+   * category itself is not deleted. If the category does not exist or has no breeds, nothing is
+   * deleted and the result is empty.
+   * 
+   * @param categoryName The category name.
+   * @return The outcome of each breed that was in the category.
+   */
+  @Transactional(readOnly = false)
+  public BatchResult deleteBunniesInCategory(String categoryName) {
+    log.info("Service: Delete bunnies in category {}", categoryName);
+
+    List<Integer> breedIds = dao.fetchBreedIdsInCategory(categoryName);
+    Set<Integer> deletedIds = dao.deleteBunnyBreeds(breedIds);
+
+    deletedIds.forEach(this::breedDeleted);
+
+    return batchResult(breedIds, deletedIds, BreedOutcome.DELETED);
+  }
+
+  /**
+   * Build the result of a batch operation.
+   * 
+   * @param breedIds The requested breed IDs in request order, without duplicates.
+   * @param changedIds The IDs of the breeds that were changed.
+   * @param outcome The outcome of the breeds that were changed.
+   * @return The batch result.
+   */
+  private BatchResult batchResult(Collection<Integer> breedIds, Set<Integer> changedIds,
+      String outcome) {
+    List<BreedOutcome> results = breedIds
+        .stream() // @formatter:off
+        .map(breedId -> BreedOutcome.builder()
+            .breedId(breedId)
+            .outcome(changedIds.contains(breedId) ? outcome : BreedOutcome.NOT_FOUND)
+            .build())
+        .toList(); // @formatter:on
+
+    return BatchResult.builder().results(results).changed(changedIds.size())
+        .notFound(results.size() - changedIds.size()).build();
+  }
+
+  /**
+   * Delete a bunny breed and all associated breed categories and alternate breed names. The breed
+   * is not read first to see if it exists. Instead, the number of rows deleted tells us if it was
+   * there. The caches, the indexes and the versions are updated after the transaction commits.
    * 
    * @param breedId The ID of the breed to delete
-   * @throws DeleteBreedException Thrown if an error occurs deleting the breed.
+   * @throws NoSuchElementException Thrown if the breed with the given ID does not exist.
    */
   @Transactional(readOnly = false)
   public void deleteBunny(int breedId) {
     log.info("Service: Delete bunny with ID={}", breedId);
 
-    /* Fetch the breed first. This will throw an exception if the breed does not exist. */
-    getBunnyBreed(breedId);
-
     if (!dao.deleteBunnyBreed(breedId)) {
-      throw new DeleteBreedException("Unable to delete breed with ID=" + breedId);
+      throw new NoSuchElementException("Unknown bunny with breed ID=" + breedId);
     }
+
+    breedDeleted(breedId);
+  }
+
+  /**
+   * Remove a deleted breed from the caches, the index and the snapshot, and change its version.
+   * 
+   * @param breedId The ID of the deleted breed.
+   */
+  private void breedDeleted(int breedId) {
+    breedCache.invalidate(breedId);
+    responseCache.invalidate(breedId);
+    catalogChanges.breedChanged(breedId);
+    breedVersions.breedChanged(breedId);
   }
 }
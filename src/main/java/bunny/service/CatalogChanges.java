@@ -0,0 +1,201 @@
+/**
+ *
+ */
+package bunny.service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import bunny.dao.AfterCommit;
+import bunny.dao.BunnyDao;
+import bunny.dao.ReplicaRoutingDataSource;
+import bunny.entity.Breed;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class passes the committed state of changed breeds to the in-memory copies of the catalog
+ * (the listeners): the {@link BreedIndex}, the {@link CategoryFacets} and, when it is turned on,
+ * the {@link CatalogSnapshot}. The {@link BunnyService} and the {@link BulkImporter} call
+ * {@link #breedChanged(int)} with the ID of each breed they add, modify or delete. Only the IDs are
+ * passed, never the request objects. After the transaction commits, the breeds are read back from
+ * the database and passed to the listeners. A breed that is no longer in the database was deleted.
+ * <p>
+ * The breeds are read and passed to the listeners on a single background thread:
+ * <ul>
+ * <li>The changes are applied one at a time, and each read sees every commit that came before it.
+ * Two transactions that commit one after the other can run their after-commit code in either
+ * order, but the listeners always end up with the state of the later commit.
+ * <li>The request thread doesn't wait for the read. It still holds its database connection while
+ * the after-commit code runs, so waiting for another connection there could use up the pool.
+ * <li>If several transactions commit while a read is running, their IDs are read together.
+ * </ul>
+ * The breeds are read in a primary read transaction (see
+ * {@link ReplicaRoutingDataSource#primaryReadTransaction(PlatformTransactionManager)}) so that they
+ * come from the primary database, which has the commit, and never from a replica that may be
+ * behind.
+ * <p>
+ * A change that is missed (because the read failed, or because the breed was changed outside this
+ * application) is fixed by the periodic reload. Every "bunny.catalog.reload-interval" (default 10
+ * minutes) each listener reloads its copy from the database on the same background thread.
+ *
+ * @author Promineo
+ *
+ */
+@Component
+@Slf4j
+public class CatalogChanges {
+
+  /**
+   * This is an in-memory copy of the catalog that is kept up to date with the committed breeds.
+   * Both methods are called on the background thread, one call at a time.
+   */
+  public interface Listener {
+
+    /**
+     * Apply the committed state of the changed breeds.
+     *
+     * @param changes A map of breed ID to the breed as it is in the database. The value is
+     *        {@code null} if the breed was deleted.
+     */
+    void breedsChanged(Map<Integer, Breed> changes);
+
+    /**
+     * Reload the whole copy from the database.
+     */
+    void reload();
+  }
+
+  @Value("${bunny.catalog.reload-interval:10m}")
+  private Duration reloadInterval;
+
+  @Autowired
+  private BunnyDao dao;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+  /** These are the IDs of the breeds that were committed but not yet read back. */
+  private final Set<Integer> pending = ConcurrentHashMap.newKeySet();
+
+  private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(
+      runnable -> {
+        Thread thread = new Thread(runnable, "catalog-changes");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  /** This reads the changed breeds from the primary database. */
+  private TransactionTemplate primaryTransaction;
+
+  /**
+   * Create the transaction template and schedule the periodic reload.
+   */
+  @PostConstruct
+  public void start() {
+    primaryTransaction = ReplicaRoutingDataSource.primaryReadTransaction(transactionManager);
+
+    long interval = reloadInterval.toMillis();
+    worker.scheduleWithFixedDelay(this::reload, interval, interval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stop the background thread.
+   */
+  @PreDestroy
+  public void stop() {
+    worker.shutdownNow();
+  }
+
+  /**
+   * Add a listener. It is given every change committed after this is called.
+   *
+   * @param listener The listener.
+   */
+  public void addListener(Listener listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Record that a breed was added, modified or deleted. If there is a transaction, the breed is
+   * read back after the transaction commits. Nothing is done if the transaction rolls back.
+   *
+   * @param breedId The breed ID.
+   */
+  public void breedChanged(int breedId) {
+    if (!listeners.isEmpty()) {
+      AfterCommit.collect(this, breedId, this::committed);
+    }
+  }
+
+  /**
+   * Queue the committed breed IDs to be read on the background thread.
+   *
+   * @param breedIds The breed IDs.
+   */
+  private void committed(Set<Integer> breedIds) {
+    pending.addAll(breedIds);
+    worker.execute(this::readPending);
+  }
+
+  /**
+   * Read the pending breeds and pass them to the listeners. An ID that is queued while this runs is
+   * either read now or by the task that was queued with it.
+   */
+  private void readPending() {
+    Set<Integer> breedIds = new HashSet<>();
+
+    for (Integer breedId : pending) {
+      if (pending.remove(breedId)) {
+        breedIds.add(breedId);
+      }
+    }
+
+    if (breedIds.isEmpty()) {
+      return;
+    }
+
+    try {
+      Map<Integer, Breed> changes = new HashMap<>();
+      breedIds.forEach(breedId -> changes.put(breedId, null));
+
+      primaryTransaction.executeWithoutResult(status -> dao.fetchBreedDetails(breedIds)
+          .forEach(breed -> changes.put(breed.getBreedId(), breed)));
+
+      listeners.forEach(listener -> listener.breedsChanged(changes));
+    } catch (RuntimeException e) {
+      log.warn("Catalog: Unable to read {} changed breeds. They are fixed by the next reload: {}",
+          breedIds.size(), e.getMessage());
+    }
+  }
+
+  /**
+   * Reload every listener from the database.
+   */
+  private void reload() {
+    for (Listener listener : listeners) {
+      try {
+        listener.reload();
+      } catch (RuntimeException e) {
+        log.warn("Catalog: Unable to reload {}: {}", listener.getClass().getSimpleName(),
+            e.getMessage());
+      }
+    }
+  }
+}
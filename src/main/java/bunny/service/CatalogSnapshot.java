@@ -0,0 +1,499 @@
+/**
+ *
+ */
+package bunny.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import bunny.dao.BunnyDao;
+import bunny.dao.ReplicaRoutingDataSource;
+import bunny.entity.Breed;
+import bunny.entity.BreedField;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class holds a complete in-memory copy of the breed catalog (breeds, alternate names and
+ * categories). When it is turned on, the breed list and breed detail reads are answered from memory
+ * without touching the database. It is turned on with the property "bunny.snapshot.enabled"
+ * (default false).
+ * <p>
+ * The catalog is held in an immutable {@link Snapshot}. Each breed is a small record with its
+ * alternate names in a String array and its categories in an int array. The category numbers are
+ * indexes into a single table of category names, so each category name is stored only once. The
+ * snapshot is published through an {@link AtomicReference}. A read simply gets the current snapshot
+ * and never waits for a lock, and a read always sees a consistent catalog.
+ * <p>
+ * The snapshot is loaded from the {@link BunnyDao} when the application starts. After that, the
+ * {@link CatalogChanges} pass it the committed state of each added, modified or deleted breed, and
+ * reload it every so often. To apply a change, a patched copy of the snapshot is made and swapped
+ * in (copy-on-write). The breeds are kept in two sorted arrays, by breed ID and by breed name. A
+ * patch copies each array once and puts the changed breeds in their places, so it never sorts the
+ * whole catalog again. A breed is found by ID with a binary search.
+ *
+ * @author Promineo
+ *
+ */
+@Component
+@Slf4j
+public class CatalogSnapshot implements CatalogChanges.Listener {
+
+  /** Breeds are sorted like MySQL sorts the breed names: without regard to case. */
+  private static final Comparator<Entry> BY_BREED_NAME = Comparator
+      .comparing(Entry::breedName, String.CASE_INSENSITIVE_ORDER).thenComparing(Entry::breedId);
+
+  private static final Comparator<Entry> BY_BREED_ID = Comparator.comparingInt(Entry::breedId);
+
+  /** These are the FNV-1a 64-bit hash constants. See {@link #hash(long, String)}. */
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  @Value("${bunny.snapshot.enabled:false}")
+  private boolean enabled;
+
+  @Autowired
+  private BunnyDao dao;
+
+  @Autowired
+  private CatalogChanges catalogChanges;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  /** This is only changed by the thread that starts the application and the CatalogChanges. */
+  private final AtomicReference<Snapshot> snapshot =
+      new AtomicReference<>(new Snapshot(new String[0], new Entry[0], new Entry[0], 0));
+
+  /**
+   * These are the changes that arrived while a reload was reading the database. They are applied
+   * again to the reloaded snapshot, which may have been read before they were committed. This is
+   * {@code null} when no reload is running. It is guarded by this object.
+   */
+  private Map<Integer, Breed> changesDuringReload;
+
+  /**
+   * This is an immutable breed. The category IDs are indexes into the snapshot's category names.
+   * The hash is a hash of the breed's content (see {@link #breedETag(int)}).
+   */
+  private record Entry(int breedId, String breedName, String description, String[] alternateNames,
+      int[] categoryIds, long hash) {}
+
+  /**
+   * This is an immutable copy of the catalog. The breeds are kept in an array sorted by breed ID
+   * and in an array sorted by breed name. Neither is changed after the snapshot is published. The
+   * catalog hash is the sum of the breed hashes, so a patch can update it without going through
+   * every breed.
+   */
+  private record Snapshot(String[] categoryNames, Entry[] byId, Entry[] byName, long catalogHash) {
+
+    /**
+     * Create a snapshot from the given breeds.
+     *
+     * @param categoryNames The category name table.
+     * @param breeds The breeds in any order.
+     * @return The snapshot.
+     */
+    private static Snapshot of(String[] categoryNames, Collection<Entry> breeds) {
+      Entry[] byId = breeds.toArray(Entry[]::new);
+      Arrays.sort(byId, BY_BREED_ID);
+
+      Entry[] byName = byId.clone();
+      Arrays.sort(byName, BY_BREED_NAME);
+
+      long catalogHash = 0;
+
+      for (Entry entry : byId) {
+        catalogHash += entry.hash();
+      }
+
+      return new Snapshot(categoryNames, byId, byName, catalogHash);
+    }
+
+    /**
+     * Returns the breed with the given breed ID.
+     *
+     * @param breedId The breed ID.
+     * @return The breed, or {@code null} if there is no breed with the ID.
+     */
+    private Entry find(int breedId) {
+      int low = 0;
+      int high = byId.length - 1;
+
+      while (low <= high) {
+        int middle = (low + high) >>> 1;
+        int middleId = byId[middle].breedId();
+
+        if (middleId < breedId) {
+          low = middle + 1;
+        } else if (middleId > breedId) {
+          high = middle - 1;
+        } else {
+          return byId[middle];
+        }
+      }
+
+      return null;
+    }
+
+    /**
+     * Return a copy of this snapshot with the given changes.
+     *
+     * @param changes A map of breed ID to the added or modified breed. The value is {@code null}
+     *        if the breed was deleted.
+     * @return The new snapshot.
+     */
+    private Snapshot patch(Map<Integer, Breed> changes) {
+      CategoryTable categories = new CategoryTable(categoryNames);
+      List<Entry> removed = new ArrayList<>();
+      List<Entry> added = new ArrayList<>();
+      long patchedHash = catalogHash;
+
+      for (Map.Entry<Integer, Breed> change : changes.entrySet()) {
+        Entry current = find(change.getKey());
+
+        if (Objects.nonNull(current)) {
+          removed.add(current);
+          patchedHash -= current.hash();
+        }
+
+        if (Objects.nonNull(change.getValue())) {
+          Entry entry = categories.toEntry(change.getValue());
+
+          added.add(entry);
+          patchedHash += entry.hash();
+        }
+      }
+
+      return new Snapshot(categories.toArray(), merge(byId, removed, added, BY_BREED_ID),
+          merge(byName, removed, added, BY_BREED_NAME), patchedHash);
+    }
+
+    /**
+     * Returns a copy of a sorted array without the removed entries and with the added entries in
+     * their sorted places. The runs of entries between the changes are copied with
+     * System.arraycopy, so a change to a few breeds costs about as much as copying the array.
+     *
+     * @param sorted The array sorted in the given order.
+     * @param removed The entries to remove. Each must be in the array.
+     * @param added The entries to add.
+     * @param order The order of the array.
+     * @return The new array.
+     */
+    private static Entry[] merge(Entry[] sorted, List<Entry> removed, List<Entry> added,
+        Comparator<Entry> order) {
+      int[] removeAt = removed
+          .stream() // @formatter:off
+          .mapToInt(entry -> Arrays.binarySearch(sorted, entry, order))
+          .sorted()
+          .toArray(); // @formatter:on
+
+      Entry[] inserts = added.toArray(Entry[]::new);
+      Arrays.sort(inserts, order);
+
+      int[] insertAt = new int[inserts.length];
+
+      for (int index = 0; index < inserts.length; index++) {
+        int found = Arrays.binarySearch(sorted, inserts[index], order);
+        insertAt[index] = found >= 0 ? found : -found - 1;
+      }
+
+      Entry[] result = new Entry[sorted.length - removeAt.length + inserts.length];
+      int from = 0;
+      int to = 0;
+      int remove = 0;
+      int insert = 0;
+
+      while (remove < removeAt.length || insert < inserts.length) {
+        int nextRemove = remove < removeAt.length ? removeAt[remove] : Integer.MAX_VALUE;
+        int nextInsert = insert < inserts.length ? insertAt[insert] : Integer.MAX_VALUE;
+        int next = Math.min(nextRemove, nextInsert);
+
+        System.arraycopy(sorted, from, result, to, next - from);
+        to += next - from;
+        from = next;
+
+        /* An added entry goes in front of the entry that is removed from the same place. */
+        if (nextInsert <= nextRemove) {
+          result[to++] = inserts[insert++];
+        } else {
+          from++;
+          remove++;
+        }
+      }
+
+      System.arraycopy(sorted, from, result, to, sorted.length - from);
+
+      return result;
+    }
+  }
+
+  /**
+   * This builds the category name table. Each category name is given the next number the first
+   * time it is seen. Category names are matched without regard to case, like MySQL matches them.
+   */
+  private static final class CategoryTable {
+    private final List<String> names;
+    private final Map<String, Integer> ids = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    private CategoryTable(String[] names) {
+      this.names = new ArrayList<>(Arrays.asList(names));
+
+      for (int id = 0; id < names.length; id++) {
+        ids.put(names[id], id);
+      }
+    }
+
+    private int intern(String name) {
+      return ids.computeIfAbsent(name, key -> {
+        names.add(key);
+        return names.size() - 1;
+      });
+    }
+
+    /**
+     * Convert a breed to an entry. The alternate names and categories are sorted by name, like
+     * they are when the breed is read from the database. Duplicate alternate names are kept
+     * because the alt_name table keeps them. A breed is only in a category once.
+     */
+    private Entry toEntry(Breed breed) {
+      String[] alternateNames = breed.getAlternameNames()
+          .stream() // @formatter:off
+          .sorted(String.CASE_INSENSITIVE_ORDER)
+          .toArray(String[]::new); // @formatter:on
+
+      int[] categoryIds = breed.getCategoryNames()
+          .stream() // @formatter:off
+          .mapToInt(this::intern)
+          .distinct()
+          .boxed()
+          .sorted(Comparator.comparing(names::get, String.CASE_INSENSITIVE_ORDER))
+          .mapToInt(Integer::intValue)
+          .toArray(); // @formatter:on
+
+      long hash = hash(FNV_OFFSET_BASIS, Integer.toString(breed.getBreedId()));
+      hash = hash(hash, breed.getBreedName());
+      hash = hash(hash, breed.getDescription());
+
+      for (String alternateName : alternateNames) {
+        hash = hash(hash, alternateName);
+      }
+
+      /* The category names are hashed, not the numbers, which are different in each snapshot. */
+      for (int categoryId : categoryIds) {
+        hash = hash(hash, "#" + names.get(categoryId));
+      }
+
+      return new Entry(breed.getBreedId(), breed.getBreedName(), breed.getDescription(),
+          alternateNames, categoryIds, hash);
+    }
+
+    private String[] toArray() {
+      return names.toArray(String[]::new);
+    }
+  }
+
+  /**
+   * Start listening for changes and load the snapshot from the database if snapshot reads are
+   * turned on. The listener is added first so that a change committed while the snapshot is read
+   * is not missed.
+   */
+  @PostConstruct
+  public void loadSnapshot() {
+    if (!enabled) {
+      return;
+    }
+
+    catalogChanges.addListener(this);
+    reload();
+  }
+
+  /**
+   * Load the snapshot from the database. The breeds are streamed so that only the compact entries
+   * are kept. They are read in a primary read transaction so that they come from the primary
+   * database. A replica may be behind, and a reload must never go back to older breeds than the
+   * ones already in the snapshot.
+   */
+  @Override
+  public void reload() {
+    TransactionTemplate primaryTransaction =
+        ReplicaRoutingDataSource.primaryReadTransaction(transactionManager);
+
+    CategoryTable categories = new CategoryTable(new String[0]);
+    List<Entry> breeds = new ArrayList<>();
+
+    synchronized (this) {
+      changesDuringReload = new HashMap<>();
+    }
+
+    primaryTransaction.executeWithoutResult(status -> dao
+        .streamAllBreedDetails(breed -> breeds.add(categories.toEntry(breed))));
+
+    synchronized (this) {
+      snapshot.set(Snapshot.of(categories.toArray(), breeds).patch(changesDuringReload));
+      changesDuringReload = null;
+    }
+
+    log.info("Snapshot: Loaded {} breeds in {} categories", breeds.size(),
+        categories.names.size());
+  }
+
+  /**
+   * Returns {@code true} if the breed reads are answered from the snapshot.
+   *
+   * @return {@code true} if snapshot reads are turned on.
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Returns the ETag of the breed with the given breed ID as it is in the snapshot. When snapshot
+   * reads are turned on, the ETags come from here instead of the {@link BreedVersions}. The
+   * snapshot is updated a moment after each commit, and an ETag must never be newer than the breed
+   * that is returned with it. So the ETag is made from a hash of the breed's content: every
+   * instance with the same breed in its snapshot returns the same ETag. A breed that isn't in the
+   * snapshot has no ETag.
+   *
+   * @param breedId The breed ID.
+   * @return The ETag value without quotes, like "29-s1x2k9a1c3d".
+   * @throws NoSuchElementException Thrown if the breed ID is not in the snapshot.
+   */
+  public String breedETag(int breedId) {
+    Entry entry = snapshot.get().find(breedId);
+
+    if (Objects.isNull(entry)) {
+      throw new NoSuchElementException("Unknown bunny with breed ID=" + breedId);
+    }
+
+    return breedId + "-s" + Long.toUnsignedString(entry.hash(), 36);
+  }
+
+  /**
+   * Returns the ETag of the list of all breeds in the snapshot. This is made from the sum of the
+   * breed hashes and the number of breeds. See {@link #breedETag(int)}.
+   *
+   * @return The ETag value without quotes, like "s4k2m0a9x-39".
+   */
+  public String catalogETag() {
+    Snapshot current = snapshot.get();
+    return "s" + Long.toUnsignedString(current.catalogHash(), 36) + "-" + current.byId().length;
+  }
+
+  /**
+   * Returns all breeds sorted by breed name.
+   *
+   * @param fields The fields to return. Fields that are not requested are left {@code null}.
+   * @return The breeds.
+   */
+  public List<Breed> listBreeds(Set<BreedField> fields) {
+    Snapshot current = snapshot.get();
+    List<Breed> breeds = new ArrayList<>(current.byName().length);
+
+    for (Entry entry : current.byName()) {
+      breeds.add(toBreed(current, entry, fields));
+    }
+
+    return breeds;
+  }
+
+  /**
+   * Returns the breed with the given breed ID.
+   *
+   * @param breedId The breed ID.
+   * @param fields The fields to return. Fields that are not requested are left {@code null}.
+   * @return The breed, or an empty Optional if there is no breed with the ID.
+   */
+  public Optional<Breed> getBreed(int breedId, Set<BreedField> fields) {
+    Snapshot current = snapshot.get();
+
+    return Optional.ofNullable(current.find(breedId))
+        .map(entry -> toBreed(current, entry, fields));
+  }
+
+  /**
+   * Swap in a patched copy of the snapshot. This is called by the {@link CatalogChanges} with the
+   * breeds as they were committed, one call at a time. If a reload is running, the changes are
+   * also kept for the reloaded snapshot.
+   *
+   * @param changes A map of breed ID to the breed. The value is {@code null} if the breed was
+   *        deleted.
+   */
+  @Override
+  public synchronized void breedsChanged(Map<Integer, Breed> changes) {
+    if (Objects.nonNull(changesDuringReload)) {
+      changesDuringReload.putAll(changes);
+    }
+
+    snapshot.set(snapshot.get().patch(changes));
+  }
+
+  /**
+   * Create a breed from a snapshot entry.
+   *
+   * @param current The snapshot that holds the entry.
+   * @param entry The entry.
+   * @param fields The fields to return.
+   * @return The breed.
+   */
+  private Breed toBreed(Snapshot current, Entry entry, Set<BreedField> fields) {
+    Breed breed = Breed
+        .builder() // @formatter:off
+        .breedId(entry.breedId())
+        .breedName(fields.contains(BreedField.BREED_NAME) ? entry.breedName() : null)
+        .description(fields.contains(BreedField.DESCRIPTION) ? entry.description() : null)
+        .build(); // @formatter:on
+
+    if (fields.contains(BreedField.ALTERNAME_NAMES)) {
+      breed.getAlternameNames().addAll(Arrays.asList(entry.alternateNames()));
+    } else {
+      breed.setAlternameNames(null);
+    }
+
+    if (fields.contains(BreedField.CATEGORY_NAMES)) {
+      for (int categoryId : entry.categoryIds()) {
+        breed.getCategoryNames().add(current.categoryNames()[categoryId]);
+      }
+    } else {
+      breed.setCategoryNames(null);
+    }
+
+    return breed;
+  }
+
+  /**
+   * Add a value to an FNV-1a hash. The end of the value is marked with a number that no char can
+   * have, so "ab" then "c" hashes differently from "a" then "bc". A {@code null} value is marked
+   * with another such number.
+   *
+   * @param hash The hash so far.
+   * @param value The value.
+   * @return The new hash.
+   */
+  private static long hash(long hash, String value) {
+    if (Objects.isNull(value)) {
+      return (hash ^ 0x10001) * FNV_PRIME;
+    }
+
+    for (int index = 0; index < value.length(); index++) {
+      hash = (hash ^ value.charAt(index)) * FNV_PRIME;
+    }
+
+    return (hash ^ 0x10000) * FNV_PRIME;
+  }
+}
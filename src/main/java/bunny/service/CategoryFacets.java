@@ -0,0 +1,252 @@
+/**
+ *
+ */
+package bunny.service;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import bunny.dao.BunnyDao;
+import bunny.dao.CategoryDictionary;
+import bunny.dao.ReplicaRoutingDataSource;
+import bunny.entity.Breed;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class is an in-memory index of which breeds are in which categories. It is used to filter
+ * breeds by category without reading the breed_category table. There is one {@link BitSet} per
+ * category. Bit N is set if the breed with breed ID N is in the category. A filter like "lop-eared
+ * AND smooth AND NOT spotted" is just a few word-at-a-time AND and AND NOT operations on the bit
+ * sets.
+ * <p>
+ * A {@link BitSet} is not compressed: a category costs one bit for every breed ID up to its
+ * highest breed, whether or not the breeds are in it. Breed IDs are generated by AUTO_INCREMENT so
+ * they are small and close together, which keeps that at 125 KB per category for a million breeds.
+ * A compressed bitmap (like RoaringBitmap) would make a small category much smaller, but it is
+ * another dependency and it is slower to AND together when the categories are large. The bit sets
+ * are the better trade for a catalog with few categories and dense IDs. If there come to be many
+ * small categories, or most of the old breed IDs are deleted, a compressed bitmap should be used
+ * instead.
+ * <p>
+ * A filter is a list of clauses. A breed must match every clause (AND). A clause is a list of
+ * category names separated by "|". A breed matches the clause if it matches any of the names
+ * (OR). A name that starts with "!" matches the breeds that are NOT in the category. For example,
+ * the clauses ["lop-eared", "smooth|wooly", "!spotted"] match breeds that are lop-eared and either
+ * smooth or wooly, but not spotted. Category names are looked up in the {@link CategoryDictionary}.
+ * An unknown category name has no breeds.
+ * <p>
+ * The index is loaded from the {@link BunnyDao} when the application starts. After that, the
+ * {@link CatalogChanges} passes it each added, modified or deleted breed as it was committed to the
+ * database. The whole index is reloaded by the periodic reload. A read/write lock lets any number
+ * of filters run at the same time.
+ *
+ * @author Promineo
+ *
+ */
+@Component
+@Slf4j
+public class CategoryFacets implements CatalogChanges.Listener {
+
+  /** This separates the category names in a clause. */
+  private static final String OR_SEPARATOR = "\\|";
+
+  /** A category name that starts with this is negated. */
+  private static final String NOT_PREFIX = "!";
+
+  @Autowired
+  private CategoryDictionary categoryDictionary;
+
+  @Autowired
+  private BunnyDao dao;
+
+  @Autowired
+  private CatalogChanges catalogChanges;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  /** This maps each category ID to the breeds in the category. */
+  private final Map<Integer, BitSet> breedsByCategory = new HashMap<>();
+
+  /** These are all the breeds. This is needed to negate a category. */
+  private final BitSet allBreeds = new BitSet();
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /**
+   * Return the breeds that match all the given clauses. See the class comment for the syntax.
+   *
+   * @param clauses The clauses. If there are no clauses, every breed matches.
+   * @return The matching breed IDs as a bit set. The caller may change it.
+   */
+  public BitSet filter(List<String> clauses) {
+    lock.readLock().lock();
+
+    try {
+      BitSet matches = (BitSet) allBreeds.clone();
+
+      for (String clause : clauses) {
+        BitSet clauseMatches = new BitSet();
+
+        for (String term : clause.split(OR_SEPARATOR)) {
+          String name = term.trim();
+
+          if (name.startsWith(NOT_PREFIX)) {
+            BitSet notInCategory = (BitSet) allBreeds.clone();
+            notInCategory.andNot(breedsIn(name.substring(NOT_PREFIX.length()).trim()));
+            clauseMatches.or(notInCategory);
+          } else {
+            clauseMatches.or(breedsIn(name));
+          }
+        }
+
+        matches.and(clauseMatches);
+      }
+
+      return matches;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Count the given breeds in each category. Categories that none of the breeds are in are left
+   * out.
+   *
+   * @param breeds The breed IDs as a bit set.
+   * @return A map of category name to the number of the breeds in the category, sorted by name.
+   */
+  public Map<String, Integer> countCategories(BitSet breeds) {
+    Map<String, Integer> counts = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    lock.readLock().lock();
+
+    try {
+      breedsByCategory.forEach((categoryId, categoryBreeds) -> {
+        if (categoryBreeds.intersects(breeds)) {
+          BitSet intersection = (BitSet) categoryBreeds.clone();
+          intersection.and(breeds);
+
+          categoryDictionary.findCategoryName(categoryId)
+              .ifPresent(name -> counts.put(name, intersection.cardinality()));
+        }
+      });
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    return counts;
+  }
+
+  /**
+   * Load the facets from the database when the application starts, and start listening for
+   * changes.
+   */
+  @PostConstruct
+  public void loadFacets() {
+    reload();
+    catalogChanges.addListener(this);
+  }
+
+  /**
+   * Read every breed and every breed_category row and swap them in. They are read in a primary read
+   * transaction so that they come from the primary database, like the changes.
+   */
+  @Override
+  public void reload() {
+    TransactionTemplate primaryTransaction =
+        ReplicaRoutingDataSource.primaryReadTransaction(transactionManager);
+
+    Map<Integer, BitSet> loadedCategories = new HashMap<>();
+    BitSet loadedBreeds = new BitSet();
+
+    primaryTransaction.executeWithoutResult(status -> dao.streamBreedCategories(loadedBreeds::set,
+        (breedId, categoryId) -> loadedCategories.computeIfAbsent(categoryId, id -> new BitSet())
+            .set(breedId)));
+
+    lock.writeLock().lock();
+
+    try {
+      breedsByCategory.clear();
+      breedsByCategory.putAll(loadedCategories);
+      allBreeds.clear();
+      allBreeds.or(loadedBreeds);
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+    log.info("Facets: Loaded {} breeds in {} categories", loadedBreeds.cardinality(),
+        loadedCategories.size());
+  }
+
+  /**
+   * Replace the categories of the changed breeds. This is called by the {@link CatalogChanges} with
+   * the breeds as they were committed, so the category names are the names in the category table
+   * and the facets always end up with the state of the last commit. A category that isn't in the
+   * dictionary yet was created by another copy of the application. It is picked up by the next
+   * reload.
+   *
+   * @param changes A map of breed ID to the breed. The value is {@code null} if the breed was
+   *        deleted.
+   */
+  @Override
+  public void breedsChanged(Map<Integer, Breed> changes) {
+    lock.writeLock().lock();
+
+    try {
+      changes.forEach((breedId, breed) -> {
+        allBreeds.clear(breedId);
+        breedsByCategory.values().forEach(breeds -> breeds.clear(breedId));
+
+        if (Objects.nonNull(breed)) {
+          allBreeds.set(breedId);
+
+          for (String name : breed.getCategoryNames()) {
+            categoryDictionary.findCategoryId(name).ifPresent(categoryId -> breedsByCategory
+                .computeIfAbsent(categoryId, id -> new BitSet()).set(breedId));
+          }
+        }
+      });
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the number of breeds in the index.
+   *
+   * @return The number of breeds.
+   */
+  public int size() {
+    lock.readLock().lock();
+
+    try {
+      return allBreeds.cardinality();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the breeds in the category with the given name. The caller must hold the read lock and
+   * must not change the returned bit set.
+   *
+   * @param categoryName The category name.
+   * @return The breeds in the category. This is empty if the category does not exist.
+   */
+  private BitSet breedsIn(String categoryName) {
+    return categoryDictionary.findCategoryId(categoryName)
+        .map(breedsByCategory::get)
+        .orElseGet(BitSet::new);
+  }
+}
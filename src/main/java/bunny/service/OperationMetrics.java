@@ -0,0 +1,146 @@
+/**
+ *
+ */
+package bunny.service;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import bunny.dao.BunnyDao;
+import bunny.dao.MeteredJdbcTemplate;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * This aspect times every public method of the {@link BunnyDao} and the {@link BunnyService}. The
+ * timers are named bunny.dao.method and bunny.service.operation. They have percentile histograms,
+ * so the latency percentiles can be computed in Prometheus (see
+ * http://localhost:8080/actuator/prometheus).
+ * <p>
+ * Each timer has two tags: "method" is the method name and "outcome" is "success" or "error". There
+ * is a fixed number of methods, so the number of timers is bounded. The exception type, the breed
+ * ID and other request values are never used as tags. The histogram buckets are limited to 1 ms to
+ * 30 seconds to keep the number of buckets small.
+ * <p>
+ * The aspect also tells the {@link MeteredJdbcTemplate} which DAO method is running, so that the
+ * rows read and written are counted by DAO method.
+ * <p>
+ * The cost of the instrumentation itself is measured all the time. The time spent in this aspect,
+ * not counting the time spent in the timed method, is recorded in the bunny.metrics.overhead timer.
+ * Its mean is the overhead that each call pays.
+ *
+ * @author Promineo
+ *
+ */
+@Aspect
+@Component
+public class OperationMetrics {
+
+  /** Spring Boot creates the meter registry when Actuator is on the classpath. */
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  /** The timers are looked up by method and outcome. This avoids building tags on every call. */
+  private final Map<Method, Timer> successTimers = new ConcurrentHashMap<>();
+  private final Map<Method, Timer> errorTimers = new ConcurrentHashMap<>();
+
+  private Timer overhead;
+
+  /**
+   * Create the overhead timer after Spring has injected the meter registry.
+   */
+  @PostConstruct
+  public void registerMeters() {
+    overhead = Timer
+        .builder("bunny.metrics.overhead") // @formatter:off
+        .description("Time spent in the operation metrics aspect outside of the timed method")
+        .register(meterRegistry); // @formatter:on
+  }
+
+  /**
+   * Time a DAO method.
+   *
+   * @param joinPoint The method call.
+   * @return The value returned by the method.
+   * @throws Throwable Thrown by the method.
+   */
+  @Around("execution(public * bunny.dao.BunnyDao.*(..))")
+  public Object timeDaoMethod(ProceedingJoinPoint joinPoint) throws Throwable {
+    return time(joinPoint, "bunny.dao.method", true);
+  }
+
+  /**
+   * Time a service operation.
+   *
+   * @param joinPoint The method call.
+   * @return The value returned by the method.
+   * @throws Throwable Thrown by the method.
+   */
+  @Around("execution(public * bunny.service.BunnyService.*(..))")
+  public Object timeServiceOperation(ProceedingJoinPoint joinPoint) throws Throwable {
+    return time(joinPoint, "bunny.service.operation", false);
+  }
+
+  /**
+   * Call the method and record the time it took in the timer for the method and the outcome.
+   *
+   * @param joinPoint The method call.
+   * @param name The timer name.
+   * @param dao {@code true} if the method is a DAO method.
+   * @return The value returned by the method.
+   * @throws Throwable Thrown by the method.
+   */
+  private Object time(ProceedingJoinPoint joinPoint, String name, boolean dao) throws Throwable {
+    long start = System.nanoTime();
+    Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+    String previousDaoMethod = dao ? MeteredJdbcTemplate.setDaoMethod(method.getName()) : null;
+    boolean success = false;
+    long called = System.nanoTime();
+
+    try {
+      Object result = joinPoint.proceed();
+      success = true;
+      return result;
+    } finally {
+      long returned = System.nanoTime();
+
+      if (dao) {
+        MeteredJdbcTemplate.setDaoMethod(previousDaoMethod);
+      }
+
+      timer(success ? successTimers : errorTimers, method, name, success)
+          .record(returned - called, TimeUnit.NANOSECONDS);
+
+      overhead.record((called - start) + (System.nanoTime() - returned), TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * Returns the timer for a method and outcome. The timer is created the first time.
+   *
+   * @param timers The timers for the outcome.
+   * @param method The method.
+   * @param name The timer name.
+   * @param success The outcome.
+   * @return The timer.
+   */
+  private Timer timer(Map<Method, Timer> timers, Method method, String name, boolean success) {
+    return timers.computeIfAbsent(method, key -> Timer
+        .builder(name) // @formatter:off
+        .tag("method", key.getName())
+        .tag("outcome", success ? "success" : "error")
+        .publishPercentileHistogram()
+        .minimumExpectedValue(Duration.ofMillis(1))
+        .maximumExpectedValue(Duration.ofSeconds(30))
+        .register(meterRegistry)); // @formatter:on
+  }
+}
@@ -0,0 +1,221 @@
+/**
+ *
+ */
+package bunny.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import bunny.dao.AfterCommit;
+import bunny.entity.BreedField;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * This class caches the breed list and breed detail responses as encoded bytes: UTF-8 JSON, CBOR or
+ * Smile (see {@link BodyFormat}), optionally gzip compressed. The controller writes the bytes
+ * straight to the response, so a cached response is never encoded again. This matters because a
+ * breed description can be up to 4 KB, and the list holds every breed.
+ * <p>
+ * Each response is cached with the ETag it was created for (see {@link BreedVersions}). A cached
+ * response is only returned if its ETag matches the current ETag, so a stale response is never
+ * returned even if the response was built while a change was being committed. The
+ * {@link BunnyService} also removes the responses of a breed (and the list responses) when the
+ * breed is changed so that they don't take up memory until they are evicted.
+ * <p>
+ * The cache is limited by the total number of bytes it holds. This is set with the property
+ * "bunny.response-cache.maximum-bytes" (default 64 MB). The statistics are published to Micrometer
+ * with the cache name "responses".
+ *
+ * @author Promineo
+ *
+ */
+@Component
+@Slf4j
+public class ResponseCache {
+
+  /** This is the name of the cache in the metrics. */
+  private static final String CACHE_NAME = "responses";
+
+  /** These are the field sets a response can be cached with. See {@link #fieldSets()}. */
+  private static final List<Set<BreedField>> FIELD_SETS = fieldSets();
+
+  @Value("${bunny.response-cache.maximum-bytes:67108864}")
+  private long maximumBytes;
+
+  /** This holds the mapper for each format. */
+  @Autowired
+  private BodyMappers bodyMappers;
+
+  /** Spring Boot creates the meter registry when Actuator is on the classpath. */
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  private Cache<Key, Entry> cache;
+
+  /**
+   * This identifies a cached response. The breed ID is {@code null} for the list of all breeds.
+   */
+  private record Key(Integer breedId, Set<BreedField> fields, BodyFormat format, boolean gzip) {}
+
+  /** This is a cached response and the ETag it was created for. */
+  private record Entry(String etag, byte[] bytes) {}
+
+  /**
+   * Create the cache after Spring has injected the properties. Each response is weighed by its
+   * size in bytes.
+   */
+  @PostConstruct
+  public void createCache() {
+    log.info("Cache: Creating response cache with maximum bytes={}", maximumBytes);
+
+    cache = Caffeine.newBuilder() // @formatter:off
+        .maximumWeight(maximumBytes)
+        .weigher((Key key, Entry entry) -> entry.bytes().length)
+        .recordStats()
+        .build(); // @formatter:on
+
+    CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+  }
+
+  /**
+   * Return the encoded bytes of a response. If the response is cached with the given ETag, the
+   * cached bytes are returned. If not, the loader is called and its result is encoded (and
+   * compressed if requested) and cached. If the loader throws an exception, nothing is cached.
+   * <p>
+   * The returned array is shared with the cache and must not be changed.
+   *
+   * @param breedId The breed ID, or {@code null} for the list of all breeds.
+   * @param fields The fields in the response.
+   * @param format The format of the response.
+   * @param gzip If {@code true}, the bytes are gzip compressed.
+   * @param etag The current ETag of the response.
+   * @param loader This returns the object to encode.
+   * @return The encoded bytes.
+   */
+  public byte[] get(Integer breedId, Set<BreedField> fields, BodyFormat format, boolean gzip,
+      String etag, Supplier<Object> loader) {
+    Key key = new Key(breedId, fields, format, gzip);
+    Entry entry = cache.getIfPresent(key);
+
+    if (Objects.nonNull(entry) && entry.etag().equals(etag)) {
+      return entry.bytes();
+    }
+
+    /* The compressed bytes are made from the cached uncompressed bytes. */
+    byte[] bytes = gzip ? compress(get(breedId, fields, format, false, etag, loader))
+        : encode(format, loader.get());
+
+    cache.put(key, new Entry(etag, bytes));
+
+    return bytes;
+  }
+
+  /**
+   * Remove the responses of the given breed and the list responses. Like
+   * {@link BreedCache#invalidate(int)}, they are removed right away and again after the transaction
+   * completes.
+   *
+   * @param breedId The breed ID.
+   */
+  public void invalidate(int breedId) {
+    removeResponses(breedId);
+    AfterCommit.afterCompletion(() -> removeResponses(breedId));
+  }
+
+  /**
+   * Remove the responses of the given breed and the list responses. The keys are built from every
+   * field set, format and compression instead of going through the whole cache. A response cached
+   * under any other key can't be returned with a new ETag, so it is left for Caffeine to evict.
+   *
+   * @param breedId The breed ID.
+   */
+  private void removeResponses(int breedId) {
+    List<Key> keys = new ArrayList<>(FIELD_SETS.size() * BodyFormat.values().length * 4);
+
+    for (Set<BreedField> fields : FIELD_SETS) {
+      for (BodyFormat format : BodyFormat.values()) {
+        for (boolean gzip : new boolean[] {false, true}) {
+          keys.add(new Key(breedId, fields, format, gzip));
+          keys.add(new Key(null, fields, format, gzip));
+        }
+      }
+    }
+
+    cache.invalidateAll(keys);
+  }
+
+  /**
+   * Returns every field set that {@link BreedField#fromFieldNames(java.util.Collection)} can
+   * return: the breed ID with any combination of the other fields.
+   *
+   * @return The field sets.
+   */
+  private static List<Set<BreedField>> fieldSets() {
+    List<BreedField> optional = List.copyOf(EnumSet.complementOf(EnumSet.of(BreedField.BREED_ID)));
+    List<Set<BreedField>> fieldSets = new ArrayList<>(1 << optional.size());
+
+    for (int mask = 0; mask < 1 << optional.size(); mask++) {
+      Set<BreedField> fields = EnumSet.of(BreedField.BREED_ID);
+
+      for (int bit = 0; bit < optional.size(); bit++) {
+        if ((mask & 1 << bit) != 0) {
+          fields.add(optional.get(bit));
+        }
+      }
+
+      fieldSets.add(fields);
+    }
+
+    return List.copyOf(fieldSets);
+  }
+
+  /**
+   * Encode an object in the given format.
+   *
+   * @param format The format.
+   * @param value The object.
+   * @return The encoded bytes.
+   */
+  private byte[] encode(BodyFormat format, Object value) {
+    try {
+      return bodyMappers.get(format).writeValueAsBytes(value);
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Gzip compress the given bytes.
+   *
+   * @param bytes The bytes to compress.
+   * @return The compressed bytes.
+   */
+  private byte[] compress(byte[] bytes) {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4 + 64);
+
+    try (OutputStream gzip = new GZIPOutputStream(compressed)) {
+      gzip.write(bytes);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    return compressed.toByteArray();
+  }
+}
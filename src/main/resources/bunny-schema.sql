@@ -10,6 +10,7 @@ CREATE TABLE breed (
   breed_id int AUTO_INCREMENT NOT NULL,
   breed_name varchar(64) NOT NULL,
   description text,
+  version int NOT NULL DEFAULT 1,
   PRIMARY KEY (breed_id),
   UNIQUE KEY (breed_name)
 );
@@ -0,0 +1,56 @@
+/**
+ *
+ */
+package bunny.controller;
+
+import static bunny.controller.StatementBudgetInterceptor.EXCEEDED_HEADER;
+import static bunny.controller.StatementBudgetInterceptor.STATEMENTS_HEADER;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * This tests the statement counts that the {@link StatementBudgetInterceptor} returns in the
+ * response headers. The reads should run a fixed number of statements no matter how many breeds,
+ * alternate names and categories there are. The ETag version is read on every request because the
+ * test profile turns off the version cache. A change that adds a statement (or an N+1 query) makes
+ * these tests fail.
+ *
+ * @author Promineo
+ *
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class StatementBudgetInterceptorTest {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Test
+  void listBreedsReadsVersionBreedsAlternateNamesAndCategories() throws Exception {
+    mockMvc.perform(get("/bunny")) // @formatter:off
+        .andExpect(status().isOk())
+        .andExpect(header().string(STATEMENTS_HEADER, "4"))
+        .andExpect(header().doesNotExist(EXCEEDED_HEADER)); // @formatter:on
+  }
+
+  @Test
+  void getBreedReadsVersionAndOneRowAndIsThenCached() throws Exception {
+    mockMvc.perform(get("/bunny/14")) // @formatter:off
+        .andExpect(status().isOk())
+        .andExpect(header().string(STATEMENTS_HEADER, "2"))
+        .andExpect(header().doesNotExist(EXCEEDED_HEADER));
+
+    /* Only the version is read. The response comes from the response cache. */
+    mockMvc.perform(get("/bunny/14"))
+        .andExpect(status().isOk())
+        .andExpect(header().string(STATEMENTS_HEADER, "1")); // @formatter:on
+  }
+}
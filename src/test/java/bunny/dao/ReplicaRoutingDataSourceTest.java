@@ -0,0 +1,142 @@
+/**
+ *
+ */
+package bunny.dao;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.h2.Driver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.PlatformTransactionManager;
+import bunny.entity.Breed;
+import bunny.service.BunnyService;
+
+/**
+ * This tests the {@link ReplicaRoutingDataSource} with two embedded H2 databases, one as the
+ * primary and one as the replica. There is no replication between them, so a breed read from the
+ * replica still has the description it was given when the replica was created. That tells the test
+ * which database answered each read.
+ *
+ * @author Promineo
+ *
+ */
+@SpringBootTest(properties = { // @formatter:off
+    "spring.datasource.url=" + ReplicaRoutingDataSourceTest.PRIMARY_URL,
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "bunny.replicas.urls=" + ReplicaRoutingDataSourceTest.REPLICA_URL,
+    "bunny.replicas.max-lag=0s",
+    "bunny.replicas.read-your-writes=1m",
+    "bunny.stream.fetch-size=1000"}) // @formatter:on
+class ReplicaRoutingDataSourceTest {
+
+  static final String PRIMARY_URL =
+      "jdbc:h2:mem:primary;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+  static final String REPLICA_URL =
+      "jdbc:h2:mem:replica;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+  /** The replica copy of each breed has this description. */
+  private static final String REPLICA_DESCRIPTION = "Read from the replica.";
+
+  @Autowired
+  private BunnyService bunnyService;
+
+  @Autowired
+  private ReplicaRoutingDataSource router;
+
+  @Autowired
+  private BunnyDao dao;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  /**
+   * Create both databases from bunny-schema.sql before the application starts, and mark the breeds
+   * in the replica.
+   */
+  @BeforeAll
+  static void createDatabases() {
+    createDatabase(PRIMARY_URL);
+
+    JdbcTemplate replica = createDatabase(REPLICA_URL);
+    replica.update("UPDATE breed SET description = ?", REPLICA_DESCRIPTION);
+  }
+
+  @AfterEach
+  void clearClient() {
+    router.clearClient();
+  }
+
+  @Test
+  void breedDetailIsReadFromTheReplica() {
+    router.setClient("reader");
+
+    assertThat(bunnyService.getBunnyBreed(1).getDescription()).isEqualTo(REPLICA_DESCRIPTION);
+  }
+
+  @Test
+  void deleteIsWrittenToThePrimaryAndRecordedForTheClient() {
+    router.setClient("writer");
+    bunnyService.deleteBunny(2);
+
+    /* The writer reads its own delete from the primary. */
+    assertThatThrownBy(() -> bunnyService.getBunnyBreed(2))
+        .isInstanceOf(NoSuchElementException.class);
+
+    /* Another client still reads from the replica, which never saw the delete. */
+    router.setClient("reader");
+
+    assertThat(bunnyService.getBunnyBreeds(List.of(2)).getBreeds())
+        .singleElement()
+        .extracting("description")
+        .isEqualTo(REPLICA_DESCRIPTION);
+  }
+
+  @Test
+  void primaryReadIsReadFromThePrimaryWithoutRecordingTheClient() {
+    router.setClient("background");
+
+    List<Breed> breeds = ReplicaRoutingDataSource.primaryReadTransaction(transactionManager)
+        .execute(status -> dao.fetchBreedDetails(List.of(4)));
+
+    assertThat(breeds)
+        .singleElement()
+        .extracting("description")
+        .isNotEqualTo(REPLICA_DESCRIPTION);
+
+    /* The primary read didn't start the read-your-writes window, so this goes to the replica. */
+    assertThat(bunnyService.getBunnyBreeds(List.of(4)).getBreeds())
+        .singleElement()
+        .extracting("description")
+        .isEqualTo(REPLICA_DESCRIPTION);
+  }
+
+  /**
+   * Create the tables of an H2 database from bunny-schema.sql.
+   *
+   * @param url The JDBC URL of the database.
+   * @return A JdbcTemplate for the database.
+   */
+  private static JdbcTemplate createDatabase(String url) {
+    SimpleDriverDataSource dataSource = new SimpleDriverDataSource(new Driver(), url, "sa", "");
+    ResourceDatabasePopulator populator = new ResourceDatabasePopulator();
+
+    populator.addScript(new ClassPathResource("bunny-schema.sql"));
+    populator.setSqlScriptEncoding(StandardCharsets.UTF_8.name());
+    populator.execute(dataSource);
+
+    return new JdbcTemplate(dataSource);
+  }
+}
@@ -0,0 +1,151 @@
+/**
+ *
+ */
+package bunny.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import bunny.dao.StatementStats;
+import bunny.entity.AddBreedRequest;
+import bunny.entity.Breed;
+import bunny.entity.BreedField;
+
+/**
+ * This tests the {@link BunnyService} against the H2 database in application-test.yaml. The SQL
+ * statements are counted with {@link StatementStats}, the same way they are counted for a request.
+ *
+ * @author Promineo
+ *
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class BunnyServiceTest {
+
+  @Autowired
+  private BunnyService bunnyService;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Test
+  void addBunnyRunsTheSameStatementsForAnyNumberOfNames() {
+    int few = countAddBunny(newBreed("Few Names", 1, List.of("smooth")));
+
+    int many = countAddBunny(
+        newBreed("Many Names", 20, List.of("smooth", "fuzzy", "lop-eared", "spotted")));
+
+    assertThat(many).isEqualTo(few);
+  }
+
+  @Test
+  void addBunnyRunsTheSameStatementsForAnyNumberOfNewCategories() {
+    int few = countAddBunny(newBreed("Few Categories", 1, List.of("new-1")));
+
+    int many = countAddBunny(newBreed("Many Categories", 1,
+        IntStream.rangeClosed(2, 10).mapToObj(number -> "new-" + number).toList()));
+
+    assertThat(many).isEqualTo(few);
+  }
+
+  @Test
+  void breedETagChangesWhenTheVersionChangesInTheDatabase() {
+    String before = bunnyService.getBreedETag(5, BreedField.ALL, BodyFormat.JSON);
+
+    /* This is what another instance of the application does when it changes the breed. */
+    jdbcTemplate.update("UPDATE breed SET version = version + 1 WHERE breed_id = 5");
+
+    assertThat(bunnyService.getBreedETag(5, BreedField.ALL, BodyFormat.JSON)).isNotEqualTo(before);
+  }
+
+  @Test
+  void missingBreedHasNoETag() {
+    assertThatThrownBy(() -> bunnyService.getBreedETag(99999, BreedField.ALL, BodyFormat.JSON))
+        .isInstanceOf(NoSuchElementException.class);
+  }
+
+  @Test
+  void modifyThatChangesNothingKeepsTheETags() {
+    Breed breed = bunnyService.getBunnyBreed(7);
+    String breedETag = bunnyService.getBreedETag(7, BreedField.ALL, BodyFormat.JSON);
+    String catalogETag = bunnyService.getCatalogETag(BreedField.ALL, BodyFormat.JSON);
+
+    bunnyService.modifyBunny(breed);
+
+    assertThat(bunnyService.getBreedETag(7, BreedField.ALL, BodyFormat.JSON)).isEqualTo(breedETag);
+    assertThat(bunnyService.getCatalogETag(BreedField.ALL, BodyFormat.JSON))
+        .isEqualTo(catalogETag);
+  }
+
+  @Test
+  void categoryChangeChangesTheBreedAndCatalogETags() {
+    Breed breed = bunnyService.getBunnyBreed(10);
+    String breedETag = bunnyService.getBreedETag(10, BreedField.ALL, BodyFormat.JSON);
+    String catalogETag = bunnyService.getCatalogETag(BreedField.ALL, BodyFormat.JSON);
+
+    breed.getCategoryNames().add("new-etag-category");
+    bunnyService.modifyBunny(breed);
+
+    assertThat(bunnyService.getBreedETag(10, BreedField.ALL, BodyFormat.JSON))
+        .isNotEqualTo(breedETag);
+    assertThat(bunnyService.getCatalogETag(BreedField.ALL, BodyFormat.JSON))
+        .isNotEqualTo(catalogETag);
+  }
+
+  @Test
+  void catalogETagChangesWhenABreedIsAdded() {
+    String before = bunnyService.getCatalogETag(BreedField.ALL, BodyFormat.JSON);
+
+    bunnyService.addBunny(newBreed("New Catalog Version", 0, List.of("smooth")));
+
+    assertThat(bunnyService.getCatalogETag(BreedField.ALL, BodyFormat.JSON)).isNotEqualTo(before);
+  }
+
+  /**
+   * Add a breed and return the number of statements that were run.
+   *
+   * @param breedRequest The breed to add.
+   * @return The number of statements.
+   */
+  private int countAddBunny(AddBreedRequest breedRequest) {
+    StatementStats.start();
+
+    try {
+      bunnyService.addBunny(breedRequest);
+      return StatementStats.current().orElseThrow().getStatements();
+    } finally {
+      StatementStats.finish();
+    }
+  }
+
+  /**
+   * Create an add breed request.
+   *
+   * @param breedName The breed name.
+   * @param alternateNames The number of alternate names.
+   * @param categoryNames The category names.
+   * @return The request.
+   */
+  private AddBreedRequest newBreed(String breedName, int alternateNames,
+      List<String> categoryNames) {
+    AddBreedRequest breedRequest = AddBreedRequest
+        .builder() // @formatter:off
+        .breedName(breedName)
+        .description(breedName + " was added by the test.")
+        .build(); // @formatter:on
+
+    IntStream.rangeClosed(1, alternateNames)
+        .forEach(number -> breedRequest.getAlternameNames().add(breedName + " " + number));
+
+    breedRequest.getCategoryNames().addAll(categoryNames);
+
+    return breedRequest;
+  }
+}
@@ -0,0 +1,119 @@
+/**
+ *
+ */
+package bunny.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import bunny.entity.AddBreedRequest;
+import bunny.entity.Breed;
+import bunny.entity.SearchHit;
+
+/**
+ * This tests that the {@link BreedIndex} and the {@link CategoryFacets} follow the committed state
+ * of the database. The changed breeds are read back on a background thread, so the tests wait for
+ * the index and the facets to change.
+ *
+ * @author Promineo
+ *
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class CatalogChangesTest {
+
+  /** This is how long a test waits for a change to reach the index and the facets. */
+  private static final long TIMEOUT_MILLIS = 5000;
+
+  @Autowired
+  private BunnyService bunnyService;
+
+  @Autowired
+  private CategoryFacets categoryFacets;
+
+  @Test
+  void addedBreedIsSearchableAndFilteredByTheCategoryInTheDatabase() throws InterruptedException {
+    /* The request spells the category differently than the category table. */
+    Breed added = bunnyService.addBunny(newBreed("Quillback Changes Breed", "SMOOTH"));
+
+    assertThat(await(() -> isFound("quillback", added.getBreedId()))).isTrue();
+    assertThat(await(() -> categoryFacets.filter(List.of("smooth")).get(added.getBreedId())))
+        .isTrue();
+  }
+
+  @Test
+  void modifiedBreedMovesToItsNewCategory() throws InterruptedException {
+    Breed breed = bunnyService.addBunny(newBreed("Moving Changes Breed", "smooth"));
+
+    breed.getCategoryNames().clear();
+    breed.getCategoryNames().add("Spotted");
+    bunnyService.modifyBunny(breed);
+
+    assertThat(await(() -> categoryFacets.filter(List.of("spotted")).get(breed.getBreedId())))
+        .isTrue();
+    assertThat(categoryFacets.filter(List.of("smooth")).get(breed.getBreedId())).isFalse();
+  }
+
+  @Test
+  void deletedBreedIsRemovedFromTheIndexAndTheFacets() throws InterruptedException {
+    Breed added = bunnyService.addBunny(newBreed("Vanishing Changes Breed", "smooth"));
+    assertThat(await(() -> isFound("vanishing", added.getBreedId()))).isTrue();
+
+    bunnyService.deleteBunny(added.getBreedId());
+
+    assertThat(await(() -> !isFound("vanishing", added.getBreedId()))).isTrue();
+    assertThat(categoryFacets.filter(List.of()).get(added.getBreedId())).isFalse();
+  }
+
+  /**
+   * Returns {@code true} if a search for the given text finds the breed.
+   *
+   * @param text The search text.
+   * @param breedId The breed ID.
+   * @return {@code true} if the breed is in the search results.
+   */
+  private boolean isFound(String text, int breedId) {
+    return bunnyService.searchBunnyBreeds(text, 10).stream().mapToInt(SearchHit::getBreedId)
+        .anyMatch(id -> id == breedId);
+  }
+
+  /**
+   * Wait until the given condition is true.
+   *
+   * @param condition The condition.
+   * @return The condition when it became true or the wait timed out.
+   * @throws InterruptedException Thrown if the test is interrupted.
+   */
+  private boolean await(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+
+    while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+
+    return condition.getAsBoolean();
+  }
+
+  /**
+   * Create an add breed request in one category.
+   *
+   * @param breedName The breed name.
+   * @param categoryName The category name.
+   * @return The request.
+   */
+  private AddBreedRequest newBreed(String breedName, String categoryName) {
+    AddBreedRequest breedRequest = AddBreedRequest
+        .builder() // @formatter:off
+        .breedName(breedName)
+        .description(breedName + " was added by the test.")
+        .build(); // @formatter:on
+
+    breedRequest.getCategoryNames().add(categoryName);
+
+    return breedRequest;
+  }
+}
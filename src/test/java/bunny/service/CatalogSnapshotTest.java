@@ -0,0 +1,129 @@
+/**
+ *
+ */
+package bunny.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.function.Predicate;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import bunny.entity.AddBreedRequest;
+import bunny.entity.Breed;
+import bunny.entity.BreedField;
+
+/**
+ * This tests that the {@link CatalogSnapshot} follows the committed state of the database. The
+ * changed breeds are read back on a background thread, so the tests wait for the snapshot to
+ * change.
+ *
+ * @author Promineo
+ *
+ */
+@SpringBootTest(properties = "bunny.snapshot.enabled=true")
+@ActiveProfiles("test")
+class CatalogSnapshotTest {
+
+  /** This is how long a test waits for a change to reach the snapshot. */
+  private static final long TIMEOUT_MILLIS = 5000;
+
+  @Autowired
+  private BunnyService bunnyService;
+
+  @Autowired
+  private CatalogSnapshot catalogSnapshot;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Test
+  void addedBreedIsReadBackInNameOrder() throws InterruptedException {
+    Breed added = bunnyService.addBunny(newBreed("Aaa Snapshot Breed"));
+
+    Optional<Breed> breed = awaitBreed(added.getBreedId(), Optional::isPresent);
+
+    assertThat(breed.orElseThrow().getCategoryNames()).containsExactly("smooth");
+    assertThat(bunnyService.listBunnyBreeds(BreedField.ALL).get(0).getBreedId())
+        .isEqualTo(added.getBreedId());
+  }
+
+  @Test
+  void lastModificationWins() throws InterruptedException {
+    Breed breed = bunnyService.getBunnyBreed(6);
+
+    breed.setDescription("First change.");
+    bunnyService.modifyBunny(breed);
+    breed.setDescription("Second change.");
+    bunnyService.modifyBunny(breed);
+
+    assertThat(awaitBreed(6, found -> found.map(Breed::getDescription)
+        .filter("Second change."::equals).isPresent())).isPresent();
+  }
+
+  @Test
+  void deletedBreedIsRemovedAndLosesItsETag() throws InterruptedException {
+    bunnyService.deleteBunny(8);
+
+    assertThat(awaitBreed(8, Optional::isEmpty)).isEmpty();
+    assertThatThrownBy(() -> bunnyService.getBreedETag(8, BreedField.ALL, BodyFormat.JSON))
+        .isInstanceOf(NoSuchElementException.class);
+  }
+
+  @Test
+  void reloadReadsChangesMadeOutsideTheApplication() {
+    String catalogETag = bunnyService.getCatalogETag(BreedField.ALL, BodyFormat.JSON);
+
+    jdbcTemplate.update("UPDATE breed SET description = 'Changed in the database.' "
+        + "WHERE breed_id = 9");
+    catalogSnapshot.reload();
+
+    assertThat(bunnyService.getBunnyBreed(9).getDescription())
+        .isEqualTo("Changed in the database.");
+    assertThat(bunnyService.getCatalogETag(BreedField.ALL, BodyFormat.JSON))
+        .isNotEqualTo(catalogETag);
+  }
+
+  /**
+   * Wait until the breed in the snapshot matches the given condition.
+   *
+   * @param breedId The breed ID.
+   * @param condition The condition.
+   * @return The breed in the snapshot when the condition matched or the wait timed out.
+   * @throws InterruptedException Thrown if the test is interrupted.
+   */
+  private Optional<Breed> awaitBreed(int breedId, Predicate<Optional<Breed>> condition)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    Optional<Breed> breed = catalogSnapshot.getBreed(breedId, BreedField.ALL);
+
+    while (!condition.test(breed) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+      breed = catalogSnapshot.getBreed(breedId, BreedField.ALL);
+    }
+
+    return breed;
+  }
+
+  /**
+   * Create an add breed request in the smooth category.
+   *
+   * @param breedName The breed name.
+   * @return The request.
+   */
+  private AddBreedRequest newBreed(String breedName) {
+    AddBreedRequest breedRequest = AddBreedRequest
+        .builder() // @formatter:off
+        .breedName(breedName)
+        .description(breedName + " was added by the test.")
+        .build(); // @formatter:on
+
+    breedRequest.getCategoryNames().add("smooth");
+
+    return breedRequest;
+  }
+}